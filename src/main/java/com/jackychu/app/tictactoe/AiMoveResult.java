@@ -0,0 +1,38 @@
+package com.jackychu.app.tictactoe;
+
+/**
+ * The class for http response of the ai-move api.<br>
+ * The move placed by the computer player and the game status after it, with the search stats.<br>
+ * Will convert to json format automatically when response to client.
+ */
+public class AiMoveResult extends MoveResult {
+    /**
+     * Stats of the search which found the move
+     */
+    private SearchResult search;
+
+    /**
+     * Constructor for json conversion
+     */
+    public AiMoveResult() {
+    }
+
+    /**
+     * Constructor with the game after the move is applied
+     *
+     * @param game game which the move applied to
+     * @param search the search which found the move
+     */
+    public AiMoveResult(Game game, SearchResult search) {
+        super(game, search.getMove());
+        this.search = search;
+    }
+
+    public SearchResult getSearch() {
+        return this.search;
+    }
+
+    public void setSearch(SearchResult search) {
+        this.search = search;
+    }
+}
@@ -0,0 +1,647 @@
+package com.jackychu.app.tictactoe;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Computer player with alpha-beta search (negamax) over the bitboard.<br>
+ * The search deepens one ply at a time (iterative deepening) until the game tree is searched to the end
+ * or the node or time budget runs out, then the best move of the last finished depth is used.
+ * Moves are ordered by the best move of the previous depth first, then by the count of winning lines through the cell.
+ * Positions at the depth limit are scored by the winning lines (win length cells in a row) still open for each player.
+ * Boards up to Board.LineMasks.CACHE_LIMIT score every line mask at the limit, larger boards keep the score
+ * up to date with each placed cell, from the lines through the cell only.<br>
+ * With a TranspositionTable, searched positions and their best cells are reused by later depths,
+ * later requests and other games, keyed by the canonical symmetry of the position.<br>
+ * An engine has no state besides the shared table, one engine can be used by many threads.
+ */
+public class AlphaBetaEngine {
+    /**
+     * Default max count of searched positions
+     */
+    public static final long DEFAULT_MAX_NODES = 2000000;
+
+    /**
+     * Default max search time
+     */
+    public static final long DEFAULT_MAX_MILLIS = 1000;
+
+    /**
+     * Score of a win. A win found in fewer moves has a higher score.
+     */
+    static final int WIN = 1 << 30;
+
+    /**
+     * Scores above this are wins or losses, not estimates
+     */
+    static final int WIN_BOUND = WIN - 4096;
+
+    /**
+     * Directions of lines: row, column, diagonal, anti-diagonal
+     */
+    private static final int[][] DIRECTIONS = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+
+    /**
+     * Cell order by dimension and win length, up to Board.LineMasks.CACHE_LIMIT
+     */
+    private static final ConcurrentHashMap<Integer, int[]> ORDERS = new ConcurrentHashMap<>();
+
+    /**
+     * Max count of searched positions
+     */
+    private final long maxNodes;
+
+    /**
+     * Max search time
+     */
+    private final long maxMillis;
+
+    /**
+     * Table of searched positions, null for none
+     */
+    private final TranspositionTable table;
+
+    /**
+     * Create engine with default budget and no table
+     */
+    public AlphaBetaEngine() {
+        this(DEFAULT_MAX_NODES, DEFAULT_MAX_MILLIS, null);
+    }
+
+    /**
+     * Create engine
+     * @param maxNodes max count of searched positions
+     * @param maxMillis max search time
+     * @param table table of searched positions shared by searches, null for none
+     */
+    public AlphaBetaEngine(long maxNodes, long maxMillis, TranspositionTable table) {
+        if (maxNodes <= 0) throw new IllegalArgumentException("Max nodes should be positive: " + maxNodes);
+        if (maxMillis <= 0) throw new IllegalArgumentException("Max millis should be positive: " + maxMillis);
+
+        this.maxNodes = maxNodes;
+        this.maxMillis = maxMillis;
+        this.table = table;
+    }
+
+    /**
+     * Get the player to move on board. Player 1 moves first.
+     * @param board game board
+     * @return 1 for player 1, 2 for player 2
+     */
+    static int toMove(Board board) {
+        return board.count(1) == board.count(2) ? 1 : 2;
+    }
+
+    /**
+     * Find the best move for the player to move
+     * @param game a game which is not end
+     * @return best move and search stats
+     */
+    public SearchResult search(Game game) {
+        if (game.getStatus() == Game.Status.END || game.board().full()) {
+            throw new IllegalArgumentException("Game is end: " + game.getId());
+        }
+        return new Search(game.board().copy(), this.maxNodes, this.maxMillis, this.table, 0).run();
+    }
+
+    /**
+     * Get cells of dimension, the cells on more winning lines first, then the cells near the center
+     * @param d board dimension
+     * @param k win length
+     * @return bit indexes of cells
+     */
+    static int[] order(final int d, int k) {
+        boolean cached = d <= Board.LineMasks.CACHE_LIMIT;
+        Integer key = d << 16 | k;
+        int[] order = cached ? ORDERS.get(key) : null;
+        if (order != null) return order;
+
+        final int[] lines = Board.linesThrough(d, k);
+        List<Integer> cells = new ArrayList<>(d * d);
+        for (int i=0; i<d*d; i++) {
+            cells.add(i);
+        }
+        Collections.sort(cells, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                int byLines = Integer.compare(lines[b], lines[a]);
+                return byLines != 0 ? byLines : Integer.compare(distance(d, a), distance(d, b));
+            }
+        });
+        order = new int[cells.size()];
+        for (int i=0; i<order.length; i++) {
+            order[i] = cells.get(i);
+        }
+        if (!cached) return order;
+
+        int[] existing = ORDERS.putIfAbsent(key, order);
+        return existing != null ? existing : order;
+    }
+
+    /**
+     * Distance of a cell to the center, times 2 to stay integer
+     */
+    private static int distance(int d, int cell) {
+        int row = cell / d, col = cell % d;
+        return Math.abs(2 * row - (d - 1)) + Math.abs(2 * col - (d - 1));
+    }
+
+    /**
+     * Signal to stop a running search, checked together with the deadline
+     */
+    interface Stop {
+        boolean stopped();
+    }
+
+    /**
+     * State of one search.<br>
+     * With a split depth, the moves of a position at least that deep (from the depth limit) are searched
+     * in parallel after the first move: each move is a fork/join task with its own copy of the board.
+     * Tasks share the table and a raised alpha, and a cutoff found by one task stops the others.
+     * A search with a split depth should run in a ForkJoinPool.
+     */
+    static final class Search {
+        private final Board board;
+        private final int d;
+        private final int cells;
+        private final int[] order;
+
+        /**
+         * Line masks of the evaluation, null for a board over Board.LineMasks.CACHE_LIMIT
+         */
+        private final Board.LineMasks masks;
+
+        /**
+         * Score of all lines for player 1, kept up to date by place and unplace when there are no masks
+         */
+        private long score;
+
+        /**
+         * The clock is read when nodes &amp; clockMask is 0. Every node on a large board, whose nodes are slow.
+         */
+        private final int clockMask;
+        private final long maxNodes;
+        private final long start;
+        private final long deadline;
+
+        /**
+         * Min depth of a position to search its moves in parallel, 0 for never
+         */
+        private final int splitDepth;
+
+        /**
+         * Stop of the parallel split which runs this search, null for none
+         */
+        private final Stop stop;
+
+        private long nodes;
+        private boolean aborted;
+
+        /**
+         * Table of searched positions, null for none
+         */
+        private final TranspositionTable table;
+        private final Zobrist zobrist;
+        private final int generation;
+
+        /**
+         * Hashes of the position under the 8 symmetries
+         */
+        private final long[] hashes;
+        private long probes;
+        private long hits;
+
+        /**
+         * A position of the running subtree was scored by estimate, not searched to the end
+         */
+        private boolean horizon;
+
+        /**
+         * Best move of the root in the running depth
+         */
+        private int rootBest = -1;
+
+        /**
+         * Create search
+         * @param board board to search, changed while searching
+         * @param maxNodes max count of searched positions
+         * @param maxMillis max search time
+         * @param table table of searched positions, null for none
+         * @param splitDepth min depth to search in parallel, 0 for never
+         */
+        Search(Board board, long maxNodes, long maxMillis, TranspositionTable table, int splitDepth) {
+            this.board = board;
+            this.d = board.dimension();
+            this.cells = this.d * this.d;
+            this.order = order(this.d, board.winLength());
+            boolean small = this.d <= Board.LineMasks.CACHE_LIMIT;
+            this.masks = small ? Board.LineMasks.of(this.d, board.winLength()) : null;
+            this.score = small ? 0 : score(board);
+            this.clockMask = small ? 1023 : 0;
+            this.maxNodes = maxNodes;
+            this.start = System.currentTimeMillis();
+            this.deadline = this.start + maxMillis;
+            this.table = table;
+            this.zobrist = table == null ? null : Zobrist.of(this.d);
+            this.generation = table == null ? 0 : table.newSearch();
+            this.hashes = table == null ? null : this.zobrist.hashes(board);
+            this.splitDepth = splitDepth;
+            this.stop = null;
+        }
+
+        /**
+         * Create search of a parallel task, on a copy of the board of parent
+         */
+        private Search(Search parent, Stop stop) {
+            this.board = parent.board.copy();
+            this.d = parent.d;
+            this.cells = parent.cells;
+            this.order = parent.order;
+            this.masks = parent.masks;
+            this.score = parent.score;
+            this.clockMask = parent.clockMask;
+            this.maxNodes = parent.maxNodes;
+            this.start = parent.start;
+            this.deadline = parent.deadline;
+            this.table = parent.table;
+            this.zobrist = parent.zobrist;
+            this.generation = parent.generation;
+            this.hashes = parent.hashes == null ? null : parent.hashes.clone();
+            this.splitDepth = parent.splitDepth;
+            this.stop = stop;
+        }
+
+        SearchResult run() {
+            int player = toMove(this.board);
+            int empty = this.cells - this.board.filled();
+
+            // Before the first depth is finished, play the first empty cell in order
+            int best = -1;
+            for (int cell : this.order) {
+                if (this.board.get(cell / this.d, cell % this.d) == 0) {
+                    best = cell;
+                    break;
+                }
+            }
+            int bestScore = 0, finished = 0;
+            boolean complete = false;
+
+            for (int depth=1; depth<=empty; depth++) {
+                this.rootBest = -1;
+                this.horizon = false;
+                int score = this.negamax(depth, 0, -WIN - 1, WIN + 1, player, best);
+                if (this.aborted) break;
+
+                best = this.rootBest;
+                bestScore = score;
+                finished = depth;
+                // Done if no position was estimated, e.g. all were solved by earlier searches
+                if (!this.horizon || depth == empty || Math.abs(score) > WIN_BOUND) {
+                    complete = true;
+                    break;
+                }
+            }
+
+            if (this.table != null) this.table.record(this.probes, this.hits);
+            Move move = new Move(best / this.d, best % this.d, player);
+            return new SearchResult(move, bestScore, finished, this.nodes,
+                    System.currentTimeMillis() - this.start, complete);
+        }
+
+        /**
+         * Score of the position for the player to move
+         * @param first cell to search first, -1 for none
+         */
+        private int negamax(int depth, int ply, int alpha, int beta, int player, int first) {
+            this.nodes++;
+            if (this.nodes >= this.maxNodes || ((this.nodes & this.clockMask) == 0 && (System.currentTimeMillis() >= this.deadline
+                    || (this.stop != null && this.stop.stopped())))) {
+                this.aborted = true;
+                return 0;
+            }
+            if (depth == 0) {
+                this.horizon = true;
+                return this.evaluate(player);
+            }
+
+            // Reuse the table entry of this position, or at least try its best cell first
+            int alpha0 = alpha;
+            int symmetry = 0;
+            long key = 0;
+            if (this.table != null) {
+                symmetry = Zobrist.canonical(this.hashes);
+                key = this.hashes[symmetry];
+                this.probes++;
+                long entry = this.table.probe(key);
+                if (entry != 0) {
+                    this.hits++;
+                    int cell = TranspositionTable.cell(entry);
+                    if (first < 0 && cell >= 0 && cell < this.cells) first = this.zobrist.inverse[symmetry][cell];
+                    int entryDepth = TranspositionTable.depth(entry);
+                    if (ply > 0 && entryDepth >= depth) {
+                        int score = fromTable(TranspositionTable.score(entry), ply);
+                        int bound = TranspositionTable.bound(entry);
+                        if (bound == TranspositionTable.EXACT
+                                || (bound == TranspositionTable.LOWER && score >= beta)
+                                || (bound == TranspositionTable.UPPER && score <= alpha)) {
+                            if (entryDepth != TranspositionTable.SOLVED) this.horizon = true;
+                            return score;
+                        }
+                    }
+                }
+            }
+
+            boolean outerHorizon = this.horizon;
+            this.horizon = false;
+            int best = -WIN - 1, bestCell = -1;
+            for (int i=-1; i<this.order.length; i++) {
+                int cell = i < 0 ? first : this.order[i];
+                if (cell < 0 || (i >= 0 && cell == first)) continue;
+                int row = cell / this.d, col = cell % this.d;
+                if (this.board.get(row, col) != 0) continue;
+
+                this.place(row, col, cell, player);
+                int score;
+                if (this.board.winnerThrough(row, col) == player) {
+                    score = WIN - ply - 1;
+                } else if (this.board.filled() == this.cells) {
+                    score = 0;
+                } else {
+                    score = -this.negamax(depth - 1, ply + 1, -beta, -alpha, 3 - player, -1);
+                }
+                this.unplace(row, col, cell, player);
+                if (this.aborted) return 0;
+
+                if (score > best) {
+                    best = score;
+                    bestCell = cell;
+                    if (ply == 0) this.rootBest = cell;
+                }
+                if (score > alpha) alpha = score;
+                if (alpha >= beta) break;
+
+                if (this.splitDepth > 0 && depth >= this.splitDepth) {
+                    // The first move is searched, search the others in parallel
+                    Split split = new Split(this, depth, ply, alpha, beta, player);
+                    for (int j=i+1; j<this.order.length; j++) {
+                        int next = this.order[j];
+                        if (next != first && this.board.get(next / this.d, next % this.d) == 0) {
+                            split.tasks.add(new SplitTask(split, next));
+                        }
+                    }
+                    ForkJoinTask.invokeAll(split.tasks);
+                    for (SplitTask task : split.tasks) {
+                        this.nodes += task.nodes;
+                        this.probes += task.probes;
+                        this.hits += task.hits;
+                        if (task.horizon) this.horizon = true;
+                        if (task.aborted) {
+                            if (!split.cut) this.aborted = true;
+                            continue;
+                        }
+                        // A score at or below a raised alpha is only a bound, another move is as good
+                        if (task.score > best && (task.score > task.alpha || task.alpha == split.alpha0)) {
+                            best = task.score;
+                            bestCell = task.cell;
+                            if (ply == 0) this.rootBest = task.cell;
+                        }
+                    }
+                    if (this.aborted) return 0;
+                    break;
+                }
+            }
+
+            boolean subtreeHorizon = this.horizon;
+            this.horizon = outerHorizon || subtreeHorizon;
+            if (this.table != null) {
+                int bound = best <= alpha0 ? TranspositionTable.UPPER
+                        : best >= beta ? TranspositionTable.LOWER : TranspositionTable.EXACT;
+                this.table.store(key, toTable(best, ply), subtreeHorizon ? depth : TranspositionTable.SOLVED, bound,
+                        this.zobrist.map[symmetry][bestCell], this.generation);
+            }
+            return best;
+        }
+
+        private void place(int row, int col, int cell, int player) {
+            if (this.masks == null) this.score += change(this.board, row, col, player);
+            this.board.set(row, col, player);
+            if (this.hashes != null) this.zobrist.toggle(this.hashes, player, cell);
+        }
+
+        private void unplace(int row, int col, int cell, int player) {
+            this.board.set(row, col, 0);
+            if (this.masks == null) this.score -= change(this.board, row, col, player);
+            if (this.hashes != null) this.zobrist.toggle(this.hashes, player, cell);
+        }
+
+        /**
+         * Win scores in the table count plies from the stored position, not from the root
+         */
+        static int toTable(int score, int ply) {
+            if (score > WIN_BOUND) return score + ply;
+            if (score < -WIN_BOUND) return score - ply;
+            return score;
+        }
+
+        static int fromTable(int score, int ply) {
+            if (score > WIN_BOUND) return score - ply;
+            if (score < -WIN_BOUND) return score + ply;
+            return score;
+        }
+
+        /**
+         * Estimate the position by the winning lines which only one player has marks on.
+         * A line with more marks is worth more.
+         */
+        private int evaluate(int player) {
+            long score = this.score;
+            if (this.masks != null) {
+                for (long[] line : this.masks.lines) {
+                    score += line(this.board.countIn(1, line), this.board.countIn(2, line));
+                }
+            }
+            // Below the win scores, many open lines are still not a win
+            score = Math.max(-WIN_BOUND + 1, Math.min(WIN_BOUND - 1, score));
+            return (int) (player == 1 ? score : -score);
+        }
+
+        /**
+         * Score of one line for player 1
+         * @param one count of marks of player 1 in the line
+         * @param two count of marks of player 2 in the line
+         */
+        static int line(int one, int two) {
+            if (one > 0 && two > 0) return 0;
+            if (one > 0) return 1 << Math.min(2 * one, 20);
+            if (two > 0) return -(1 << Math.min(2 * two, 20));
+            return 0;
+        }
+
+        /**
+         * Score of all lines of a board for player 1, the sum of the changes of its cells placed one by one
+         */
+        static long score(Board board) {
+            int d = board.dimension();
+            Board replay = Board.create(d, board.winLength());
+            long score = 0;
+            for (int row=0; row<d; row++) {
+                for (int col=0; col<d; col++) {
+                    int player = board.get(row, col);
+                    if (player == 0) continue;
+                    score += change(replay, row, col, player);
+                    replay.set(row, col, player);
+                }
+            }
+            return score;
+        }
+
+        /**
+         * Change of the score of all lines when player places on an empty cell.
+         * Only the lines through the cell change. They are counted by a window of win length cells sliding
+         * along each direction, so the cost is O(win length).
+         */
+        static int change(Board board, int row, int col, int player) {
+            int d = board.dimension(), k = board.winLength();
+            int change = 0;
+            for (int[] direction : DIRECTIONS) {
+                int dr = direction[0], dc = direction[1];
+                int one = 0, two = 0, inside = 0;
+                for (int t=-(k - 1); t<k; t++) {
+                    // Add the cell at t, drop the cell at t - k
+                    int r = row + t * dr, c = col + t * dc;
+                    if (r >= 0 && r < d && c >= 0 && c < d) {
+                        inside++;
+                        int p = board.get(r, c);
+                        if (p == 1) one++;
+                        else if (p == 2) two++;
+                    }
+                    if (t - k >= -(k - 1)) {
+                        r -= k * dr;
+                        c -= k * dc;
+                        if (r >= 0 && r < d && c >= 0 && c < d) {
+                            inside--;
+                            int p = board.get(r, c);
+                            if (p == 1) one--;
+                            else if (p == 2) two--;
+                        }
+                    }
+                    // The window from t - k + 1 to t has the cell when t >= 0
+                    if (t >= 0 && inside == k) {
+                        change += line(player == 1 ? one + 1 : one, player == 2 ? two + 1 : two) - line(one, two);
+                    }
+                }
+            }
+            return change;
+        }
+    }
+
+    /**
+     * Moves of one position searched in parallel
+     */
+    private static final class Split implements Stop {
+        private final Search parent;
+        private final int depth;
+        private final int ply;
+        private final int beta;
+        private final int player;
+
+        /**
+         * Alpha when the split started
+         */
+        private final int alpha0;
+
+        /**
+         * Best score found so far by any task
+         */
+        private final AtomicInteger alpha;
+
+        private final List<SplitTask> tasks = new ArrayList<>();
+
+        /**
+         * A task found a score at or above beta, the other tasks are not needed
+         */
+        private volatile boolean cut;
+
+        Split(Search parent, int depth, int ply, int alpha, int beta, int player) {
+            this.parent = parent;
+            this.depth = depth;
+            this.ply = ply;
+            this.beta = beta;
+            this.player = player;
+            this.alpha0 = alpha;
+            this.alpha = new AtomicInteger(alpha);
+        }
+
+        @Override
+        public boolean stopped() {
+            return this.cut || (this.parent.stop != null && this.parent.stop.stopped());
+        }
+
+        void raise(int score) {
+            int a = this.alpha.get();
+            while (score > a && !this.alpha.compareAndSet(a, score)) {
+                a = this.alpha.get();
+            }
+            if (score >= this.beta) this.cut = true;
+        }
+    }
+
+    /**
+     * Search of one move of a split
+     */
+    private static final class SplitTask extends RecursiveAction {
+        private final Split split;
+        private final int cell;
+
+        private int alpha;
+        private int score;
+        private long nodes;
+        private long probes;
+        private long hits;
+        private boolean horizon;
+        private boolean aborted;
+
+        SplitTask(Split split, int cell) {
+            this.split = split;
+            this.cell = cell;
+        }
+
+        @Override
+        protected void compute() {
+            Split split = this.split;
+            if (split.stopped() || System.currentTimeMillis() >= split.parent.deadline) {
+                this.aborted = true;
+                return;
+            }
+
+            Search search = new Search(split.parent, split);
+            int d = search.d, row = this.cell / d, col = this.cell % d;
+            this.alpha = split.alpha.get();
+            search.place(row, col, this.cell, split.player);
+            int score;
+            if (search.board.winnerThrough(row, col) == split.player) {
+                score = WIN - split.ply - 1;
+            } else if (search.board.filled() == search.cells) {
+                score = 0;
+            } else {
+                score = -search.negamax(split.depth - 1, split.ply + 1, -split.beta, -this.alpha, 3 - split.player, -1);
+            }
+
+            this.nodes = search.nodes;
+            this.probes = search.probes;
+            this.hits = search.hits;
+            this.horizon = search.horizon;
+            this.aborted = search.aborted;
+            if (!this.aborted) {
+                this.score = score;
+                split.raise(score);
+            }
+        }
+    }
+}
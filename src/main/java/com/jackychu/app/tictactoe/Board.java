@@ -0,0 +1,525 @@
+package com.jackychu.app.tictactoe;
+
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Bitboard representation of a game board.<br>
+ * Each player has one bit per cell, the bit index of cell (row, col) is row * dimension + col.<br>
+ * Boards up to 8x8 fit in two long values ({@link SmallBoard}), larger boards use long arrays ({@link LargeBoard}).<br>
+ * A player wins with win length marks in a row, by default the whole row, column or diagonal.
+ * Full board scans of boards up to {@link LineMasks#CACHE_LIMIT} are mask tests against the precomputed masks
+ * of every winning line, larger boards are scanned by run length. The check after a move only looks at the
+ * lines through the cell.
+ */
+abstract class Board implements Serializable {
+    /**
+     * The largest dimension which fits in one long per player
+     */
+    static final int SMALL_LIMIT = 8;
+
+    /**
+     * Directions of lines: row, column, diagonal, anti-diagonal
+     */
+    private static final int[][] DIRECTIONS = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+
+    /**
+     * The board dimension
+     */
+    protected final int dimension;
+
+    /**
+     * Count of marks in a row to win
+     */
+    protected final int winLength;
+
+    /**
+     * Create empty board
+     * @param dimension The dimension of game board
+     * @param winLength Count of marks in a row to win, from 1 to dimension
+     */
+    protected Board(int dimension, int winLength) {
+        if (winLength < 1 || winLength > dimension) {
+            throw new IllegalArgumentException("Win length should be from 1 to " + dimension + ": " + winLength);
+        }
+        this.dimension = dimension;
+        this.winLength = winLength;
+    }
+
+    /**
+     * Create an empty board with the smallest representation for the dimension.
+     * A player wins with a whole line.
+     * @param dimension The dimension of game board
+     * @return empty board
+     */
+    static Board create(int dimension) {
+        return create(dimension, dimension);
+    }
+
+    /**
+     * Create an empty board with the smallest representation for the dimension
+     * @param dimension The dimension of game board
+     * @param winLength Count of marks in a row to win
+     * @return empty board
+     */
+    static Board create(int dimension, int winLength) {
+        if (dimension <= SMALL_LIMIT) {
+            return new SmallBoard(dimension, winLength);
+        } else {
+            return new LargeBoard(dimension, winLength);
+        }
+    }
+
+    /**
+     * Build a board from a grid. A player wins with a whole line.
+     * @param grid The game board. 0 for no mark, 1 for player 1, 2 for player 2.
+     * @return board, or null if the grid is not square or has a value other than 0, 1 or 2
+     */
+    static Board fromGrid(int[][] grid) {
+        return fromGrid(grid, grid.length);
+    }
+
+    /**
+     * Build a board from a grid.
+     * @param grid The game board. 0 for no mark, 1 for player 1, 2 for player 2.
+     * @param winLength Count of marks in a row to win
+     * @return board, or null if the grid is not square, has a value other than 0, 1 or 2,
+     * or the win length is longer than the grid
+     */
+    static Board fromGrid(int[][] grid, int winLength) {
+        int d = grid.length;
+        if (winLength < 1 || winLength > d) return null;
+        Board board = create(d, winLength);
+        for (int i=0; i<d; i++) {
+            if (grid[i] == null || grid[i].length != d) return null;
+            for (int j=0; j<d; j++) {
+                int p = grid[i][j];
+                if (p == 1 || p == 2) {
+                    board.set(i, j, p);
+                } else if (p != 0) {
+                    return null;
+                }
+            }
+        }
+        return board;
+    }
+
+    /**
+     * Count of longs per player for a board dimension
+     * @param dimension The dimension of game board
+     * @return count of longs
+     */
+    static int words(int dimension) {
+        return (dimension * dimension + 63) >>> 6;
+    }
+
+    /**
+     * Bytes of a board written by write(ByteBuffer)
+     * @param dimension The dimension of game board
+     * @return byte length
+     */
+    static int byteLength(int dimension) {
+        return 2 * Long.BYTES * words(dimension);
+    }
+
+    /**
+     * Read a board written by write(ByteBuffer)
+     * @param dimension The dimension of game board
+     * @param winLength Count of marks in a row to win
+     * @param buffer buffer at the position of board
+     * @return board
+     * @throws IllegalArgumentException a bit is set above the last cell, or a cell is set for both players
+     */
+    static Board read(int dimension, int winLength, ByteBuffer buffer) {
+        Board board = create(dimension, winLength);
+        int words = words(dimension);
+        long[] bits = new long[2 * words];
+        for (int i=0; i<bits.length; i++) {
+            bits[i] = buffer.getLong();
+        }
+        int cells = dimension * dimension;
+        long padding = (cells & 63) == 0 ? 0 : -1L << (cells & 63);
+        if (((bits[words - 1] | bits[2 * words - 1]) & padding) != 0) {
+            throw new IllegalArgumentException("Board has a mark above cell " + (cells - 1));
+        }
+        for (int i=0; i<words; i++) {
+            if ((bits[i] & bits[words + i]) != 0) {
+                throw new IllegalArgumentException("Board has a cell of both players");
+            }
+        }
+        board.load(bits);
+        return board;
+    }
+
+    /**
+     * Build a board from bytes of toBytes()
+     * @param dimension The dimension of game board
+     * @param winLength Count of marks in a row to win
+     * @param bytes board bytes
+     * @return board
+     */
+    static Board fromBytes(int dimension, int winLength, byte[] bytes) {
+        return read(dimension, winLength, ByteBuffer.wrap(bytes));
+    }
+
+    /**
+     * Write the bitboards, player 1 longs then player 2 longs. 16 bytes per 64 cells.
+     * @param buffer buffer to write into
+     */
+    void write(ByteBuffer buffer) {
+        for (long word : this.words()) {
+            buffer.putLong(word);
+        }
+    }
+
+    /**
+     * Get the bitboards as bytes
+     * @return board bytes
+     */
+    byte[] toBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(16 * words(this.dimension));
+        this.write(buffer);
+        return buffer.array();
+    }
+
+    /**
+     * Get the board dimension
+     * @return dimension
+     */
+    int dimension() {
+        return this.dimension;
+    }
+
+    /**
+     * Get the count of marks in a row to win
+     * @return win length
+     */
+    int winLength() {
+        return this.winLength;
+    }
+
+    /**
+     * Copy the marks to a board with another win length
+     * @param winLength Count of marks in a row to win
+     * @return new board
+     */
+    Board withWinLength(int winLength) {
+        Board board = create(this.dimension, winLength);
+        board.load(this.words());
+        return board;
+    }
+
+    /**
+     * Get the mark of cell
+     * @param row The row of cell
+     * @param col The column of cell
+     * @return 0 for no mark, 1 for player 1, 2 for player 2.
+     */
+    abstract int get(int row, int col);
+
+    /**
+     * Set the mark of cell
+     * @param row The row of cell
+     * @param col The column of cell
+     * @param player 0 for no mark, 1 for player 1, 2 for player 2.
+     */
+    abstract void set(int row, int col, int player);
+
+    /**
+     * Count the marks of player
+     * @param player 1 for player 1, 2 for player 2
+     * @return count of marks
+     */
+    abstract int count(int player);
+
+    /**
+     * Check all cells in the mask are marked by player
+     * @param player 1 for player 1, 2 for player 2
+     * @param mask line mask, one long per 64 cells
+     * @return true if the player has every cell of mask
+     */
+    abstract boolean covers(int player, long[] mask);
+
+    /**
+     * Count the marks of player in the mask
+     * @param player 1 for player 1, 2 for player 2
+     * @param mask line mask, one long per 64 cells
+     * @return count of marks in the mask
+     */
+    abstract int countIn(int player, long[] mask);
+
+    /**
+     * Count the cells which are different with another board of the same dimension
+     * @param other another board
+     * @return count of different cells
+     */
+    abstract int differences(Board other);
+
+    /**
+     * Find the first cell which is different with another board of the same dimension
+     * @param other another board
+     * @return bit index of the cell (row * dimension + col), -1 if the boards are the same
+     */
+    abstract int firstDifference(Board other);
+
+    /**
+     * Copy this board
+     * @return a new board with the same marks
+     */
+    abstract Board copy();
+
+    /**
+     * Get the bitboards
+     * @return player 1 longs then player 2 longs
+     */
+    abstract long[] words();
+
+    /**
+     * Replace the bitboards
+     * @param words player 1 longs then player 2 longs
+     */
+    abstract void load(long[] words);
+
+    /**
+     * Count the placed cells
+     * @return count of placed cells
+     */
+    int filled() {
+        return this.count(1) + this.count(2);
+    }
+
+    /**
+     * Check every cell was placed
+     * @return true for game board cells were all placed.
+     */
+    boolean full() {
+        return this.filled() == this.dimension * this.dimension;
+    }
+
+    /**
+     * Build the int[][] view of this board
+     * @return grid, 0 for no mark, 1 for player 1, 2 for player 2.
+     */
+    int[][] toGrid() {
+        int d = this.dimension;
+        int[][] grid = new int[d][d];
+        for (int i=0; i<d; i++) {
+            for (int j=0; j<d; j++) {
+                grid[i][j] = this.get(i, j);
+            }
+        }
+        return grid;
+    }
+
+    /**
+     * Find the winner by checking every winning line. Rows first, then columns, then diagonals.
+     * @return 0 for no winner. 1 for player 1, 2 for player 2.
+     */
+    int scanWinner() {
+        if (this.dimension > LineMasks.CACHE_LIMIT) return this.scanRuns();
+
+        for (long[] mask : LineMasks.of(this.dimension, this.winLength).lines) {
+            int p = this.owner(mask);
+            if (p != 0) return p;
+        }
+        return 0;
+    }
+
+    /**
+     * Find the winner by the run of marks from each cell which starts a run, in the same order as the masks.
+     * Each run is counted once, so the cost is O(dimension * dimension) without any masks.
+     */
+    private int scanRuns() {
+        int d = this.dimension;
+        for (int[] direction : DIRECTIONS) {
+            int dr = direction[0], dc = direction[1];
+            for (int i=0; i<d; i++) {
+                for (int j=0; j<d; j++) {
+                    int p = this.get(i, j);
+                    if (p == 0) continue;
+                    int r = i - dr, c = j - dc;
+                    if (r >= 0 && c >= 0 && c < d && this.get(r, c) == p) continue; // inside a run
+                    if (1 + this.run(i, j, dr, dc, p) >= this.winLength) return p;
+                }
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Check the lines through one cell only. Used after a mark is placed on the cell.<br>
+     * A whole line is one mask test. A shorter win length counts the marks next to the cell
+     * in each direction, at most win length - 1 cells each side, so the cost is O(win length).
+     * @param row The row of cell
+     * @param col The column of cell
+     * @return 0 for no winner, otherwise the player who owns the cell.
+     */
+    int winnerThrough(int row, int col) {
+        int p = this.get(row, col);
+        if (p == 0) return 0;
+
+        int d = this.dimension;
+        if (this.winLength == d && d <= LineMasks.CACHE_LIMIT) {
+            LineMasks masks = LineMasks.of(d);
+            if (this.covers(p, masks.rows[row]) || this.covers(p, masks.cols[col])) return p;
+            if (row == col && this.covers(p, masks.diagonal)) return p;
+            if (row + col == d - 1 && this.covers(p, masks.antiDiagonal)) return p;
+            return 0;
+        }
+
+        for (int[] direction : DIRECTIONS) {
+            int count = 1 + this.run(row, col, direction[0], direction[1], p)
+                    + this.run(row, col, -direction[0], -direction[1], p);
+            if (count >= this.winLength) return p;
+        }
+        return 0;
+    }
+
+    /**
+     * Count the marks of player next to a cell in one direction, up to win length - 1
+     */
+    private int run(int row, int col, int dr, int dc, int player) {
+        int count = 0;
+        int r = row + dr, c = col + dc;
+        while (count < this.winLength - 1 && r >= 0 && r < this.dimension && c >= 0 && c < this.dimension
+                && this.get(r, c) == player) {
+            count++;
+            r += dr;
+            c += dc;
+        }
+        return count;
+    }
+
+    /**
+     * Count the winning lines through each cell, without building the masks
+     * @param d The dimension of game board
+     * @param k Count of marks in a row to win
+     * @return count of lines by bit index of cell
+     */
+    static int[] linesThrough(int d, int k) {
+        int[] lines = new int[d * d];
+        for (int[] direction : DIRECTIONS) {
+            for (int i=0; i<d; i++) {
+                for (int j=0; j<d; j++) {
+                    int endRow = i + (k - 1) * direction[0], endCol = j + (k - 1) * direction[1];
+                    if (endRow >= d || endCol < 0 || endCol >= d) continue;
+                    for (int n=0; n<k; n++) {
+                        lines[(i + n * direction[0]) * d + j + n * direction[1]]++;
+                    }
+                }
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * Find the player who owns all cells of the line
+     */
+    private int owner(long[] mask) {
+        if (this.covers(1, mask)) return 1;
+        if (this.covers(2, mask)) return 2;
+        return 0;
+    }
+
+    /**
+     * Precomputed masks of all lines on a board dimension
+     */
+    static final class LineMasks {
+        /**
+         * The largest dimension of cached masks. The masks of all dimensions and win lengths up to it
+         * take about 2 MB, a 100x100 board with win length 3 takes about 50 MB alone.
+         */
+        static final int CACHE_LIMIT = 16;
+
+        /**
+         * Masks cache by dimension and win length, up to CACHE_LIMIT
+         */
+        private static final ConcurrentHashMap<Integer, LineMasks> CACHE = new ConcurrentHashMap<>();
+
+        final long[][] rows;
+        final long[][] cols;
+        final long[] diagonal;
+        final long[] antiDiagonal;
+
+        /**
+         * Every winning line of win length cells: rows, then columns, then diagonals, then anti-diagonals.
+         * For the full win length, the rows, the columns and the two diagonals.
+         */
+        final long[][] lines;
+
+        /**
+         * Count of winning lines through each cell
+         */
+        final int[] linesThrough;
+
+        private LineMasks(int d, int k) {
+            int words = words(d);
+            this.rows = new long[d][words];
+            this.cols = new long[d][words];
+            this.diagonal = new long[words];
+            this.antiDiagonal = new long[words];
+
+            for (int i=0; i<d; i++) {
+                for (int j=0; j<d; j++) {
+                    int index = i * d + j;
+                    long bit = 1L << (index & 63);
+                    int word = index >>> 6;
+                    this.rows[i][word] |= bit;
+                    this.cols[j][word] |= bit;
+                    if (i == j) this.diagonal[word] |= bit;
+                    if (i + j == d - 1) this.antiDiagonal[word] |= bit;
+                }
+            }
+
+            List<long[]> lines = new ArrayList<>();
+            this.linesThrough = Board.linesThrough(d, k);
+            for (int[] direction : DIRECTIONS) {
+                for (int i=0; i<d; i++) {
+                    for (int j=0; j<d; j++) {
+                        int endRow = i + (k - 1) * direction[0], endCol = j + (k - 1) * direction[1];
+                        if (endRow >= d || endCol < 0 || endCol >= d) continue;
+                        long[] line = new long[words];
+                        for (int n=0; n<k; n++) {
+                            int index = (i + n * direction[0]) * d + j + n * direction[1];
+                            line[index >>> 6] |= 1L << (index & 63);
+                        }
+                        lines.add(line);
+                    }
+                }
+            }
+            this.lines = lines.toArray(new long[lines.size()][]);
+        }
+
+        /**
+         * Get the line masks of dimension, the winning lines are whole lines
+         * @param dimension The dimension of game board
+         * @return line masks
+         */
+        static LineMasks of(int dimension) {
+            return of(dimension, dimension);
+        }
+
+        /**
+         * Get the line masks of dimension and win length. The masks of a dimension over CACHE_LIMIT
+         * are built for each call and not kept.
+         * @param dimension The dimension of game board
+         * @param winLength Count of marks in a row to win
+         * @return line masks
+         */
+        static LineMasks of(int dimension, int winLength) {
+            if (dimension > CACHE_LIMIT) return new LineMasks(dimension, winLength);
+
+            Integer key = dimension << 16 | winLength;
+            LineMasks masks = CACHE.get(key);
+            if (masks == null) {
+                masks = new LineMasks(dimension, winLength);
+                LineMasks existing = CACHE.putIfAbsent(key, masks);
+                if (existing != null) masks = existing;
+            }
+            return masks;
+        }
+    }
+}
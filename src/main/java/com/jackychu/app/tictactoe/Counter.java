@@ -0,0 +1,50 @@
+package com.jackychu.app.tictactoe;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free counter for hot paths, like LongAdder of Java 8.<br>
+ * The count is split into cells, and a thread adds to the cell of its id, so threads on different cores
+ * don't fight for one cache line. Each cell takes a cache line of its own.
+ * The sum is read by adding all cells, and may miss adds which run at the same time.
+ */
+final class Counter {
+    /**
+     * Count of cells, a power of 2 not less than twice of the cores
+     */
+    private static final int CELLS = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() * 2 - 1)) * 2;
+
+    /**
+     * Longs between two cells, 64 bytes
+     */
+    private static final int PAD = 8;
+
+    private final AtomicLongArray cells = new AtomicLongArray(CELLS * PAD);
+
+    /**
+     * Add one
+     */
+    void increment() {
+        this.add(1);
+    }
+
+    /**
+     * Add to the count
+     * @param n value to add
+     */
+    void add(long n) {
+        this.cells.getAndAdd(((int) Thread.currentThread().threadId() & (CELLS - 1)) * PAD, n);
+    }
+
+    /**
+     * Get the count
+     * @return sum of all cells
+     */
+    long sum() {
+        long sum = 0;
+        for (int i=0; i<CELLS; i++) {
+            sum += this.cells.get(i * PAD);
+        }
+        return sum;
+    }
+}
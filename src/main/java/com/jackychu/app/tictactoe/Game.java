@@ -3,32 +3,58 @@ package com.jackychu.app.tictactoe;
 import java.io.Serializable;
 import javax.xml.bind.annotation.XmlRootElement;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 
 /**
- *  This class store the tic-tac-toe (3x3) game status.<br>
+ *  This class store the tic-tac-toe (NxN, default 3x3) game status.<br>
  *  Each cell on the board is one of three kind of values: 0 for no mark, 1 for player 1, 2 for player 2.<br>
  *  Players who is O or X depends on UI representation<br>
- *  TODO: Enhance to support dimension larger than 3
+ *  A player wins with winLength marks in a row (k in a row), by default a whole row, column or diagonal.
+ *  winLength is only in JSON if it is not the dimension.<br>
+ *  The board is stored as bitboards. The int[][] grid is only a view for callers, built when it is asked for.
  */
 @XmlRootElement
+@JsonPropertyOrder({"id", "dimension", "winLength", "grid", "status", "winner", "lastUpdateTime"})
 public class Game implements Serializable {
 	/**
 	 * UUID of games instance
 	 */
 	private String id;
 
+	/**
+	 * Max dimension of game board
+	 */
+	public static final int MAX_DIMENSION = 100;
+
 	/**
 	 * The game board dimension.
-	 * Default is 3x3. Can extend to 5x5, 7x7 in the future.
+	 * Default is 3x3.
 	 */
 	private int dimension = 3;
 
+	/**
+	 * Count of marks in a row to win. 0 for a whole line, the same as dimension.
+	 */
+	private int winLength;
+
 	/**
 	 * The game board. 0 for no mark, 1 for mark O, 2 for mark X.
 	 */
-	private int[][] grid;
+	private Board board;
+
+	/**
+	 * The int[][] view of board. Built lazily by getGrid, and written through to the board.
+	 */
+	private transient int[][] grid;
+
+	/**
+	 * The grid set by user is not square, has a value other than 0, 1 or 2, or is shorter than winLength.
+	 */
+	private transient boolean illegalGrid;
 
 	/**
 	 * The status of Game. START, PLAYING and END
@@ -45,6 +71,21 @@ public class Game implements Serializable {
 	 */
 	private long lastUpdateTime;
 
+	/**
+	 * The version of game in store. Increased by one for each update.
+	 */
+	private long version;
+
+	/**
+	 * The winner found by the incremental check. -1 until the board is checked once.
+	 */
+	private int lineWinner = -1;
+
+	/**
+	 * The JSON of game, encoded on the first read. Cleared by every change of the game.
+	 */
+	private transient volatile byte[] json;
+
 	/**
 	 * The status of game. START, PLAYING and END
 	 */
@@ -60,16 +101,39 @@ public class Game implements Serializable {
 	}
 
     /**
-     * Create nxn game with input dimension. <br>
-     * TODO: If want to extend dimension larger than 3, need check the dimension is odd number
+     * Create nxn game with input dimension. A player wins with a whole line.
      * @param dimension The dimension of game board
      */
 	public Game(int dimension) {
-		this.grid = new int[dimension][dimension];
+		this(dimension, dimension);
+	}
+
+    /**
+     * Create nxn game where a player wins with winLength marks in a row.
+     * @param dimension The dimension of game board, from 1 to MAX_DIMENSION
+     * @param winLength Count of marks in a row to win, from 1 to dimension
+     */
+	public Game(int dimension, int winLength) {
+		if (dimension < 1 || dimension > MAX_DIMENSION) {
+			throw new IllegalArgumentException("Dimension should be from 1 to " + MAX_DIMENSION + ": " + dimension);
+		}
+		this.board = Board.create(dimension, winLength);
+		this.dimension = dimension;
+		this.winLength = winLength == dimension ? 0 : winLength;
 		this.id = java.util.UUID.randomUUID().toString();
 		this.status = Status.START;
 		this.lastUpdateTime = System.currentTimeMillis();
 	}
+
+    /**
+     * Create game with a known id and board. No random id is generated, so copies and restores are cheap.
+     * @param id UUID of game
+     * @param board The game board
+     */
+	private Game(String id, Board board) {
+		this.id = id;
+		this.board = board;
+	}
 	
 	public String getId() {
 		return this.id;
@@ -77,6 +141,7 @@ public class Game implements Serializable {
 	
 	public void setId(String id) {
 		this.id = id;
+		this.json = null;
 	}
 
 	public int getDimension() {
@@ -88,20 +153,119 @@ public class Game implements Serializable {
 	//	this.dimension = dimension;
 	//}
 
+    /**
+     * Get the count of marks in a row to win
+     * @return win length, the dimension if a player wins with a whole line
+     */
+	@JsonIgnore
+	public int getWinLength() {
+		return this.board().winLength();
+	}
+
+    /**
+     * Win length for JSON, null for a whole line
+     * @return win length or null
+     */
+	@JsonProperty("winLength")
+	@JsonInclude(JsonInclude.Include.NON_NULL)
+	private Integer winLengthForJson() {
+		return this.winLength == 0 ? null : this.winLength;
+	}
+
+    /**
+     * Set win length from JSON. Applied to the board now, and to the grid if it is set later.
+     * @param winLength count of marks in a row to win, null for a whole line
+     */
+	@JsonProperty("winLength")
+	private void setWinLengthFromJson(Integer winLength) {
+		this.winLength = winLength == null ? 0 : winLength;
+		int k = this.winLength == 0 ? this.board.dimension() : this.winLength;
+		if (k >= 1 && k <= this.board.dimension()) {
+			this.board = this.board().withWinLength(k);
+			this.lineWinner = -1;
+			this.json = null;
+		} else {
+			this.illegalGrid = true;
+		}
+	}
+
 	public int getWinner() {
 		return this.winner;
 	}
 	
 	public void setWinner(int winner) {
 		this.winner = winner;
+		this.json = null;
 	}
 
+    /**
+     * Get the int[][] view of the game board.<br>
+     * The view is built once and kept until setGrid. Changes written into the array are seen by the game,
+     * they are applied to the board on its next read.
+     * @return game board. 0 for no mark, 1 for mark O, 2 for mark X.
+     */
+	@JsonIgnore
 	public int[][] getGrid() {
+		if (this.grid == null) {
+			this.grid = this.board().toGrid();
+		}
 		return this.grid;
 	}
-	
+
+    /**
+     * Grid for JSON. A temporary one is built, so a stored game never keeps the int[][] after it is serialized.
+     * @return game board
+     */
+	@JsonProperty("grid")
+	private int[][] gridForJson() {
+		return this.board().toGrid();
+	}
+
+    /**
+     * Replace the game board.
+     * @param grid game board. 0 for no mark, 1 for mark O, 2 for mark X.
+     */
+	@JsonProperty("grid")
 	public void setGrid(int[][] grid) {
-		this.grid = grid;
+		Board board = grid == null ? null : Board.fromGrid(grid, this.winLength == 0 ? grid.length : this.winLength);
+		this.illegalGrid = board == null;
+		this.board = board == null ? Board.create(this.board.dimension(), this.board.winLength()) : board;
+		this.grid = null;
+		this.lineWinner = -1;
+		this.json = null;
+	}
+
+    /**
+     * Get the bitboard of game. Changes written into the grid view are applied first.
+     * @return board
+     */
+	Board board() {
+		int[][] grid = this.grid;
+		if (grid != null && !this.matches(grid)) {
+			Board board = Board.fromGrid(grid, this.board.winLength());
+			if (board == null) {
+				this.illegalGrid = true;
+			} else {
+				this.board = board;
+				this.lineWinner = -1;
+			}
+			this.json = null;
+		}
+		return this.board;
+	}
+
+    /**
+     * Check the grid view has the same cells as the board
+     */
+	private boolean matches(int[][] grid) {
+		int d = this.board.dimension();
+		for (int i=0; i<d; i++) {
+			if (grid[i] == null || grid[i].length != d) return false;
+			for (int j=0; j<d; j++) {
+				if (grid[i][j] != this.board.get(i, j)) return false;
+			}
+		}
+		return true;
 	}
 	
 	public Status getStatus() {
@@ -110,6 +274,20 @@ public class Game implements Serializable {
 	
 	public void setStatus(Status s) {
 		this.status = s;
+		this.json = null;
+	}
+
+    /**
+     * The version is managed by GameStore and not sent to client.
+     * @return version of game
+     */
+	@JsonIgnore
+	public long getVersion() {
+		return this.version;
+	}
+
+	void setVersion(long version) {
+		this.version = version;
 	}
 
     /**
@@ -119,21 +297,129 @@ public class Game implements Serializable {
      */
 	public void updateTime() {
 		this.lastUpdateTime = System.currentTimeMillis();
+		this.json = null;
 	}
 
 	public long getLastUpdateTime() {
 		return this.lastUpdateTime;
 	}
 
+    /**
+     * Place a mark and update the winner and status incrementally.<br>
+     * Only the lines through the cell are mask tested, so the cost doesn't depend on the board size.
+     * @param row The row of cell
+     * @param col The column of cell
+     * @param player 1 for player 1, 2 for player 2
+     * @return 0 for no winner. 1 for player 1, 2 for player 2.
+     */
+	public int place(int row, int col, int player) {
+		int winner = this.incrementalWinner();
+		Board board = this.board();
+		board.set(row, col, player);
+		if (this.grid != null) {
+			this.grid[row][col] = player;
+		}
+		if (winner == 0) {
+			this.lineWinner = board.winnerThrough(row, col);
+		}
+		this.winner = this.lineWinner;
+
+		if (this.winner != 0 || board.full()) {
+			this.status = Status.END;
+		} else {
+			this.status = Status.PLAYING;
+		}
+		this.json = null;
+		return this.winner;
+	}
+
+    /**
+     * Check who is the winner with the incremental counters.<br>
+     * Same result as checkWinner, without scanning the board.
+     * @return 0 for no winner (maybe draw or the game still playing). 1 for player 1, 2 for player 2.
+     */
+	public int incrementalWinner() {
+		Board board = this.board();
+		if (this.lineWinner < 0) {
+			this.lineWinner = board.scanWinner();
+		}
+		if (this.lineWinner != 0 && this.winner != this.lineWinner) {
+			this.winner = this.lineWinner;
+			this.json = null;
+		}
+		return this.lineWinner;
+	}
+
+    /**
+     * Check the game board's cells were be placed with the incremental counters.<br>
+     * Same result as checkFull, without scanning the board.
+     * @return true for game board cells were all placed.
+     */
+	public boolean incrementalFull() {
+		return this.board().full();
+	}
+
+    /**
+     * Copy this game. The copy has the same id and its own board.
+     * @return a new game with the same status
+     */
+	public Game copy() {
+		Game g = new Game(this.id, this.board().copy());
+		g.dimension = this.dimension;
+		g.winLength = this.winLength;
+		g.status = this.status;
+		g.winner = this.winner;
+		g.lastUpdateTime = this.lastUpdateTime;
+		g.lineWinner = this.lineWinner;
+		g.version = this.version;
+		return g;
+	}
+
+    /**
+     * Rebuild a stored game. Used by persistence, the values are not checked.
+     * @param id Game id
+     * @param board The game board, with the dimension and win length of game
+     * @param status The status of game
+     * @param winner The winner
+     * @param lastUpdateTime The time of last update
+     * @param version The version of game in store
+     * @return Game object
+     */
+	static Game restore(String id, Board board, Status status, int winner, long lastUpdateTime, long version) {
+		Game g = new Game(id, board);
+		g.dimension = board.dimension();
+		g.winLength = board.winLength() == board.dimension() ? 0 : board.winLength();
+		g.status = status;
+		g.winner = winner;
+		g.lastUpdateTime = lastUpdateTime;
+		g.version = version;
+		return g;
+	}
+
     /**
      * Convert game instance to JSON format.
      * @return json string of game
      * @throws Exception Convert fail
      */
 	public String toJson() throws Exception{
-		ObjectMapper mapper = new ObjectMapper();
-		String jsonString = mapper.writeValueAsString(this);
-		return jsonString;
+		return JsonCodec.GAME_WRITER.writeValueAsString(this);
+	}
+
+    /**
+     * Get the JSON of game, encoded once and kept with the game until it is changed.<br>
+     * Games read from GameStore are not changed in place and an update stores a new game,
+     * so the bytes are encoded once per version.
+     * @return json of game in UTF-8
+     * @throws JsonProcessingException Convert fail
+     */
+	byte[] toJsonBytes() throws JsonProcessingException {
+		this.board();
+		byte[] json = this.json;
+		if (json == null) {
+			json = JsonCodec.GAME_WRITER.writeValueAsBytes(this);
+			this.json = json;
+		}
+		return json;
 	}
 
     /**
@@ -143,9 +429,7 @@ public class Game implements Serializable {
     @Override
     public String toString(){
 	    try {
-            ObjectMapper mapper = new ObjectMapper();
-            String jsonString = mapper.writeValueAsString(this);
-            return jsonString;
+            return JsonCodec.GAME_WRITER.writeValueAsString(this);
 	    } catch (JsonProcessingException e) {
             e.printStackTrace();
         }
@@ -159,15 +443,13 @@ public class Game implements Serializable {
      * @throws Exception Convert fail
      */
 	public static Game fromJson(String jsonString) throws Exception{
-		ObjectMapper mapper = new ObjectMapper();
-		Game g = mapper.readValue(jsonString, Game.class);
-		return g;
+		return JsonCodec.GAME_READER.readValue(jsonString);
 	}
 
     /**
      * Compare current game with lastest game.<br>
      * 1. The id should be the same<br>
-     * 2. the dimension should be the same<br>
+     * 2. the dimension and the win length should be the same<br>
      * 3. lastest game's lastUpdateTime should be greater then current game<br>
      * 4. Game status check<br>
      * 5. grid data check<br>
@@ -178,36 +460,32 @@ public class Game implements Serializable {
 	public boolean validate(Game latestGame) {
 		if (!this.id.equals(latestGame.getId())) return false;
 		if (this.dimension != latestGame.getDimension()) return false;
+		if (this.getWinLength() != latestGame.getWinLength()) return false;
 		if (this.lastUpdateTime > latestGame.getLastUpdateTime()) return false;
 		if (this.status == Status.END && latestGame.getStatus() != Status.END) return false;
 		if (this.status == Status.PLAYING &&
                 !(latestGame.getStatus() == Status.PLAYING || latestGame.getStatus() == Status.END)) return false;
 		
-		int[][] grid = this.grid;
-		int[][] latestGrid = latestGame.getGrid();
-		
-		int count1 = 0, count2 = 0;
-		int latestCount1 = 0, latestCount2 = 0;
-		boolean differenceFound = false;
+		// The grid value only 0, 1, 2
+		Board board = this.board();
+		Board latestBoard = latestGame.board();
+		if (latestGame.illegalGrid) return false;
+
+		if (board.dimension() != latestBoard.dimension()) return false;
+
+		int count1 = board.count(1), count2 = board.count(2);
+		int latestCount1 = latestBoard.count(1), latestCount2 = latestBoard.count(2);
+
+		// Only one grid cell difference with current game
+		// In other word, only one move after last game status
+		int differences = board.differences(latestBoard);
+		if (differences > 1) return false; //Only allow one difference
+		boolean differenceFound = differences == 1;
 		int difference = 0;
-		
-		for (int i=0; i<this.dimension; i++) {
-			for (int j=0; j<this.dimension; j++) {
-			    // The grid value only 0, 1, 2
-				if (latestGrid[i][j] != 0 && latestGrid[i][j] != 1 && latestGrid[i][j] != 2) return false;
-				if (grid[i][j] == 1) count1++;
-				if (grid[i][j] == 2) count2++;
-				if (latestGrid[i][j] == 1) latestCount1++;
-				if (latestGrid[i][j] == 2) latestCount2++;
-
-				// Only one grid cell difference with current game
-                // In other word, only one move after last game status
-				if (grid[i][j] != latestGrid[i][j]) {
-					if (differenceFound) return false; //Only allow one difference
-					difference = latestGrid[i][j];
-					differenceFound = true;
-				}
-			}
+		if (differenceFound) {
+			int index = board.firstDifference(latestBoard);
+			int d = latestBoard.dimension();
+			difference = latestBoard.get(index / d, index % d);
 		}
 
         // Two games are the same status
@@ -225,67 +503,57 @@ public class Game implements Serializable {
 	}
 
     /**
-     * Check who is the winner
-     * @return 0 for no winner (maybe draw or the game still playing). 1 for player 1, 2 for player 2.
+     * Check one move is the next move of current game.<br>
+     * Same rules as validate(Game), without comparing the whole board.<br>
+     * 1. Game status is not END<br>
+     * 2. Player is 1 or 2<br>
+     * 3. The cell is on the board and has no mark<br>
+     * 4. Player 1 moves when both players have the same count of moves, otherwise player 2<br>
+     *
+     * @param move the next move
+     * @return true for the move can be placed on current game.
      */
-	public int checkWinner() {
-		int[][] grid = this.grid;
-		int d = this.dimension;
-		
-		//Check Columns
-		for (int i=0; i<d; i++) {
-			boolean win = true;
-			for(int j=0; j<d-1; j++) {
-				win = win && grid[i][j] != 0 && grid[i][j] == grid[i][j+1];
-				if (!win) break;
-			}
+	public boolean validate(Move move) {
+		if (this.status == Status.END) return false;
 
-			if (win) {
-				this.winner = grid[i][0];
-				return this.winner;
-			}
-		}
-		
-		//Check Rows
-		for (int j=0; j<d; j++) {
-			boolean win = true;
-			for(int i=0; i<d-1; i++) {
-				win = win && grid[i][j] != 0 && grid[i][j] == grid[i+1][j];
-				if (!win) break;
-			}
+		int player = move.getPlayer();
+		if (player != 1 && player != 2) return false;
 
-			if (win) {
-				this.winner = grid[0][j];
-				return this.winner;
-			}
-		}
-		
-		//Check Diagonals
-		boolean win = true;
-		for (int i=0; i<d-1; i++) {
-			win = win && grid[i][i] != 0 && grid[i][i] == grid[i+1][i+1];
-			if (!win) break;
-		}
+		Board board = this.board();
+		int d = board.dimension();
+		int row = move.getRow(), col = move.getCol();
+		if (row < 0 || row >= d || col < 0 || col >= d) return false;
+		if (board.get(row, col) != 0) return false;
 
-		if (win) {
-			this.winner = grid[0][0];
-			return this.winner;
-		}
+		int count1 = board.count(1), count2 = board.count(2);
+		if (player == 1) return count1 == count2;
+		return count1 == count2 + 1;
+	}
 
-		//Check Diagonals2
-		win = true;
-		for (int i=0; i<d-1; i++) {
-			int j = d - 1 - i;
-			win = win && grid[i][j] != 0 && grid[i][j] == grid[i+1][j-1];
-			if (!win) break;
-		}
+    /**
+     * Apply one move on current game. The move should be checked by validate(Move).<br>
+     * Update winner, status and lastUpdateTime.
+     * @param move the next move
+     * @return 0 for no winner. 1 for player 1, 2 for player 2.
+     */
+	public int play(Move move) {
+		int winner = this.place(move.getRow(), move.getCol(), move.getPlayer());
+		this.updateTime();
+		return winner;
+	}
 
-		if (win) {
-			this.winner = grid[0][d-1];
-			return this.winner;
+    /**
+     * Check who is the winner
+     * @return 0 for no winner (maybe draw or the game still playing). 1 for player 1, 2 for player 2.
+     */
+	public int checkWinner() {
+		// Rows, columns, then diagonals. Each winning line is one mask test.
+		int winner = this.board().scanWinner();
+		if (winner != 0 && this.winner != winner) {
+			this.winner = winner;
+			this.json = null;
 		}
-		
-		return 0;
+		return winner;
 	}
 
     /**
@@ -293,14 +561,6 @@ public class Game implements Serializable {
      * @return true for game board cells were all placed.
      */
 	public boolean checkFull() {
-		int d = this.dimension;
-		
-		for (int i=0; i<d; i++) {
-			for(int j=0; j<d; j++) {
-				if (this.grid[i][j] == 0) return false;
-			}
-		}
-		
-		return true;
+		return this.board().full();
 	}
 }
\ No newline at end of file
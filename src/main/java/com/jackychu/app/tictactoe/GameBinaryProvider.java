@@ -0,0 +1,110 @@
+package com.jackychu.app.tictactoe;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Type;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.Consumes;
+import javax.ws.rs.Produces;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.MultivaluedMap;
+import javax.ws.rs.ext.MessageBodyReader;
+import javax.ws.rs.ext.MessageBodyWriter;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * Compact binary body of games, for clients which ask for {@value #APPLICATION_GAME}.<br>
+ * A game is encoded as in {@link GameSnapshot}: the UUID as 16 bytes and the board as bitboards,
+ * 55 bytes for a 3x3 game and 103 bytes for a 15x15 game.<br>
+ * A map of games (GET all) is an int count followed by the games.
+ * An error message is its UTF-8 text, the http status tells it is an error.
+ */
+@Provider
+@Produces(GameBinaryProvider.APPLICATION_GAME)
+@Consumes(GameBinaryProvider.APPLICATION_GAME)
+public class GameBinaryProvider implements MessageBodyReader<Game>, MessageBodyWriter<Object> {
+    /**
+     * Media type of binary game
+     */
+    public static final String APPLICATION_GAME = "application/x-tictactoe-game";
+
+    /**
+     * Media type of binary game
+     */
+    public static final MediaType APPLICATION_GAME_TYPE = MediaType.valueOf(APPLICATION_GAME);
+
+    /**
+     * Max size of a request body. A game of Game.MAX_DIMENSION is about 2.5 KB, the rest is for a long id
+     */
+    private static final int MAX_BODY_SIZE = 1 << 20;
+
+    @Override
+    public boolean isReadable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return type == Game.class;
+    }
+
+    @Override
+    public Game readFrom(Class<Game> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                         MultivaluedMap<String, String> httpHeaders, InputStream entityStream) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream(128);
+        byte[] chunk = new byte[4096];
+        int n;
+        while ((n = entityStream.read(chunk)) > 0) {
+            body.write(chunk, 0, n);
+            if (body.size() > MAX_BODY_SIZE) throw new BadRequestException("Game is too large");
+        }
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(body.toByteArray());
+            Game game = GameSnapshot.readGame(buffer);
+            if (buffer.hasRemaining()) throw new BadRequestException("Game has " + buffer.remaining() + " more bytes");
+            return game;
+        } catch (IOException e) {
+            throw new BadRequestException(e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public boolean isWriteable(Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return type == Game.class || type == ErrorMessage.class || Map.class.isAssignableFrom(type);
+    }
+
+    @Override
+    public long getSize(Object entity, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType) {
+        return -1;
+    }
+
+    @Override
+    public void writeTo(Object entity, Class<?> type, Type genericType, Annotation[] annotations, MediaType mediaType,
+                        MultivaluedMap<String, Object> httpHeaders, OutputStream entityStream) throws IOException {
+        if (entity instanceof ErrorMessage) {
+            entityStream.write(((ErrorMessage) entity).getMessage().getBytes(StandardCharsets.UTF_8));
+            return;
+        }
+
+        ByteBuffer buffer;
+        if (entity instanceof Game) {
+            Game game = (Game) entity;
+            buffer = ByteBuffer.allocate(GameSnapshot.sizeOf(game));
+            GameSnapshot.writeGame(buffer, game);
+        } else {
+            Collection<?> games = ((Map<?, ?>) entity).values();
+            int size = 4;
+            for (Object g : games) {
+                size += GameSnapshot.sizeOf((Game) g);
+            }
+            buffer = ByteBuffer.allocate(size);
+            buffer.putInt(games.size());
+            for (Object g : games) {
+                GameSnapshot.writeGame(buffer, (Game) g);
+            }
+        }
+        entityStream.write(buffer.array(), 0, buffer.position());
+    }
+}
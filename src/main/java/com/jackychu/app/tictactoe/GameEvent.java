@@ -0,0 +1,141 @@
+package com.jackychu.app.tictactoe;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * The class for a pushed change of game.<br>
+ * Only carries the cells changed by the update and the game status after it, not the whole board.<br>
+ * Will convert to json format automatically when pushed to client.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class GameEvent {
+    /**
+     * Id of game
+     */
+    private String id;
+
+    /**
+     * The version of game after the change
+     */
+    private long version;
+
+    /**
+     * The version of game the change applies to, 0 if the game is new.
+     * A client missed changes if it differs from the version it has.
+     */
+    private long previousVersion;
+
+    /**
+     * The changed cells, each with the player of the cell now
+     */
+    private List<Move> moves;
+
+    /**
+     * The status of game after the change
+     */
+    private Game.Status status;
+
+    /**
+     * The winner after the change. 0 for no winner
+     */
+    private int winner;
+
+    /**
+     * The lastUpdateTime of game after the change
+     */
+    private long lastUpdateTime;
+
+    /**
+     * Constructor for json conversion
+     */
+    public GameEvent() {
+    }
+
+    /**
+     * Build the change between two versions of a game
+     * @param before the game before change, null if the game is new
+     * @param after the game after change
+     */
+    public GameEvent(Game before, Game after) {
+        this.id = after.getId();
+        this.version = after.getVersion();
+        this.previousVersion = before == null ? 0 : before.getVersion();
+        this.status = after.getStatus();
+        this.winner = after.getWinner();
+        this.lastUpdateTime = after.getLastUpdateTime();
+
+        Board to = after.board();
+        Board from = before == null || before.board().dimension() != to.dimension()
+                ? Board.create(to.dimension()) : before.board();
+        int d = to.dimension();
+        int changes = from.differences(to);
+        this.moves = new ArrayList<>(changes);
+        Board walk = from.copy();
+        for (int i=0; i<changes; i++) {
+            int index = walk.firstDifference(to);
+            int row = index / d, col = index % d;
+            int player = to.get(row, col);
+            walk.set(row, col, player);
+            this.moves.add(new Move(row, col, player));
+        }
+    }
+
+    public String getId() {
+        return this.id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public long getVersion() {
+        return this.version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public long getPreviousVersion() {
+        return this.previousVersion;
+    }
+
+    public void setPreviousVersion(long previousVersion) {
+        this.previousVersion = previousVersion;
+    }
+
+    public List<Move> getMoves() {
+        return this.moves;
+    }
+
+    public void setMoves(List<Move> moves) {
+        this.moves = moves;
+    }
+
+    public Game.Status getStatus() {
+        return this.status;
+    }
+
+    public void setStatus(Game.Status status) {
+        this.status = status;
+    }
+
+    public int getWinner() {
+        return this.winner;
+    }
+
+    public void setWinner(int winner) {
+        this.winner = winner;
+    }
+
+    public long getLastUpdateTime() {
+        return this.lastUpdateTime;
+    }
+
+    public void setLastUpdateTime(long lastUpdateTime) {
+        this.lastUpdateTime = lastUpdateTime;
+    }
+}
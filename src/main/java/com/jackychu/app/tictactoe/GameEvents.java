@@ -0,0 +1,571 @@
+package com.jackychu.app.tictactoe;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArraySet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Push accepted game changes to subscribers of the game ids.<br>
+ * Every subscriber has a bounded queue. Publishing never blocks: the event is queued and a
+ * sender thread writes the queue to the subscriber. If a slow subscriber lets its queue fill up,
+ * the queued events are dropped and the subscriber gets the current state of its games
+ * (a resync event) when it catches up, so memory per subscriber stays bounded.<br>
+ * Every subscriber gets a heartbeat when the heartbeat time passes, so a client which is gone is found
+ * and cancelled even if its games never change again.<br>
+ * A write to a stalled client blocks its sender thread until the write timeout of the server,
+ * so there are many more sender threads than CPUs. Idle threads end after a minute.<br>
+ * A request can also wait for the next change of one game (long poll) without holding a thread.
+ * Waiters are woken on their own threads, not behind the writes to subscribers.
+ */
+public class GameEvents implements Closeable {
+    private static final Logger LOGGER = Logger.getLogger(GameEvents.class.getName());
+
+    /**
+     * Event name of a change, the data is GameEvent
+     */
+    public static final String MOVE = "move";
+
+    /**
+     * Event name of a deleted game, the data is the game id
+     */
+    public static final String DELETE = "delete";
+
+    /**
+     * Event name of the full game after events were dropped, the data is Game.
+     * A game deleted meanwhile is sent as DELETE instead.
+     */
+    public static final String RESYNC = "resync";
+
+    /**
+     * Event name of a heartbeat, which has no data. The client ignores it.
+     */
+    public static final String HEARTBEAT = "heartbeat";
+
+    /**
+     * Default count of queued events per subscriber
+     */
+    public static final int DEFAULT_QUEUE_SIZE = 64;
+
+    /**
+     * Default max count of threads writing events, and of threads waking waiters
+     */
+    public static final int DEFAULT_SENDER_THREADS = 64;
+
+    /**
+     * Default time between two heartbeats
+     */
+    public static final long DEFAULT_HEARTBEAT_MILLIS = TimeUnit.SECONDS.toMillis(15);
+
+    /**
+     * Max count of game ids of one subscriber
+     */
+    public static final int MAX_GAMES_PER_SUBSCRIBER = 100;
+
+    /**
+     * Thread number of event threads
+     */
+    private static final AtomicInteger SENDER_COUNT = new AtomicInteger();
+
+    /**
+     * Subscriptions by game id
+     */
+    private final ConcurrentHashMap<String, Set<Subscription>> subscriptions = new ConcurrentHashMap<>();
+
+    /**
+     * All active subscriptions, for heartbeats
+     */
+    private final Set<Subscription> active = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Requests waiting for the next change, by game id
+     */
+    private final ConcurrentHashMap<String, Set<Waiter>> waiters = new ConcurrentHashMap<>();
+
+    /**
+     * Count of waiting requests
+     */
+    private final AtomicInteger waiting = new AtomicInteger();
+
+    /**
+     * Count of queued events per subscriber
+     */
+    private final int queueSize;
+
+    /**
+     * Threads writing events to subscribers
+     */
+    private final ExecutorService senders;
+
+    /**
+     * Threads calling waiters
+     */
+    private final ExecutorService wakers;
+
+    /**
+     * Background heartbeat of subscribers. Null if heartbeat time is 0.
+     */
+    private final ScheduledExecutorService heartbeat;
+
+    /**
+     * The store to read games for resync
+     */
+    private volatile GameStore source;
+
+    /**
+     * Count of active subscriptions
+     */
+    private final AtomicInteger subscribers = new AtomicInteger();
+
+    /**
+     * Count of events written to subscribers
+     */
+    private final AtomicLong sent = new AtomicLong();
+
+    /**
+     * Count of events dropped for slow subscribers
+     */
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * Create with default queue size, sender threads and heartbeat time
+     */
+    public GameEvents() {
+        this(DEFAULT_QUEUE_SIZE, DEFAULT_SENDER_THREADS);
+    }
+
+    /**
+     * Create event hub with default heartbeat time
+     * @param queueSize count of queued events per subscriber
+     * @param senderThreads max count of threads writing events
+     */
+    public GameEvents(int queueSize, int senderThreads) {
+        this(queueSize, senderThreads, DEFAULT_HEARTBEAT_MILLIS);
+    }
+
+    /**
+     * Create event hub
+     * @param queueSize count of queued events per subscriber
+     * @param senderThreads max count of threads writing events
+     * @param heartbeatMillis time between two heartbeats, 0 for none
+     */
+    public GameEvents(int queueSize, int senderThreads, long heartbeatMillis) {
+        if (queueSize <= 0) throw new IllegalArgumentException("Queue size should be positive: " + queueSize);
+        if (heartbeatMillis < 0) throw new IllegalArgumentException("Heartbeat should not be negative: " + heartbeatMillis);
+
+        this.queueSize = queueSize;
+        this.senders = newPool("game-events-sender-", senderThreads);
+        this.wakers = newPool("game-events-waker-", senderThreads);
+        if (heartbeatMillis > 0) {
+            this.heartbeat = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "game-events-heartbeat-" + SENDER_COUNT.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+            this.heartbeat.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    ping();
+                }
+            }, heartbeatMillis, heartbeatMillis, TimeUnit.MILLISECONDS);
+        } else {
+            this.heartbeat = null;
+        }
+    }
+
+    /**
+     * Pool of up to the given count of daemon threads, which end after a minute of idle
+     */
+    private static ExecutorService newPool(final String name, int threads) {
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 1, TimeUnit.MINUTES,
+                new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, name + SENDER_COUNT.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * Set the store to read the current games for resync
+     * @param source game store
+     */
+    public void setSource(GameStore source) {
+        this.source = source;
+    }
+
+    /**
+     * Subscribe to changes of games
+     * @param ids game ids, up to MAX_GAMES_PER_SUBSCRIBER
+     * @param sink where to write the events
+     * @return subscription, cancel it when the client is gone
+     */
+    public Subscription subscribe(Collection<String> ids, Sink sink) {
+        Set<String> games = new LinkedHashSet<>(ids);
+        if (games.isEmpty() || games.size() > MAX_GAMES_PER_SUBSCRIBER) {
+            throw new IllegalArgumentException("Count of games should be 1 to " + MAX_GAMES_PER_SUBSCRIBER);
+        }
+
+        Subscription subscription = new Subscription(games, sink);
+        this.active.add(subscription);
+        for (String id : games) {
+            addTo(this.subscriptions, id, subscription);
+        }
+        this.subscribers.incrementAndGet();
+        return subscription;
+    }
+
+    /**
+     * Publish an accepted change of game
+     * @param before the game before change, null if the game is new
+     * @param after the game after change, null if the game is deleted
+     */
+    public void publish(Game before, Game after) {
+        String id = after != null ? after.getId() : before.getId();
+        this.wakeUp(id, after);
+
+        Set<Subscription> set = this.subscriptions.get(id);
+        if (set == null || set.isEmpty()) return;
+
+        Object[] event = after != null
+                ? new Object[]{MOVE, new GameEvent(before, after)}
+                : new Object[]{DELETE, id};
+        for (Subscription s : set) {
+            s.offer(event);
+        }
+    }
+
+    /**
+     * Send a heartbeat to every subscriber. A subscriber which is gone fails the write and is cancelled.
+     * Called by the background heartbeat.
+     */
+    void ping() {
+        for (Subscription s : this.active) {
+            s.ping();
+        }
+    }
+
+    /**
+     * Wait for the next change of a game. The waiter is called once, on a waker thread,
+     * for the first change published after this call.
+     * @param id game id
+     * @param waiter called with the changed game
+     */
+    public void await(String id, Waiter waiter) {
+        this.waiting.incrementAndGet();
+        addTo(this.waiters, id, waiter);
+    }
+
+    /**
+     * Stop waiting, e.g. on timeout
+     * @param id game id
+     * @param waiter the waiter of await
+     * @return true if the waiter was still waiting
+     */
+    public boolean cancel(String id, Waiter waiter) {
+        if (!removeFrom(this.waiters, id, waiter)) return false;
+
+        this.waiting.decrementAndGet();
+        return true;
+    }
+
+    /**
+     * Call the waiters of a game
+     */
+    private void wakeUp(String id, final Game game) {
+        Set<Waiter> set = this.waiters.get(id);
+        if (set == null) return;
+
+        for (final Waiter w : set) {
+            if (!this.cancel(id, w)) continue; // woken by another change or timed out
+            try {
+                this.wakers.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        w.changed(game);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                w.changed(game);
+            }
+        }
+    }
+
+    /**
+     * Get count of requests waiting for the next change
+     * @return count of waiters
+     */
+    public int getWaiting() {
+        return this.waiting.get();
+    }
+
+    /**
+     * Get count of active subscriptions
+     * @return count of subscriptions
+     */
+    public int getSubscribers() {
+        return this.subscribers.get();
+    }
+
+    /**
+     * Get count of events written to subscribers
+     * @return count of events
+     */
+    public long getSent() {
+        return this.sent.get();
+    }
+
+    /**
+     * Get count of events dropped for slow subscribers
+     * @return count of events
+     */
+    public long getDropped() {
+        return this.dropped.get();
+    }
+
+    /**
+     * Stop the threads and close all subscribers
+     */
+    @Override
+    public void close() {
+        if (this.heartbeat != null) {
+            this.heartbeat.shutdownNow();
+        }
+        this.senders.shutdownNow();
+        this.wakers.shutdownNow();
+        for (Subscription s : this.active) {
+            s.cancel();
+        }
+    }
+
+    /**
+     * Add a value to the set of a key. Retry if the set was removed because it became empty.
+     */
+    private static <T> void addTo(ConcurrentHashMap<String, Set<T>> map, String key, T value) {
+        while (true) {
+            Set<T> set = map.get(key);
+            if (set == null) {
+                set = new CopyOnWriteArraySet<>();
+                Set<T> existing = map.putIfAbsent(key, set);
+                if (existing != null) set = existing;
+            }
+            set.add(value);
+            if (map.get(key) == set) return;
+        }
+    }
+
+    /**
+     * Remove a value from the set of a key, and the set if it is empty
+     * @return true if the value was in the set
+     */
+    private static <T> boolean removeFrom(ConcurrentHashMap<String, Set<T>> map, String key, T value) {
+        Set<T> set = map.get(key);
+        if (set == null || !set.remove(value)) return false;
+
+        if (set.isEmpty()) map.remove(key, set);
+        return true;
+    }
+
+    /**
+     * A request waiting for the next change of a game
+     */
+    public interface Waiter {
+        /**
+         * The game was changed
+         * @param game the game after change, null if the game was deleted
+         */
+        void changed(Game game);
+    }
+
+    /**
+     * Where the events of a subscriber are written, e.g. a SSE connection
+     */
+    public interface Sink {
+        /**
+         * Write one event. Called by one sender thread at a time.
+         * @param name event name
+         * @param data event data
+         * @throws IOException the client is gone
+         */
+        void send(String name, Object data) throws IOException;
+
+        /**
+         * Write a heartbeat, e.g. a SSE comment. Called by one sender thread at a time.
+         * @throws IOException the client is gone
+         */
+        void heartbeat() throws IOException;
+
+        /**
+         * Close the connection
+         */
+        void close();
+    }
+
+    /**
+     * Subscription of one client
+     */
+    public final class Subscription implements Runnable {
+        private final Set<String> ids;
+        private final Sink sink;
+        private final ArrayBlockingQueue<Object[]> queue;
+
+        /**
+         * A sender is writing or will write the queue
+         */
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+
+        /**
+         * Events were dropped, send the full games on next write
+         */
+        private volatile boolean lagged;
+
+        /**
+         * Send a heartbeat on next write
+         */
+        private volatile boolean ping;
+
+        private final AtomicBoolean cancelled = new AtomicBoolean();
+
+        private Subscription(Set<String> ids, Sink sink) {
+            this.ids = Collections.unmodifiableSet(ids);
+            this.sink = sink;
+            this.queue = new ArrayBlockingQueue<>(queueSize);
+        }
+
+        /**
+         * Get subscribed game ids
+         * @return game ids
+         */
+        public Set<String> getIds() {
+            return this.ids;
+        }
+
+        /**
+         * Queue an event and make sure a sender will write it
+         */
+        private void offer(Object[] event) {
+            if (this.cancelled.get()) return;
+
+            if (!this.queue.offer(event)) {
+                // Too slow, drop the queued changes and send the full games later
+                int count = this.queue.size() + 1;
+                this.queue.clear();
+                this.lagged = true;
+                dropped.addAndGet(count);
+            }
+            this.schedule();
+        }
+
+        /**
+         * Make sure a sender will write a heartbeat
+         */
+        private void ping() {
+            if (this.cancelled.get()) return;
+
+            this.ping = true;
+            this.schedule();
+        }
+
+        private void schedule() {
+            if (this.scheduled.compareAndSet(false, true)) {
+                try {
+                    senders.execute(this);
+                } catch (RejectedExecutionException e) {
+                    this.scheduled.set(false);
+                }
+            }
+        }
+
+        /**
+         * Write queued events. Runs on a sender thread.
+         */
+        @Override
+        public void run() {
+            try {
+                if (this.ping) {
+                    this.ping = false;
+                    this.sink.heartbeat();
+                }
+                if (this.lagged) {
+                    this.lagged = false;
+                    this.resync();
+                }
+                Object[] event;
+                while (!this.cancelled.get() && (event = this.queue.poll()) != null) {
+                    this.sink.send((String) event[0], event[1]);
+                    sent.incrementAndGet();
+                }
+            } catch (IOException | RuntimeException e) {
+                LOGGER.log(Level.FINE, "Subscriber is gone", e);
+                this.cancel();
+                return;
+            } finally {
+                this.scheduled.set(false);
+            }
+            // An event queued after the last poll but before scheduled was reset
+            if ((!this.queue.isEmpty() || this.lagged || this.ping) && !this.cancelled.get()) {
+                this.schedule();
+            }
+        }
+
+        /**
+         * Send the current games, and a delete for each game which is gone
+         */
+        private void resync() throws IOException {
+            GameStore store = source;
+            if (store == null) return;
+
+            List<Object[]> games = new ArrayList<>();
+            for (String id : this.ids) {
+                Game g = store.get(id);
+                games.add(g != null ? new Object[]{RESYNC, g} : new Object[]{DELETE, id});
+            }
+            for (Object[] event : games) {
+                this.sink.send((String) event[0], event[1]);
+                sent.incrementAndGet();
+            }
+        }
+
+        /**
+         * Stop the subscription and close the sink
+         */
+        public void cancel() {
+            if (!this.cancelled.compareAndSet(false, true)) return;
+
+            active.remove(this);
+            for (String id : this.ids) {
+                removeFrom(subscriptions, id, this);
+            }
+            this.queue.clear();
+            subscribers.decrementAndGet();
+            this.sink.close();
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.jackychu.app.tictactoe;
+
+import com.j256.ormlite.field.DataType;
+import com.j256.ormlite.field.DatabaseField;
+import com.j256.ormlite.table.DatabaseTable;
+
+/**
+ * Database row of a game. Mapped by ORMLite.<br>
+ * The board is stored as the bitboard bytes, 16 bytes per 64 cells.
+ */
+@DatabaseTable(tableName = "games")
+public class GameRecord {
+    @DatabaseField(id = true, width = 64)
+    private String id;
+
+    /**
+     * Count of marks in a row to win
+     */
+    @DatabaseField(canBeNull = false)
+    private int winLength;
+
+    @DatabaseField(canBeNull = false)
+    private int boardDimension;
+
+    @DatabaseField(dataType = DataType.BYTE_ARRAY, canBeNull = false)
+    private byte[] board;
+
+    @DatabaseField(canBeNull = false)
+    private Game.Status status;
+
+    @DatabaseField
+    private int winner;
+
+    @DatabaseField
+    private long lastUpdateTime;
+
+    @DatabaseField
+    private long version;
+
+    /**
+     * Constructor for ORMLite
+     */
+    public GameRecord() {
+    }
+
+    /**
+     * Create record of game
+     * @param game Game object
+     */
+    public GameRecord(Game game) {
+        Board board = game.board();
+        this.id = game.getId();
+        this.winLength = game.getWinLength();
+        this.boardDimension = board.dimension();
+        this.board = board.toBytes();
+        this.status = game.getStatus();
+        this.winner = game.getWinner();
+        this.lastUpdateTime = game.getLastUpdateTime();
+        this.version = game.getVersion();
+    }
+
+    /**
+     * Build game object of this record
+     * @return Game object
+     */
+    public Game toGame() {
+        Board board = Board.fromBytes(this.boardDimension, this.winLength, this.board);
+        return Game.restore(this.id, board, this.status, this.winner, this.lastUpdateTime, this.version);
+    }
+
+    public String getId() {
+        return this.id;
+    }
+}
@@ -0,0 +1,372 @@
+package com.jackychu.app.tictactoe;
+
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Server-wide game store. Games are found by id only, they don't belong to a http session.<br>
+ * Memory is bounded by two eviction rules:<br>
+ * 1. A game which is not read or updated for idle TTL is removed by a background sweep<br>
+ * 2. When the count of games is over max size, the oldest game which was not accessed
+ *    since the last check is removed (second chance / CLOCK order)<br>
+ * Counts of evicted games are kept for metrics, and the eviction listeners are told of each evicted game.
+ */
+public class GameRegistry implements GameStore {
+    /**
+     * Default idle TTL, the same as the default http session timeout
+     */
+    public static final long DEFAULT_TTL_MILLIS = TimeUnit.MINUTES.toMillis(30);
+
+    /**
+     * Default max count of games
+     */
+    public static final int DEFAULT_MAX_SIZE = 1000000;
+
+    /**
+     * Listener of games removed by eviction
+     */
+    public interface EvictionListener {
+        /**
+         * A game is removed by idle TTL or max size. Called after the game is removed.
+         * @param game the evicted game
+         */
+        void evicted(Game game);
+    }
+
+    /**
+     * Thread number of sweeper threads
+     */
+    private static final AtomicInteger SWEEPER_COUNT = new AtomicInteger();
+
+    /**
+     * The games. The key is id of game.
+     */
+    private final ConcurrentHashMap<String, Entry> games = new ConcurrentHashMap<>();
+
+    /**
+     * Ids of games in insertion order, for max size eviction
+     */
+    private final ConcurrentLinkedQueue<String> order = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Count of removed ids which may still be in the order queue
+     */
+    private final AtomicInteger removedIds = new AtomicInteger();
+
+    /**
+     * Remove games not accessed for this long. 0 for never.
+     */
+    private final long ttlMillis;
+
+    /**
+     * Max count of games
+     */
+    private final int maxSize;
+
+    /**
+     * Count of games removed by idle TTL
+     */
+    private final AtomicLong expiredEvictions = new AtomicLong();
+
+    /**
+     * Count of games removed by max size
+     */
+    private final AtomicLong sizeEvictions = new AtomicLong();
+
+    /**
+     * Listeners of evicted games
+     */
+    private final List<EvictionListener> evictionListeners = new CopyOnWriteArrayList<>();
+
+    /**
+     * Background sweeper of idle games. Null if TTL is 0.
+     */
+    private final ScheduledExecutorService sweeper;
+
+    /**
+     * Create registry with default TTL and max size
+     */
+    public GameRegistry() {
+        this(DEFAULT_TTL_MILLIS, DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Create registry
+     * @param ttlMillis remove games not accessed for this long. 0 for never.
+     * @param maxSize max count of games
+     */
+    public GameRegistry(long ttlMillis, int maxSize) {
+        if (ttlMillis < 0) throw new IllegalArgumentException("TTL should not be negative: " + ttlMillis);
+        if (maxSize <= 0) throw new IllegalArgumentException("Max size should be positive: " + maxSize);
+
+        this.ttlMillis = ttlMillis;
+        this.maxSize = maxSize;
+        if (ttlMillis > 0) {
+            this.sweeper = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, "game-registry-sweeper-" + SWEEPER_COUNT.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+            long period = Math.max(1000, ttlMillis / 4);
+            this.sweeper.scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    sweep(System.currentTimeMillis());
+                }
+            }, period, period, TimeUnit.MILLISECONDS);
+        } else {
+            this.sweeper = null;
+        }
+    }
+
+    @Override
+    public Game get(String id) {
+        Entry entry = this.games.get(id);
+        if (entry == null) return null;
+
+        entry.touch();
+        return entry.game;
+    }
+
+    @Override
+    public Map<String, Game> getAll() {
+        Map<String, Game> all = new HashMap<>();
+        for (Entry entry : this.games.values()) {
+            all.put(entry.game.getId(), entry.game);
+        }
+        return all;
+    }
+
+    @Override
+    public void put(Game game) {
+        Entry old = this.games.put(game.getId(), new Entry(game));
+        if (old == null) {
+            this.order.offer(game.getId());
+            this.evictOverflow();
+        }
+    }
+
+    /**
+     * Store a game if there is no game with the same id
+     * @param game Game object
+     * @return the stored game with the same id, null if the game is stored
+     */
+    public Game putIfAbsent(Game game) {
+        Entry old = this.games.putIfAbsent(game.getId(), new Entry(game));
+        if (old != null) {
+            old.touch();
+            return old.game;
+        }
+        this.order.offer(game.getId());
+        this.evictOverflow();
+        return null;
+    }
+
+    @Override
+    public boolean replace(Game expected, Game updated) {
+        if (!expected.getId().equals(updated.getId())) return false;
+
+        Entry entry = this.games.get(expected.getId());
+        if (entry == null || entry.game != expected) return false;
+
+        updated.setVersion(expected.getVersion() + 1);
+        Entry next = new Entry(updated);
+        next.referenced = true;
+        return this.games.replace(expected.getId(), entry, next);
+    }
+
+    @Override
+    public Game remove(String id) {
+        // The id in order queue is skipped when it comes to the head. Without TTL sweep and under max size
+        // nothing comes to the head, so the queue is pruned once it has more removed ids than games.
+        Entry entry = this.games.remove(id);
+        if (entry == null) return null;
+
+        if (this.removedIds.incrementAndGet() > Math.max(this.games.size(), 1024)) {
+            this.removedIds.set(0);
+            this.pruneOrder();
+        }
+        return entry.game;
+    }
+
+    @Override
+    public int size() {
+        return this.games.size();
+    }
+
+    /**
+     * Count the games by status
+     * @return count of games of each status, a status without game is not included
+     */
+    public Map<Game.Status, Integer> getStatusCounts() {
+        Map<Game.Status, Integer> counts = new EnumMap<>(Game.Status.class);
+        for (Entry entry : this.games.values()) {
+            Game.Status status = entry.game.getStatus();
+            if (status == null) continue;
+            Integer count = counts.get(status);
+            counts.put(status, count == null ? 1 : count + 1);
+        }
+        return counts;
+    }
+
+    /**
+     * Get count of games removed by idle TTL
+     * @return count of evicted games
+     */
+    public long getExpiredEvictions() {
+        return this.expiredEvictions.get();
+    }
+
+    /**
+     * Get count of games removed by max size
+     * @return count of evicted games
+     */
+    public long getSizeEvictions() {
+        return this.sizeEvictions.get();
+    }
+
+    /**
+     * Add a listener of evicted games
+     * @param listener listener
+     */
+    public void addEvictionListener(EvictionListener listener) {
+        this.evictionListeners.add(listener);
+    }
+
+    /**
+     * Remove a listener of evicted games
+     * @param listener listener
+     */
+    public void removeEvictionListener(EvictionListener listener) {
+        this.evictionListeners.remove(listener);
+    }
+
+    /**
+     * Get idle TTL
+     * @return TTL in millis, 0 for never
+     */
+    public long getTtlMillis() {
+        return this.ttlMillis;
+    }
+
+    /**
+     * Get max count of games
+     * @return max size
+     */
+    public int getMaxSize() {
+        return this.maxSize;
+    }
+
+    /**
+     * Stop the background sweeper
+     */
+    @Override
+    public void close() {
+        if (this.sweeper != null) {
+            this.sweeper.shutdownNow();
+        }
+    }
+
+    /**
+     * Remove games which are not accessed for TTL.
+     * Called by the background sweeper.
+     * @param now current time millis
+     */
+    void sweep(long now) {
+        if (this.ttlMillis == 0) return;
+
+        for (Map.Entry<String, Entry> e : this.games.entrySet()) {
+            Entry entry = e.getValue();
+            if (now - entry.lastAccess > this.ttlMillis && this.games.remove(e.getKey(), entry)) {
+                this.expiredEvictions.incrementAndGet();
+                this.evicted(entry.game);
+            }
+        }
+
+        this.removedIds.set(0);
+        this.pruneOrder();
+    }
+
+    /**
+     * Drop ids of removed games from the eviction order
+     */
+    private void pruneOrder() {
+        Iterator<String> ids = this.order.iterator();
+        while (ids.hasNext()) {
+            if (!this.games.containsKey(ids.next())) ids.remove();
+        }
+    }
+
+    /**
+     * Get count of ids in the eviction order, for tests
+     * @return count of ids
+     */
+    int getOrderSize() {
+        return this.order.size();
+    }
+
+    /**
+     * Remove games until the count is not over max size.<br>
+     * A game accessed since it was queued gets a second chance and goes to the tail.
+     */
+    private void evictOverflow() {
+        while (this.games.size() > this.maxSize) {
+            String id = this.order.poll();
+            if (id == null) return;
+
+            Entry entry = this.games.get(id);
+            if (entry == null) continue; // removed or expired already
+
+            if (entry.referenced) {
+                entry.referenced = false;
+                this.order.offer(id);
+            } else if (this.games.remove(id, entry)) {
+                this.sizeEvictions.incrementAndGet();
+                this.evicted(entry.game);
+            } else {
+                // replaced by a newer version, check it again later
+                this.order.offer(id);
+            }
+        }
+    }
+
+    private void evicted(Game game) {
+        for (EvictionListener listener : this.evictionListeners) {
+            listener.evicted(game);
+        }
+    }
+
+    /**
+     * Stored game with access tracking
+     */
+    private static final class Entry {
+        final Game game;
+        volatile long lastAccess;
+        volatile boolean referenced;
+
+        Entry(Game game) {
+            this.game = game;
+            this.lastAccess = System.currentTimeMillis();
+        }
+
+        void touch() {
+            this.lastAccess = System.currentTimeMillis();
+            this.referenced = true;
+        }
+    }
+}
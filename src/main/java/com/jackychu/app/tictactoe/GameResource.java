@@ -1,8 +1,26 @@
 package com.jackychu.app.tictactoe;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.HashMap;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import javax.ws.rs.*;
+import javax.ws.rs.container.AsyncResponse;
+import javax.ws.rs.container.Suspended;
+import javax.ws.rs.container.TimeoutHandler;
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Context;
@@ -10,6 +28,9 @@ import javax.inject.Inject;
 import javax.inject.Provider;
 import org.glassfish.grizzly.http.server.Request;
 import org.glassfish.grizzly.http.server.Session;
+import org.glassfish.jersey.media.sse.EventOutput;
+import org.glassfish.jersey.media.sse.OutboundEvent;
+import org.glassfish.jersey.media.sse.SseFeature;
 
 /**
  * Game resource (exposed at "/api/v1.0/game" path)
@@ -24,47 +45,143 @@ public class GameResource {
     private Provider<Request> grizzlyRequestProvider;
 
     /**
-     * Store whole games in current session.
-     * The key is id of game.
-     * The value is 
+     * Request headers, to choose the body type of a read
      */
-    private Map<String, Game> games;
+    @Context
+    private HttpHeaders headers;
+
+    /**
+     * Jax-rs request, to check If-None-Match of a read
+     */
+    @Context
+    private javax.ws.rs.core.Request request;
+
+    /**
+     * Server-wide game store. Games are found by id without session.
+     */
+    @Inject
+    private GameStore games;
+
+    /**
+     * Subscribers of game changes
+     */
+    @Inject
+    private GameEvents events;
+
+    /**
+     * Searched positions shared by all ai moves
+     */
+    @Inject
+    private TranspositionTable table;
+
+    /**
+     * Monte Carlo tree search of ai moves on large boards
+     */
+    @Inject
+    private MctsEngine mcts;
+
+    /**
+     * Server metrics, for rejected games and moves
+     */
+    @Inject
+    private Metrics metrics;
+
+    /**
+     * Max seconds of a long poll
+     */
+    private static final int MAX_WAIT_SECONDS = 60;
+
+    /**
+     * Max count of moves of one batch
+     */
+    static final int MAX_BATCH_MOVES = 1000;
+
+    /**
+     * Max budget of one ai move
+     */
+    private static final long MAX_AI_NODES = 50000000;
+    private static final long MAX_AI_MILLIS = 5000;
+
+    /**
+     * Permits of ai searches run at once, for ai moves and hints. A request without a permit gets 503.
+     */
+    static final Semaphore SEARCHES = new Semaphore(
+            Integer.getInteger(Main.AI_SEARCHES_PROPERTY, Runtime.getRuntime().availableProcessors()));
+
+    /**
+     * Min board dimension of ai moves by Monte Carlo tree search, unless the engine is given
+     */
+    static final int MCTS_DIMENSION = 9;
 
     /**
      * Get specific game status by id. <br>
      * If cannot find game with id, then return 404.<br>
-     * If id == all, then return whole games in current session<br>
+     * If id == all, then return whole games created in current session<br>
+     * The response has a strong ETag of the game version. With the same ETag in If-None-Match,
+     * return 304 without body. The JSON of a game is encoded once per version.
      * @param id the id of game
      * @return game(s)
      */
     @Path("{id}")
     @GET
-    @Produces({MediaType.APPLICATION_JSON})
-    public Response getGame(@PathParam("id") String id) {
+    @Produces({MediaType.APPLICATION_JSON, GameBinaryProvider.APPLICATION_GAME})
+    public Response getGame(@PathParam("id") String id) throws IOException {
+        boolean binary = this.acceptsBinary();
+
         //return all games in current session
         if (id.toLowerCase().equals("all")) {
-            return Response.status(Response.Status.OK).entity(this.getGames()).build();
+            Map<String, Game> games = this.getSessionGames();
+            EntityTag tag = etag(games, binary);
+            Response.ResponseBuilder notModified = this.request.evaluatePreconditions(tag);
+            if (notModified != null) {
+                return notModified.tag(tag).cacheControl(cacheControl(true)).header(HttpHeaders.VARY, HttpHeaders.ACCEPT).build();
+            }
+            return Response.ok(binary ? games : toJsonBytes(games), binary ? GameBinaryProvider.APPLICATION_GAME_TYPE : MediaType.APPLICATION_JSON_TYPE)
+                    .tag(tag).cacheControl(cacheControl(true)).header(HttpHeaders.VARY, HttpHeaders.ACCEPT).build();
         }
 
     	Game g = this.getGameById(id);
     	if (g == null) {
     		return Response.status(Response.Status.NOT_FOUND).entity(new ErrorMessage("Game not found for ID: " + id)).build();
-    	} else {
-	        return Response.ok(g).build();
-	    }
+    	}
+    	EntityTag tag = etag(g, binary);
+    	Response.ResponseBuilder notModified = this.request.evaluatePreconditions(tag);
+    	if (notModified != null) {
+    		return notModified.tag(tag).cacheControl(cacheControl(false)).header(HttpHeaders.VARY, HttpHeaders.ACCEPT).build();
+    	}
+    	return Response.ok(binary ? g : g.toJsonBytes(), binary ? GameBinaryProvider.APPLICATION_GAME_TYPE : MediaType.APPLICATION_JSON_TYPE)
+    			.tag(tag).cacheControl(cacheControl(false)).header(HttpHeaders.VARY, HttpHeaders.ACCEPT).build();
     }
 
     /**
-     * Create a new game
+     * Create a new game.<br>
+     * The board is dimension x dimension, from 3 to Game.MAX_DIMENSION. A player wins with winLength marks in a row,
+     * from 3 to dimension. 0 or no winLength for a whole row, column or diagonal.
+     * @param dimension the dimension of game board, default 3
+     * @param winLength count of marks in a row to win, 0 for dimension
      * @return Game object in json format
      */
     @POST
-	@Produces({MediaType.APPLICATION_JSON})
-    public Response createGame(){
-    	Map<String, Game> games = this.getGames();
+	@Produces({MediaType.APPLICATION_JSON, GameBinaryProvider.APPLICATION_GAME})
+    public Response createGame(@QueryParam("dimension") @DefaultValue("3") int dimension,
+                               @QueryParam("winLength") @DefaultValue("0") int winLength){
+    	if (dimension < 3 || dimension > Game.MAX_DIMENSION) {
+    		return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity(new ErrorMessage("Dimension is invalidate")).build();
+    	}
+    	if (winLength == 0) winLength = dimension;
+    	if (winLength < 3 || winLength > dimension) {
+    		return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity(new ErrorMessage("Win length is invalidate")).build();
+    	}
+    	GameStore games = this.getGames();
 
-    	Game g = new Game();
-    	games.put(g.getId(), g);
+    	Game g = new Game(dimension, winLength);
+    	games.put(g);
+
+    	// Only remember the game in session if the client has one, stateless clients use the id only
+    	Session session = this.grizzlyRequestProvider.get().getSession(false);
+    	if (session != null) {
+    		this.getSessionGameIds(session).add(g.getId());
+    	}
     	return Response.ok(g).build();
     }
 
@@ -76,14 +193,9 @@ public class GameResource {
      */
     @Path("{id}")
     @PUT
-	@Consumes({MediaType.APPLICATION_JSON})
-	@Produces({MediaType.APPLICATION_JSON})
+	@Consumes({MediaType.APPLICATION_JSON, GameBinaryProvider.APPLICATION_GAME})
+	@Produces({MediaType.APPLICATION_JSON, GameBinaryProvider.APPLICATION_GAME})
     public Response updateGame(@PathParam("id") String id, Game currentGame) {
-    	Game g = this.getGameById(id);
-    	if (g == null) {
-    		return Response.status(Response.Status.NOT_FOUND).entity(new ErrorMessage("Game not found for ID: " + id)).build();
-    	}
-
 		currentGame.updateTime();
 		
     	if (currentGame.checkFull()) {
@@ -97,14 +209,344 @@ public class GameResource {
 	    	currentGame.setStatus(Game.Status.END);
 	    }
 
-		boolean validate = g.validate(currentGame);
-		if (validate) {
-			Map<String, Game> games = this.getGames();
-			games.put(id, currentGame);
-			return Response.ok(currentGame).build();
-		} else {
-			return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity(new ErrorMessage("Game status is invalidate")).build();
+		GameStore games = this.getGames();
+		// Retry when the game was changed by another request after we read it
+		while (true) {
+	    	Game g = games.get(id);
+	    	if (g == null) {
+	    		return Response.status(Response.Status.NOT_FOUND).entity(new ErrorMessage("Game not found for ID: " + id)).build();
+	    	}
+
+			if (!g.validate(currentGame)) {
+				this.metrics.invalid("updateGame");
+				return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity(new ErrorMessage("Game status is invalidate")).build();
+			}
+			if (games.replace(g, currentGame)) {
+				return Response.ok(currentGame).build();
+			}
+		}
+    }
+
+    /**
+     * Place one move on the game.<br>
+     * The move is checked and applied on the stored game, the client doesn't need to send the whole board.
+     * @param id game id
+     * @param move the next move
+     * @return MoveResult object in json format
+     */
+    @Path("{id}/moves")
+    @POST
+	@Consumes({MediaType.APPLICATION_JSON})
+	@Produces({MediaType.APPLICATION_JSON})
+    public Response moveGame(@PathParam("id") String id, Move move) {
+		GameStore games = this.getGames();
+		// Retry when the game was changed by another request after we read it
+		while (true) {
+	    	Game g = games.get(id);
+	    	if (g == null) {
+	    		return Response.status(Response.Status.NOT_FOUND).entity(new ErrorMessage("Game not found for ID: " + id)).build();
+	    	}
+
+			if (move == null || !g.validate(move)) {
+				this.metrics.invalid("moveGame");
+				return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity(new ErrorMessage("Move is invalidate")).build();
+			}
+
+			Game next = g.copy();
+			next.play(move);
+			if (games.replace(g, next)) {
+				return Response.ok(new MoveResult(next, move)).build();
+			}
+		}
+    }
+
+    /**
+     * Let the computer player place the best move for the player to move.<br>
+     * A 3x3 game uses the perfect play table. Other games are searched by alpha-beta search within a node and time budget,
+     * or by Monte Carlo tree search within a playout and time budget. Boards of dimension 9 or more use
+     * Monte Carlo tree search by default, alpha-beta search can not finish on them in time.<br>
+     * Return 503 if the server runs its max count of searches, and 409 if the game was changed while searching.
+     * @param id game id
+     * @param maxNodes max count of searched positions, or playouts of Monte Carlo tree search, up to 50,000,000
+     * @param millis max search time in millis, up to 5000
+     * @param engine "alphabeta" or "mcts", empty to choose by board dimension
+     * @return AiMoveResult with the search stats in json format
+     */
+    @Path("{id}/ai-move")
+    @POST
+	@Produces({MediaType.APPLICATION_JSON})
+    public Response aiMove(@PathParam("id") String id,
+                           @QueryParam("maxNodes") @DefaultValue("" + AlphaBetaEngine.DEFAULT_MAX_NODES) long maxNodes,
+                           @QueryParam("millis") @DefaultValue("" + AlphaBetaEngine.DEFAULT_MAX_MILLIS) long millis,
+                           @QueryParam("engine") @DefaultValue("") String engine) {
+		if (!engine.isEmpty() && !engine.equals("alphabeta") && !engine.equals("mcts")) {
+			return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity(new ErrorMessage("Engine is invalidate")).build();
+		}
+		long nodes = Math.max(1, Math.min(maxNodes, MAX_AI_NODES));
+		long time = Math.max(1, Math.min(millis, MAX_AI_MILLIS));
+		GameStore games = this.getGames();
+		Game g = games.get(id);
+		if (g == null) {
+			return Response.status(Response.Status.NOT_FOUND).entity(new ErrorMessage("Game not found for ID: " + id)).build();
+		}
+		if (g.getStatus() == Game.Status.END || g.checkFull()) {
+			return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity(new ErrorMessage("Game is end")).build();
+		}
+
+		SearchResult result = PerfectPlay.result(g.board());
+		if (result == null) {
+			if (!SEARCHES.tryAcquire()) return busy();
+			try {
+				boolean useMcts = engine.isEmpty() ? g.board().dimension() >= MCTS_DIMENSION : engine.equals("mcts");
+				result = useMcts ? this.mcts.search(g, nodes, time) : new AlphaBetaEngine(nodes, time, this.table).search(g);
+			} finally {
+				SEARCHES.release();
+			}
+		}
+		Game next = g.copy();
+		next.play(result.getMove());
+		if (!games.replace(g, next)) {
+			// Not searched again, the client decides with the new game
+			return Response.status(Response.Status.CONFLICT).entity(new ErrorMessage("Game is changed while searching")).build();
 		}
+		return Response.ok(new AiMoveResult(next, result)).build();
+    }
+
+    /**
+     * Get the best move for the player to move, and whether the game is decided.<br>
+     * A 3x3 game is one lookup of the perfect play table. Other games are searched with the default ai budget
+     * by the same engine as the ai move, then the winner is only known if the search reached the end of game.
+     * Monte Carlo tree search of boards of dimension 9 or more never reaches it.<br>
+     * The game is not changed. Return 503 if the server runs its max count of searches.
+     * @param id game id
+     * @return HintResult in json format
+     */
+    @Path("{id}/hint")
+    @GET
+	@Produces({MediaType.APPLICATION_JSON})
+    public Response hint(@PathParam("id") String id) {
+		Game g = this.getGames().get(id);
+		if (g == null) {
+			return Response.status(Response.Status.NOT_FOUND).entity(new ErrorMessage("Game not found for ID: " + id)).build();
+		}
+		if (g.getStatus() == Game.Status.END || g.checkFull()) {
+			return Response.ok(new HintResult(id, null, g.getWinner(), true, true)).build();
+		}
+
+		Board board = g.board();
+		if (PerfectPlay.covers(board)) {
+			int winner = PerfectPlay.winner(board);
+			return Response.ok(new HintResult(id, PerfectPlay.result(board).getMove(), winner, winner != 0, true)).build();
+		}
+
+		if (!SEARCHES.tryAcquire()) return busy();
+		SearchResult result;
+		try {
+			result = board.dimension() >= MCTS_DIMENSION
+					? this.mcts.search(g, AlphaBetaEngine.DEFAULT_MAX_NODES, AlphaBetaEngine.DEFAULT_MAX_MILLIS)
+					: new AlphaBetaEngine(AlphaBetaEngine.DEFAULT_MAX_NODES, AlphaBetaEngine.DEFAULT_MAX_MILLIS, this.table).search(g);
+		} finally {
+			SEARCHES.release();
+		}
+		int player = result.getMove().getPlayer();
+		int winner = !result.isComplete() || result.getScore() == 0 ? 0
+				: result.getScore() > 0 ? player : 3 - player;
+		return Response.ok(new HintResult(id, result.getMove(), winner, winner != 0, result.isComplete())).build();
+    }
+
+    /**
+     * Place a batch of moves on one or many games.<br>
+     * Moves are applied in order, the same as sending them one by one to the move api.<br>
+     * Each game is updated atomically: if one move of a game is rejected,
+     * none of the moves of that game are placed. A null move is rejected by itself.<br>
+     * Return 500 if there are more than MAX_BATCH_MOVES moves.
+     * @param moves moves with game id
+     * @return list of MoveResult in json format, one per move in the same order
+     */
+    @Path("moves")
+    @POST
+	@Consumes({MediaType.APPLICATION_JSON})
+	@Produces({MediaType.APPLICATION_JSON})
+    public Response moveGames(List<Move> moves) {
+		if (moves == null) {
+			return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity(new ErrorMessage("Move is invalidate")).build();
+		}
+		if (moves.size() > MAX_BATCH_MOVES) {
+			return Response.status(Response.Status.INTERNAL_SERVER_ERROR)
+					.entity(new ErrorMessage("Moves are invalidate, max count is " + MAX_BATCH_MOVES)).build();
+		}
+
+		// Index of moves per game, in request order
+		MoveResult[] results = new MoveResult[moves.size()];
+		Map<String, List<Integer>> movesByGame = new LinkedHashMap<>();
+		for (int i=0; i<moves.size(); i++) {
+			if (moves.get(i) == null) {
+				this.metrics.invalid("moveGames");
+				results[i] = new MoveResult();
+				results[i].reject("Move is invalidate");
+				continue;
+			}
+			String id = moves.get(i).getId();
+			if (!movesByGame.containsKey(id)) {
+				movesByGame.put(id, new ArrayList<Integer>());
+			}
+			movesByGame.get(id).add(i);
+		}
+
+		GameStore games = this.getGames();
+		for (Map.Entry<String, List<Integer>> entry : movesByGame.entrySet()) {
+			this.placeMoves(games, entry.getKey(), moves, entry.getValue(), results);
+		}
+		return Response.ok(Arrays.asList(results)).build();
+    }
+
+    /**
+     * Place moves of one game from a batch. All moves are placed or none of them.
+     * @param games game store
+     * @param id game id
+     * @param moves moves of the batch
+     * @param indexes indexes of moves of this game
+     * @param results results of the batch, filled for the moves of this game
+     */
+    private void placeMoves(GameStore games, String id, List<Move> moves, List<Integer> indexes, MoveResult[] results) {
+		// Retry when the game was changed by another request after we read it
+		while (true) {
+			Game stored = id == null ? null : games.get(id);
+			if (stored == null) {
+				for (int i : indexes) {
+					results[i] = new MoveResult(moves.get(i), "Game not found for ID: " + id);
+				}
+				return;
+			}
+
+			Game g = stored.copy();
+			int rejected = -1;
+			for (int i : indexes) {
+				Move move = moves.get(i);
+				if (!g.validate(move)) {
+					rejected = i;
+					break;
+				}
+				g.play(move);
+				results[i] = new MoveResult(g, move);
+			}
+
+			if (rejected >= 0) {
+				this.metrics.invalid("moveGames");
+				for (int i : indexes) {
+					String message = i == rejected ? "Move is invalidate" : "Not placed, a move of the game is invalidate";
+					results[i] = new MoveResult(moves.get(i), message);
+				}
+				return;
+			}
+			if (games.replace(stored, g)) {
+				return;
+			}
+		}
+    }
+
+    /**
+     * Wait for the next change of a game (long poll).<br>
+     * Returns the game at once if its lastUpdateTime is newer than since. Otherwise the request is
+     * suspended, without a worker thread, until the game is changed or the timeout expires.
+     * Returns 204 on timeout, then call again with the same since.
+     * @param id game id
+     * @param since lastUpdateTime of the game the client has
+     * @param timeout seconds to wait, up to 60. Default is 30.
+     * @param response the suspended response
+     */
+    @Path("{id}/next")
+    @GET
+	@Produces({MediaType.APPLICATION_JSON})
+    public void nextGame(@PathParam("id") final String id, @QueryParam("since") long since,
+                         @QueryParam("timeout") @DefaultValue("30") int timeout, @Suspended final AsyncResponse response) {
+		Game g = this.getGameById(id);
+		if (g == null) {
+			response.resume(Response.status(Response.Status.NOT_FOUND).entity(new ErrorMessage("Game not found for ID: " + id)).build());
+			return;
+		}
+		if (g.getLastUpdateTime() > since) {
+			response.resume(Response.ok(g).build());
+			return;
+		}
+
+		final GameEvents events = this.events;
+		final GameEvents.Waiter waiter = new GameEvents.Waiter() {
+			@Override
+			public void changed(Game game) {
+				if (game == null) {
+					response.resume(Response.status(Response.Status.NOT_FOUND).entity(new ErrorMessage("Game not found for ID: " + id)).build());
+				} else {
+					response.resume(Response.ok(game).build());
+				}
+			}
+		};
+		response.setTimeoutHandler(new TimeoutHandler() {
+			@Override
+			public void handleTimeout(AsyncResponse asyncResponse) {
+				if (events.cancel(id, waiter)) {
+					asyncResponse.resume(Response.noContent().build());
+				}
+			}
+		});
+		response.setTimeout(Math.max(1, Math.min(timeout, MAX_WAIT_SECONDS)), TimeUnit.SECONDS);
+		events.await(id, waiter);
+
+		// The game may be changed after we read it and before the waiter was added
+		Game latest = this.games.get(id);
+		if ((latest == null || latest.getVersion() != g.getVersion()) && events.cancel(id, waiter)) {
+			waiter.changed(latest);
+		}
+    }
+
+    /**
+     * Subscribe to changes of games as server-sent events, instead of polling the games.<br>
+     * Event "move" has the changed cells and the game status of an accepted update (GameEvent),
+     * "delete" has the id of a deleted game, and "resync" has the full game after events were
+     * dropped for a slow client. The changes of a game come in version order. Skip a change with
+     * a version not newer than the game you have; a change with a previousVersion newer than it
+     * means changes were missed, so get the game again. A comment is sent as heartbeat every 15 seconds,
+     * so a client which is gone is found.
+     * @param ids game ids, e.g. ?id=a&amp;id=b
+     * @return event stream
+     */
+    @Path("events")
+    @GET
+	@Produces({SseFeature.SERVER_SENT_EVENTS})
+    public Response subscribe(@QueryParam("id") List<String> ids) {
+		if (ids == null || ids.isEmpty() || ids.size() > GameEvents.MAX_GAMES_PER_SUBSCRIBER) {
+			return Response.status(Response.Status.INTERNAL_SERVER_ERROR).type(MediaType.APPLICATION_JSON)
+					.entity(new ErrorMessage("Game ids are invalidate")).build();
+		}
+		for (String id : ids) {
+			if (this.getGameById(id) == null) {
+				return Response.status(Response.Status.NOT_FOUND).type(MediaType.APPLICATION_JSON)
+						.entity(new ErrorMessage("Game not found for ID: " + id)).build();
+			}
+		}
+
+		final EventOutput output = new EventOutput();
+		this.events.subscribe(ids, new GameEvents.Sink() {
+			@Override
+			public void send(String name, Object data) throws IOException {
+				output.write(new OutboundEvent.Builder().name(name)
+						.mediaType(MediaType.APPLICATION_JSON_TYPE).data(data.getClass(), data).build());
+			}
+
+			@Override
+			public void heartbeat() throws IOException {
+				output.write(new OutboundEvent.Builder().comment(GameEvents.HEARTBEAT).build());
+			}
+
+			@Override
+			public void close() {
+				try {
+					output.close();
+				} catch (IOException ignored) {
+				}
+			}
+		});
+		return Response.ok(output).build();
     }
 
     /**
@@ -121,7 +563,7 @@ public class GameResource {
     		return Response.status(Response.Status.NOT_FOUND).entity(new ErrorMessage("Game not found for ID: " + id)).build();
     	}
     	
-    	Map<String, Game> games = this.getGames();
+    	GameStore games = this.getGames();
     	games.remove(id);
     	
     	return Response.ok().build();
@@ -138,26 +580,141 @@ public class GameResource {
     }
 
     /**
-     * Get games map object in session
-     * @return games map
+     * Get game store
+     * @return game store
      */
-    private Map<String, Game> getGames() {
-    	Session session = this.getSession();
-    	Map<String, Game> games = (Map<String, Game>)session.getAttribute("games");
-        if (games == null) {
-            games = new HashMap<>();
-            session.setAttribute("games", games);
-        }
+    private GameStore getGames() {
+    	return this.games;
+    }
+
+    /**
+     * Get ids of games created in the session
+     * @param session Http session
+     * @return set of game ids
+     */
+    private Set<String> getSessionGameIds(Session session) {
+    	// Concurrent requests of a new session should share one set
+    	synchronized (session) {
+	    	Set<String> ids = (Set<String>)session.getAttribute("games");
+	        if (ids == null) {
+	            ids = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+	            session.setAttribute("games", ids);
+	        }
+	    	return ids;
+	    }
+    }
+
+    /**
+     * Get games created in current session. Ids of removed games are dropped from the session.
+     * @return games map, the key is id of game
+     */
+    private Map<String, Game> getSessionGames() {
+    	// In id order, so the same games have the same body and ETag
+    	Map<String, Game> games = new TreeMap<>();
+    	Iterator<String> ids = this.getSessionGameIds(this.getSession()).iterator();
+    	while (ids.hasNext()) {
+    		String id = ids.next();
+    		Game g = this.games.get(id);
+    		if (g == null) {
+    			ids.remove();
+    		} else {
+    			games.put(id, g);
+    		}
+    	}
     	return games;
     }
 
+    /**
+     * Check the client asks for the binary game before JSON. JSON for any type, like the order of @Produces.
+     * @return true for binary game
+     */
+    private boolean acceptsBinary() {
+    	for (MediaType type : this.headers.getAcceptableMediaTypes()) {
+    		if (type.isCompatible(MediaType.APPLICATION_JSON_TYPE)) return false;
+    		if (type.isCompatible(GameBinaryProvider.APPLICATION_GAME_TYPE)) return true;
+    	}
+    	return false;
+    }
+
+    /**
+     * Strong ETag of one game. The version is increased by each update, and the update time
+     * tells apart a game put again with the same id. The status and winner are in the tag too,
+     * they can be set on a game without a new version. Each body type has its own tag.
+     * @param g stored game
+     * @param binary true for the binary body
+     * @return entity tag
+     */
+    static EntityTag etag(Game g, boolean binary) {
+    	return new EntityTag(g.getVersion() + "-" + g.getLastUpdateTime() + "-" + g.getStatus().ordinal() + g.getWinner()
+    			+ (binary ? "-bin" : ""));
+    }
+
+    /**
+     * Strong ETag of games, a 64 bits FNV-1a hash of the id, version, update time, status and winner of each game
+     * @param games stored games in id order
+     * @param binary true for the binary body
+     * @return entity tag
+     */
+    static EntityTag etag(Map<String, Game> games, boolean binary) {
+    	long hash = 0xcbf29ce484222325L;
+    	for (Map.Entry<String, Game> e : games.entrySet()) {
+    		String id = e.getKey();
+    		for (int i=0; i<id.length(); i++) {
+    			hash = (hash ^ id.charAt(i)) * 0x100000001b3L;
+    		}
+    		hash = (hash ^ e.getValue().getVersion()) * 0x100000001b3L;
+    		hash = (hash ^ e.getValue().getLastUpdateTime()) * 0x100000001b3L;
+    		hash = (hash ^ (e.getValue().getStatus().ordinal() << 2 | e.getValue().getWinner())) * 0x100000001b3L;
+    	}
+    	return new EntityTag(games.size() + "-" + Long.toHexString(hash) + (binary ? "-bin" : ""));
+    }
+
+    /**
+     * JSON object of games by id, from the JSON kept with each game
+     * @param games stored games
+     * @return json in UTF-8
+     */
+    private static byte[] toJsonBytes(Map<String, Game> games) throws IOException {
+    	ByteArrayOutputStream out = new ByteArrayOutputStream(games.size() * 160 + 2);
+    	out.write('{');
+    	for (Map.Entry<String, Game> e : games.entrySet()) {
+    		if (out.size() > 1) out.write(',');
+    		out.write(JsonCodec.MAPPER.writeValueAsBytes(e.getKey()));
+    		out.write(':');
+    		out.write(e.getValue().toJsonBytes());
+    	}
+    	out.write('}');
+    	return out.toByteArray();
+    }
+
+    /**
+     * Let caches keep a read, but ask the server each time if it is still the same
+     * @param session true for games of the session, which only the client may keep
+     * @return cache control
+     */
+    private static CacheControl cacheControl(boolean session) {
+    	CacheControl cacheControl = new CacheControl();
+    	cacheControl.setNoCache(true);
+    	cacheControl.setPrivate(session);
+    	return cacheControl;
+    }
+
+    /**
+     * Answer of a search without a permit, the client may try again a second later
+     * @return 503 response
+     */
+    private static Response busy() {
+    	return Response.status(Response.Status.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, 1)
+    			.entity(new ErrorMessage("Server is busy")).build();
+    }
+
     /**
      * Get game object by id
      * @param id Game id
      * @return Game object
      */
     private Game getGameById(String id) {
-    	Map<String, Game> games = this.getGames();
+    	GameStore games = this.getGames();
     	if (games == null) {
     		return null;
     	} else {
@@ -0,0 +1,294 @@
+package com.jackychu.app.tictactoe;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Compact binary file of many games, written in one sequential pass and read back with bulk NIO reads.<br>
+ * A game takes 55 bytes for a 3x3 board with a UUID id, so one million games are about 55 MB.<br>
+ * The file is written into a temp file and renamed, so a reader never sees a half written snapshot.
+ * The encoding of one game is also the body of the binary media type, see {@link GameBinaryProvider}.
+ *
+ * <pre>
+ * File, big endian
+ *  int   magic "TTTS"
+ *  int   format version
+ *  long  count of games
+ *        games
+ *
+ * Game
+ *  byte  flags, 1 if id is a UUID
+ *        id: 16 bytes UUID, or short length and UTF-8 bytes
+ *  short win length
+ *  short board dimension
+ *  byte  status ordinal
+ *  byte  winner
+ *  long  lastUpdateTime
+ *  long  version
+ *        board, see {@link Board#write(ByteBuffer)}
+ * </pre>
+ */
+public final class GameSnapshot {
+    /**
+     * First int of snapshot file
+     */
+    static final int MAGIC = 0x54545453;
+
+    /**
+     * Format version of snapshot file. Format 1 had the game dimension instead of the win length.
+     */
+    static final int FORMAT = 2;
+
+    /**
+     * Size of file header
+     */
+    private static final int HEADER_SIZE = 16;
+
+    /**
+     * Size of the fixed part of game, after the id
+     */
+    private static final int FIXED_SIZE = 2 + 2 + 1 + 1 + 8 + 8;
+
+    /**
+     * Size of buffer for file reads and writes
+     */
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    /**
+     * Id flag of UUID
+     */
+    private static final byte UUID_ID = 1;
+
+    private static final Game.Status[] STATUSES = Game.Status.values();
+
+    private GameSnapshot() {
+    }
+
+    /**
+     * Write games into file. The file is replaced when all games are written.
+     * The count of games is put into the header at the end, so the games are only iterated once.
+     * @param file snapshot file
+     * @param games games to write
+     * @return size of file in bytes
+     * @throws IOException fail to write file
+     */
+    public static long write(File file, Iterable<Game> games) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        long size;
+        try (RandomAccessFile raf = new RandomAccessFile(tmp, "rw")) {
+            FileChannel out = raf.getChannel();
+            out.truncate(0);
+            ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+            buffer.putInt(MAGIC);
+            buffer.putInt(FORMAT);
+            buffer.putLong(0);
+
+            long count = 0;
+            for (Game game : games) {
+                int length = sizeOf(game);
+                if (buffer.remaining() < length) {
+                    drain(buffer, out);
+                    if (buffer.capacity() < length) buffer = ByteBuffer.allocateDirect(length);
+                }
+                writeGame(buffer, game);
+                count++;
+            }
+            drain(buffer, out);
+            ByteBuffer header = ByteBuffer.allocate(8).putLong(0, count);
+            while (header.hasRemaining()) {
+                out.write(header, 8 + header.position());
+            }
+            out.force(true);
+            size = out.size();
+        }
+        if (!tmp.renameTo(file)) {
+            // Windows can't rename over an existing file
+            if (!file.delete() || !tmp.renameTo(file)) {
+                throw new IOException("Cannot rename snapshot " + tmp);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Read all games of a snapshot file
+     * @param file snapshot file
+     * @return games in file order
+     * @throws IOException fail to read file, or the file is not a complete snapshot
+     */
+    public static List<Game> read(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            Reader in = new Reader(raf.getChannel());
+            ByteBuffer buffer = in.require(HEADER_SIZE);
+            if (buffer.getInt() != MAGIC) throw new IOException("Not a game snapshot: " + file);
+            int format = buffer.getInt();
+            if (format != FORMAT) throw new IOException("Unknown snapshot format " + format + ": " + file);
+            long count = buffer.getLong();
+            if (count < 0 || count > Integer.MAX_VALUE) throw new IOException("Broken snapshot: " + file);
+
+            List<Game> games = new ArrayList<>((int) count);
+            for (long i=0; i<count; i++) {
+                // Peek the id and board sizes, then read the whole game from buffer
+                buffer = in.require(3);
+                int p = buffer.position();
+                int idSize = buffer.get(p) == UUID_ID ? 16 : 2 + (buffer.getShort(p + 1) & 0xffff);
+                buffer = in.require(1 + idSize + FIXED_SIZE);
+                int boardDimension = buffer.getShort(buffer.position() + 1 + idSize + 2);
+                if (boardDimension <= 0) throw new IOException("Broken snapshot: " + file);
+
+                buffer = in.require(1 + idSize + FIXED_SIZE + 16 * Board.words(boardDimension));
+                games.add(readGame(buffer));
+            }
+            return games;
+        }
+    }
+
+    /**
+     * Get the encoded size of a game
+     * @param game Game object
+     * @return size in bytes
+     */
+    static int sizeOf(Game game) {
+        int idSize = uuidOf(game.getId()) != null ? 16 : 2 + game.getId().getBytes(StandardCharsets.UTF_8).length;
+        return 1 + idSize + FIXED_SIZE + 16 * Board.words(game.board().dimension());
+    }
+
+    /**
+     * Encode one game
+     * @param buffer buffer with at least sizeOf(game) bytes remaining
+     * @param game Game object
+     */
+    static void writeGame(ByteBuffer buffer, Game game) {
+        UUID uuid = uuidOf(game.getId());
+        if (uuid != null) {
+            buffer.put(UUID_ID);
+            buffer.putLong(uuid.getMostSignificantBits());
+            buffer.putLong(uuid.getLeastSignificantBits());
+        } else {
+            byte[] id = game.getId().getBytes(StandardCharsets.UTF_8);
+            buffer.put((byte) 0);
+            buffer.putShort((short) id.length);
+            buffer.put(id);
+        }
+        Board board = game.board();
+        buffer.putShort((short) board.winLength());
+        buffer.putShort((short) board.dimension());
+        buffer.put((byte) game.getStatus().ordinal());
+        buffer.put((byte) game.getWinner());
+        buffer.putLong(game.getLastUpdateTime());
+        buffer.putLong(game.getVersion());
+        board.write(buffer);
+    }
+
+    /**
+     * Decode one game written by writeGame
+     * @param buffer buffer at the position of game
+     * @return Game object
+     * @throws IOException the bytes are not a game
+     */
+    static Game readGame(ByteBuffer buffer) throws IOException {
+        try {
+            String id;
+            if (buffer.get() == UUID_ID) {
+                id = new UUID(buffer.getLong(), buffer.getLong()).toString();
+            } else {
+                byte[] bytes = new byte[buffer.getShort() & 0xffff];
+                buffer.get(bytes);
+                id = new String(bytes, StandardCharsets.UTF_8);
+            }
+
+            int winLength = buffer.getShort();
+            int boardDimension = buffer.getShort();
+            int status = buffer.get();
+            int winner = buffer.get();
+            long lastUpdateTime = buffer.getLong();
+            long version = buffer.getLong();
+            if (boardDimension < 3 || boardDimension > Game.MAX_DIMENSION || winLength < 3 || winLength > boardDimension
+                    || status < 0 || status >= STATUSES.length) {
+                throw new IOException("Broken game: board dimension " + boardDimension + ", win length " + winLength
+                        + ", status " + status);
+            }
+            // check the size before the board is allocated
+            if (buffer.remaining() < Board.byteLength(boardDimension)) {
+                throw new EOFException("Game is truncated");
+            }
+            Board board = Board.read(boardDimension, winLength, buffer);
+            return Game.restore(id, board, STATUSES[status], winner, lastUpdateTime, version);
+        } catch (BufferUnderflowException e) {
+            throw new EOFException("Game is truncated");
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Broken game: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Get UUID of a game id
+     * @return UUID, null if the id is not the canonical form of a UUID
+     */
+    private static UUID uuidOf(String id) {
+        if (id.length() != 36) return null;
+        try {
+            UUID uuid = UUID.fromString(id);
+            return uuid.toString().equals(id) ? uuid : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Write all bytes of buffer into channel and clear the buffer
+     */
+    private static void drain(ByteBuffer buffer, FileChannel out) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Buffered reader of file channel which reads large chunks
+     */
+    private static final class Reader {
+        private final FileChannel channel;
+        private ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+
+        Reader(FileChannel channel) {
+            this.channel = channel;
+            this.buffer.flip();
+        }
+
+        /**
+         * Make sure the buffer has some bytes to read
+         * @param length count of bytes
+         * @return buffer with at least length bytes remaining
+         */
+        ByteBuffer require(int length) throws IOException {
+            if (this.buffer.remaining() >= length) return this.buffer;
+
+            if (this.buffer.capacity() < length) {
+                ByteBuffer larger = ByteBuffer.allocateDirect(length);
+                larger.put(this.buffer);
+                this.buffer = larger;
+            } else {
+                this.buffer.compact();
+            }
+            while (this.buffer.position() < length) {
+                if (this.channel.read(this.buffer) < 0) {
+                    throw new EOFException("Snapshot is truncated");
+                }
+            }
+            this.buffer.flip();
+            return this.buffer;
+        }
+    }
+}
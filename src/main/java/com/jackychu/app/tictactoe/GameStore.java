@@ -0,0 +1,63 @@
+package com.jackychu.app.tictactoe;
+
+import java.io.Closeable;
+import java.util.Map;
+
+/**
+ * Storage of games. The key is id of game.<br>
+ * A stored game must not be changed in place. To update a game, change a copy of it
+ * and call replace with the stored one. The replace only success when the stored game
+ * is still the same version, so concurrent updates never overwrite each other.<br>
+ * The store is closed when the server stops.
+ */
+public interface GameStore extends Closeable {
+    /**
+     * Get game by id
+     * @param id Game id
+     * @return Game object, null if not found
+     */
+    Game get(String id);
+
+    /**
+     * Get all games
+     * @return snapshot of games. The key is id of game.
+     */
+    Map<String, Game> getAll();
+
+    /**
+     * Get all games one by one, e.g. to write a snapshot.
+     * A store which doesn't keep all games in memory reads them as the iteration goes.
+     * @return games
+     */
+    default Iterable<Game> games() {
+        return this.getAll().values();
+    }
+
+    /**
+     * Store a new game or overwrite the game with the same id
+     * @param game Game object
+     */
+    void put(Game game);
+
+    /**
+     * Replace the stored game if it is still the expected one.<br>
+     * The version of updated game is set to the next version of expected game.
+     * @param expected the game read from store
+     * @param updated the new status of game
+     * @return true if replaced, false if the game was changed or removed by others
+     */
+    boolean replace(Game expected, Game updated);
+
+    /**
+     * Remove game by id
+     * @param id Game id
+     * @return the removed game, null if not found
+     */
+    Game remove(String id);
+
+    /**
+     * Get count of games
+     * @return count of games
+     */
+    int size();
+}
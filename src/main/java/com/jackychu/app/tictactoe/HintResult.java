@@ -0,0 +1,99 @@
+package com.jackychu.app.tictactoe;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * The class for http response of the hint api.<br>
+ * The best move for the player to move and the result of game if both players play perfectly.<br>
+ * Will convert to json format automatically when response to client.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class HintResult {
+    /**
+     * Id of game
+     */
+    private String id;
+
+    /**
+     * The best move. Null if the game is end
+     */
+    private Move move;
+
+    /**
+     * The winner if both players play perfectly. 0 for draw or unknown
+     */
+    private int winner;
+
+    /**
+     * The game is end, or one player can win whatever the other player does
+     */
+    private boolean decided;
+
+    /**
+     * The result is exact: from the 3x3 table or a search to the end of game
+     */
+    private boolean exact;
+
+    /**
+     * Constructor for json conversion
+     */
+    public HintResult() {
+    }
+
+    /**
+     * Constructor with all values
+     *
+     * @param id id of game
+     * @param move the best move, null if the game is end
+     * @param winner the winner with perfect play, 0 for draw or unknown
+     * @param decided the winner can not be changed
+     * @param exact the result is exact
+     */
+    public HintResult(String id, Move move, int winner, boolean decided, boolean exact) {
+        this.id = id;
+        this.move = move;
+        this.winner = winner;
+        this.decided = decided;
+        this.exact = exact;
+    }
+
+    public String getId() {
+        return this.id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public Move getMove() {
+        return this.move;
+    }
+
+    public void setMove(Move move) {
+        this.move = move;
+    }
+
+    public int getWinner() {
+        return this.winner;
+    }
+
+    public void setWinner(int winner) {
+        this.winner = winner;
+    }
+
+    public boolean isDecided() {
+        return this.decided;
+    }
+
+    public void setDecided(boolean decided) {
+        this.decided = decided;
+    }
+
+    public boolean isExact() {
+        return this.exact;
+    }
+
+    public void setExact(boolean exact) {
+        this.exact = exact;
+    }
+}
@@ -0,0 +1,56 @@
+package com.jackychu.app.tictactoe;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Game store in heap memory.<br>
+ * Backed by ConcurrentHashMap, so requests on different games never block each other
+ * and a replace is an atomic compare-and-set on the stored game version.
+ */
+public class InMemoryGameStore implements GameStore {
+    /**
+     * The games. The key is id of game.
+     */
+    private final ConcurrentHashMap<String, Game> games = new ConcurrentHashMap<>();
+
+    @Override
+    public Game get(String id) {
+        return this.games.get(id);
+    }
+
+    @Override
+    public Map<String, Game> getAll() {
+        return new HashMap<>(this.games);
+    }
+
+    @Override
+    public void put(Game game) {
+        this.games.put(game.getId(), game);
+    }
+
+    @Override
+    public boolean replace(Game expected, Game updated) {
+        if (!expected.getId().equals(updated.getId())) return false;
+
+        updated.setVersion(expected.getVersion() + 1);
+        // Game doesn't override equals, so this compares the stored instance.
+        // Stored games are never changed in place, the instance is the version.
+        return this.games.replace(expected.getId(), expected, updated);
+    }
+
+    @Override
+    public Game remove(String id) {
+        return this.games.remove(id);
+    }
+
+    @Override
+    public int size() {
+        return this.games.size();
+    }
+
+    @Override
+    public void close() {
+    }
+}
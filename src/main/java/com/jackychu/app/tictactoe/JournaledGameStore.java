@@ -0,0 +1,125 @@
+package com.jackychu.app.tictactoe;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Game store which appends every accepted change to a MoveJournal.<br>
+ * The change is appended after the inner store accepted it. In sync mode
+ * the request returns after the journal record is on disk.<br>
+ * When the inner store is a GameRegistry, an evicted game is gone for good,
+ * so the eviction is journaled as a delete and replay doesn't bring the game back.
+ */
+public final class JournaledGameStore implements GameStore, GameRegistry.EvictionListener {
+    /**
+     * The store of games
+     */
+    private final GameStore store;
+
+    /**
+     * The journal of changes
+     */
+    private final MoveJournal journal;
+
+    /**
+     * Replay the journal into the store, then journal every change of the store
+     * @param store game store
+     * @param journal move journal
+     * @throws IOException fail to read journal
+     */
+    public JournaledGameStore(GameStore store, MoveJournal journal) throws IOException {
+        this.store = store;
+        this.journal = journal;
+        if (store instanceof GameRegistry) {
+            ((GameRegistry) store).addEvictionListener(this);
+        }
+        for (Game g : journal.replay().values()) {
+            store.put(g);
+        }
+        journal.setSource(store);
+    }
+
+    @Override
+    public Game get(String id) {
+        return this.store.get(id);
+    }
+
+    @Override
+    public Map<String, Game> getAll() {
+        return this.store.getAll();
+    }
+
+    @Override
+    public Iterable<Game> games() {
+        return this.store.games();
+    }
+
+    @Override
+    public void put(Game game) {
+        this.store.put(game);
+        this.journal.appendCreate(game);
+    }
+
+    @Override
+    public boolean replace(Game expected, Game updated) {
+        if (!this.store.replace(expected, updated)) return false;
+
+        this.journal.appendChange(expected, updated);
+        return true;
+    }
+
+    @Override
+    public Game remove(String id) {
+        Game g = this.store.remove(id);
+        if (g != null) {
+            this.journal.appendDelete(g);
+        }
+        return g;
+    }
+
+    /**
+     * Journal an evicted game as deleted
+     * @param game the evicted game
+     */
+    @Override
+    public void evicted(Game game) {
+        this.journal.appendDelete(game);
+    }
+
+    @Override
+    public int size() {
+        return this.store.size();
+    }
+
+    /**
+     * Get the store of games
+     * @return inner game store
+     */
+    public GameStore getStore() {
+        return this.store;
+    }
+
+    /**
+     * Get the journal
+     * @return move journal
+     */
+    public MoveJournal getJournal() {
+        return this.journal;
+    }
+
+    /**
+     * Close the journal, then the store
+     * @throws IOException fail to close
+     */
+    @Override
+    public void close() throws IOException {
+        if (this.store instanceof GameRegistry) {
+            ((GameRegistry) this.store).removeEvictionListener(this);
+        }
+        try {
+            this.journal.close();
+        } finally {
+            this.store.close();
+        }
+    }
+}
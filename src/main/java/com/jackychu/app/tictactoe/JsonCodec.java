@@ -0,0 +1,48 @@
+package com.jackychu.app.tictactoe;
+
+import javax.ws.rs.ext.ContextResolver;
+import javax.ws.rs.ext.Provider;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+
+/**
+ * Shared JSON codec. One ObjectMapper for the whole server, with the readers and writers
+ * of Game and ErrorMessage built once.<br>
+ * Registered as the ContextResolver of jersey-media-json-jackson, so the REST resources and
+ * Game.toJson/fromJson use the same serializers. ObjectMapper, ObjectReader and ObjectWriter
+ * are thread-safe once configured.
+ */
+@Provider
+public class JsonCodec implements ContextResolver<ObjectMapper> {
+    /**
+     * The shared mapper. Do not change its configuration after startup.
+     */
+    static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * Reader of Game
+     */
+    static final ObjectReader GAME_READER = MAPPER.readerFor(Game.class);
+
+    /**
+     * Writer of Game
+     */
+    static final ObjectWriter GAME_WRITER = MAPPER.writerFor(Game.class);
+
+    /**
+     * Reader of ErrorMessage
+     */
+    static final ObjectReader ERROR_READER = MAPPER.readerFor(ErrorMessage.class);
+
+    /**
+     * Writer of ErrorMessage
+     */
+    static final ObjectWriter ERROR_WRITER = MAPPER.writerFor(ErrorMessage.class);
+
+    @Override
+    public ObjectMapper getContext(Class<?> type) {
+        return MAPPER;
+    }
+}
@@ -0,0 +1,120 @@
+package com.jackychu.app.tictactoe;
+
+/**
+ * Bitboard for boards larger than 8x8. One long array per player, 64 cells per long.
+ */
+final class LargeBoard extends Board {
+    /**
+     * Cells of player 1
+     */
+    final long[] one;
+
+    /**
+     * Cells of player 2
+     */
+    final long[] two;
+
+    /**
+     * Create empty board
+     * @param dimension The dimension of game board
+     * @param winLength Count of marks in a row to win
+     */
+    LargeBoard(int dimension, int winLength) {
+        super(dimension, winLength);
+        int words = words(dimension);
+        this.one = new long[words];
+        this.two = new long[words];
+    }
+
+    @Override
+    int get(int row, int col) {
+        int index = row * this.dimension + col;
+        long bit = 1L << (index & 63);
+        int word = index >>> 6;
+        if ((this.one[word] & bit) != 0) return 1;
+        if ((this.two[word] & bit) != 0) return 2;
+        return 0;
+    }
+
+    @Override
+    void set(int row, int col, int player) {
+        int index = row * this.dimension + col;
+        long bit = 1L << (index & 63);
+        int word = index >>> 6;
+        this.one[word] &= ~bit;
+        this.two[word] &= ~bit;
+        if (player == 1) this.one[word] |= bit;
+        if (player == 2) this.two[word] |= bit;
+    }
+
+    @Override
+    int count(int player) {
+        long[] bits = player == 1 ? this.one : this.two;
+        int count = 0;
+        for (long word : bits) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    @Override
+    boolean covers(int player, long[] mask) {
+        long[] bits = player == 1 ? this.one : this.two;
+        for (int i=0; i<mask.length; i++) {
+            if ((bits[i] & mask[i]) != mask[i]) return false;
+        }
+        return true;
+    }
+
+    @Override
+    int countIn(int player, long[] mask) {
+        long[] bits = player == 1 ? this.one : this.two;
+        int count = 0;
+        for (int i=0; i<mask.length; i++) {
+            count += Long.bitCount(bits[i] & mask[i]);
+        }
+        return count;
+    }
+
+    @Override
+    int differences(Board other) {
+        LargeBoard b = (LargeBoard) other;
+        int count = 0;
+        for (int i=0; i<this.one.length; i++) {
+            count += Long.bitCount((this.one[i] ^ b.one[i]) | (this.two[i] ^ b.two[i]));
+        }
+        return count;
+    }
+
+    @Override
+    int firstDifference(Board other) {
+        LargeBoard b = (LargeBoard) other;
+        for (int i=0; i<this.one.length; i++) {
+            long diff = (this.one[i] ^ b.one[i]) | (this.two[i] ^ b.two[i]);
+            if (diff != 0) return (i << 6) + Long.numberOfTrailingZeros(diff);
+        }
+        return -1;
+    }
+
+    @Override
+    Board copy() {
+        LargeBoard b = new LargeBoard(this.dimension, this.winLength);
+        System.arraycopy(this.one, 0, b.one, 0, this.one.length);
+        System.arraycopy(this.two, 0, b.two, 0, this.two.length);
+        return b;
+    }
+
+    @Override
+    long[] words() {
+        long[] words = new long[2 * this.one.length];
+        System.arraycopy(this.one, 0, words, 0, this.one.length);
+        System.arraycopy(this.two, 0, words, this.one.length, this.two.length);
+        return words;
+    }
+
+    @Override
+    void load(long[] words) {
+        System.arraycopy(words, 0, this.one, 0, this.one.length);
+        System.arraycopy(words, this.one.length, this.two, 0, this.two.length);
+    }
+}
@@ -0,0 +1,68 @@
+package com.jackychu.app.tictactoe;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Latency histogram with fixed buckets, in the Prometheus histogram layout.<br>
+ * Recording is one bucket search and two lock-free counter adds.
+ */
+final class LatencyHistogram {
+    /**
+     * Upper bounds of buckets in seconds, the last bucket (+Inf) is not listed
+     */
+    static final double[] BOUNDS = {0.0005, 0.001, 0.0025, 0.005, 0.01, 0.025, 0.05, 0.1, 0.25, 0.5, 1, 2.5, 5, 10};
+
+    private static final long[] BOUND_NANOS = new long[BOUNDS.length];
+
+    static {
+        for (int i=0; i<BOUNDS.length; i++) {
+            BOUND_NANOS[i] = (long) (BOUNDS[i] * TimeUnit.SECONDS.toNanos(1));
+        }
+    }
+
+    /**
+     * Count of each bucket, not cumulative
+     */
+    private final Counter[] buckets = new Counter[BOUNDS.length + 1];
+
+    private final Counter sumNanos = new Counter();
+
+    LatencyHistogram() {
+        for (int i=0; i<this.buckets.length; i++) {
+            this.buckets[i] = new Counter();
+        }
+    }
+
+    /**
+     * Count one latency
+     * @param nanos latency in nanos
+     */
+    void record(long nanos) {
+        int i = 0;
+        while (i < BOUND_NANOS.length && nanos > BOUND_NANOS[i]) i++;
+        this.buckets[i].increment();
+        this.sumNanos.add(nanos);
+    }
+
+    /**
+     * Get count of latencies not more than the bound of each bucket, the last one is the total count
+     * @return cumulative counts
+     */
+    long[] cumulativeCounts() {
+        long[] counts = new long[this.buckets.length];
+        long count = 0;
+        for (int i=0; i<this.buckets.length; i++) {
+            count += this.buckets[i].sum();
+            counts[i] = count;
+        }
+        return counts;
+    }
+
+    /**
+     * Get sum of all latencies
+     * @return sum in seconds
+     */
+    double sumSeconds() {
+        return this.sumNanos.sum() / 1e9;
+    }
+}
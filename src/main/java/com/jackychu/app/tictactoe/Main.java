@@ -1,11 +1,19 @@
 package com.jackychu.app.tictactoe;
 
 import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.hk2.utilities.binding.AbstractBinder;
 import org.glassfish.jersey.grizzly2.httpserver.GrizzlyHttpServerFactory;
 import org.glassfish.jersey.server.ResourceConfig;
+import org.glassfish.jersey.server.spi.Container;
+import org.glassfish.jersey.server.spi.ContainerLifecycleListener;
 
+import java.io.File;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.net.URI;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * System start point class
@@ -14,27 +22,393 @@ public class Main {
     // Base URI the Grizzly HTTP server will listen on
     public static final String BASE_URI = "http://0.0.0.0:8080/tictactoe/";
 
+    // System property of idle time in seconds before a game is removed. 0 for never.
+    public static final String GAMES_TTL_PROPERTY = "tictactoe.games.ttl";
+
+    // System property of max count of games kept by the server
+    public static final String GAMES_MAX_PROPERTY = "tictactoe.games.max";
+
+    // System property of jdbc url to save games, e.g. jdbc:h2:./data/tictactoe. Games are only in memory if not set.
+    public static final String DB_URL_PROPERTY = "tictactoe.db.url";
+
+    // System property of directory of move journal. Changes are not journaled if not set.
+    public static final String JOURNAL_DIR_PROPERTY = "tictactoe.journal.dir";
+
+    // System property to wait for fsync of journal before response. Default is true.
+    public static final String JOURNAL_SYNC_PROPERTY = "tictactoe.journal.sync";
+
+    // System property of snapshot file, loaded on start and saved on stop. Not used with a journal, which has its own snapshots.
+    public static final String SNAPSHOT_FILE_PROPERTY = "tictactoe.snapshot.file";
+
+    // System property of count of entries in the table of searched positions of ai moves, 16 bytes each
+    public static final String AI_TABLE_PROPERTY = "tictactoe.ai.table";
+
+    // System property of count of threads of one Monte Carlo tree search. Default is count of cores.
+    public static final String AI_THREADS_PROPERTY = "tictactoe.ai.threads";
+
+    // System property of count of ai searches run at once, more get 503. Default is count of cores.
+    public static final String AI_SEARCHES_PROPERTY = "tictactoe.ai.searches";
+
     /**
-     * Starts Grizzly HTTP server exposing JAX-RS resources defined in this application.
+     * Starts Grizzly HTTP server exposing JAX-RS resources defined in this application,
+     * with the transport settings of the config file and system properties.
      *
      * @return Grizzly HTTP server.
      */
     public static HttpServer startServer() {
-        // create a resource config that scans for JAX-RS resources and providers
-        // in com.jackychu.app.tictactoe package
-        final ResourceConfig rc = new ResourceConfig().packages("com.jackychu.app.tictactoe");
+        return startServer(ServerConfig.load());
+    }
+
+    /**
+     * Starts Grizzly HTTP server exposing JAX-RS resources defined in this application.
+     *
+     * @param config transport settings
+     * @return Grizzly HTTP server.
+     */
+    public static HttpServer startServer(ServerConfig config) {
+        // create a resource config with the JAX-RS resources and providers of this application.
+        // They are listed instead of scanning the package, which reads every class of the jar on start.
+        final ResourceConfig rc = new ResourceConfig(GameResource.class, MetricsResource.class,
+                MetricsFilter.class, GameBinaryProvider.class, JsonCodec.class);
+
+        // one game store for the whole server, closed when the server stops.
+        // Accepted changes are pushed to the subscribers of game events.
+        final GameEvents events = new GameEvents();
+        final GameRegistry registry = createRegistry();
+        final GameStore inner = createStore(registry);
+        final PublishingGameStore store = new PublishingGameStore(inner, events);
+        // Without a database an evicted game is gone for good, so its subscribers are told it is deleted
+        String dbUrl = System.getProperty(DB_URL_PROPERTY);
+        if (dbUrl == null || dbUrl.isEmpty()) {
+            registry.addEvictionListener(store);
+        }
+        final TranspositionTable table = new TranspositionTable(
+                Integer.getInteger(AI_TABLE_PROPERTY, TranspositionTable.DEFAULT_ENTRIES));
+        final MctsEngine mcts = new MctsEngine(
+                Integer.getInteger(AI_THREADS_PROPERTY, Runtime.getRuntime().availableProcessors()));
+        final Metrics metrics = createMetrics(registry, events, table, mcts);
+        registerStoreMetrics(metrics, inner);
+        rc.register(new AbstractBinder() {
+            @Override
+            protected void configure() {
+                bind(store).to(GameStore.class);
+                bind(events).to(GameEvents.class);
+                bind(table).to(TranspositionTable.class);
+                bind(mcts).to(MctsEngine.class);
+                bind(metrics).to(Metrics.class);
+            }
+        });
+        rc.register(new ContainerLifecycleListener() {
+            @Override
+            public void onStartup(Container container) {
+            }
+
+            @Override
+            public void onReload(Container container) {
+            }
+
+            @Override
+            public void onShutdown(Container container) {
+                mcts.close();
+                try {
+                    store.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+        });
 
-        // create and start a new instance of grizzly http server
-        // exposing the Jersey application at BASE_URI
-        return GrizzlyHttpServerFactory.createHttpServer(URI.create(BASE_URI), rc);
+        // create a new instance of grizzly http server exposing the Jersey application at the base uri,
+        // then start it with the transport settings
+        HttpServer server = GrizzlyHttpServerFactory.createHttpServer(URI.create(config.getUri()), rc, false);
+        config.configure(server);
+        try {
+            server.start();
+        } catch (IOException e) {
+            server.shutdownNow();
+            throw new IllegalStateException("Fail to start server " + config.getUri(), e);
+        }
+        return server;
     }
 
-    public static void main(String[] args) throws IOException {
-        final HttpServer server = startServer();
-        System.out.println(String.format("Jersey app started with WADL available at "
-                + "%sapplication.wadl\nHit enter to stop it...", BASE_URI));
-        System.in.read();
-        server.stop();
+    /**
+     * Create game store from system properties.<br>
+     * The game registry keeps games in memory with TTL and max size.
+     * If a database is set, the registry is the cache of hot games in front of the database.
+     * If a journal directory is set, games are replayed from the journal and every change is journaled.
+     * Otherwise if a snapshot file is set, games are loaded from it on start and saved into it on stop.
+     *
+     * @param registry game registry of games in memory
+     * @return game store
+     */
+    static GameStore createStore(GameRegistry registry) {
+        GameStore store = createBaseStore(registry);
+        String journalDir = System.getProperty(JOURNAL_DIR_PROPERTY);
+        if (journalDir == null || journalDir.isEmpty()) {
+            return createSnapshotStore(store);
+        }
+        try {
+            boolean sync = Boolean.parseBoolean(System.getProperty(JOURNAL_SYNC_PROPERTY, "true"));
+            MoveJournal journal = new MoveJournal(new File(journalDir),
+                    MoveJournal.DEFAULT_SEGMENT_RECORDS, MoveJournal.DEFAULT_COMPACT_SEGMENTS, sync);
+            return new JournaledGameStore(store, journal);
+        } catch (IOException e) {
+            try {
+                store.close();
+            } catch (IOException ignored) {
+            }
+            throw new IllegalStateException("Fail to open journal " + journalDir, e);
+        }
+    }
+
+    /**
+     * Wrap the store with snapshot file if set.
+     *
+     * @param store game store
+     * @return game store
+     */
+    private static GameStore createSnapshotStore(GameStore store) {
+        String snapshotFile = System.getProperty(SNAPSHOT_FILE_PROPERTY);
+        if (snapshotFile == null || snapshotFile.isEmpty()) {
+            return store;
+        }
+        try {
+            return new SnapshotGameStore(store, new File(snapshotFile));
+        } catch (IOException e) {
+            try {
+                store.close();
+            } catch (IOException ignored) {
+            }
+            throw new IllegalStateException("Fail to load snapshot " + snapshotFile, e);
+        }
+    }
+
+    /**
+     * Create game registry from system properties.
+     *
+     * @return game registry
+     */
+    private static GameRegistry createRegistry() {
+        long ttlSeconds = Long.getLong(GAMES_TTL_PROPERTY, GameRegistry.DEFAULT_TTL_MILLIS / 1000);
+        int maxSize = Integer.getInteger(GAMES_MAX_PROPERTY, GameRegistry.DEFAULT_MAX_SIZE);
+        return new GameRegistry(ttlSeconds * 1000, maxSize);
+    }
+
+    /**
+     * Use the game registry, with database behind it if set.
+     *
+     * @param registry game registry
+     * @return game store
+     */
+    private static GameStore createBaseStore(GameRegistry registry) {
+        String dbUrl = System.getProperty(DB_URL_PROPERTY);
+        if (dbUrl == null || dbUrl.isEmpty()) {
+            return registry;
+        }
+        try {
+            return new PersistentGameStore(dbUrl, registry,
+                    PersistentGameStore.DEFAULT_FLUSH_MILLIS, PersistentGameStore.DEFAULT_BATCH_SIZE);
+        } catch (SQLException e) {
+            registry.close();
+            throw new IllegalStateException("Fail to open database " + dbUrl, e);
+        }
     }
-}
 
+    /**
+     * Create server metrics, with the values of games in memory, game events and ai searches.
+     *
+     * @return metrics
+     */
+    private static Metrics createMetrics(final GameRegistry registry, final GameEvents events,
+                                         final TranspositionTable table, final MctsEngine mcts) {
+        Metrics metrics = new Metrics();
+        metrics.register("tictactoe_games_active", Metrics.GAUGE, "Games in memory", new Metrics.Gauge() {
+            @Override
+            public double value() {
+                return registry.size();
+            }
+        });
+        metrics.register("tictactoe_games", "status", Metrics.GAUGE, "Games in memory by status", new Metrics.Gauges() {
+            @Override
+            public Map<String, Integer> values() {
+                Map<String, Integer> counts = new HashMap<>();
+                for (Map.Entry<Game.Status, Integer> e : registry.getStatusCounts().entrySet()) {
+                    counts.put(e.getKey().name(), e.getValue());
+                }
+                return counts;
+            }
+        });
+        metrics.register("tictactoe_games_evicted_total", "reason", Metrics.COUNTER, "Games removed by the registry",
+                new Metrics.Gauges() {
+                    @Override
+                    public Map<String, Long> values() {
+                        Map<String, Long> counts = new HashMap<>();
+                        counts.put("ttl", registry.getExpiredEvictions());
+                        counts.put("size", registry.getSizeEvictions());
+                        return counts;
+                    }
+                });
+        metrics.register("tictactoe_event_subscribers", Metrics.GAUGE, "Subscriptions of game events", new Metrics.Gauge() {
+            @Override
+            public double value() {
+                return events.getSubscribers();
+            }
+        });
+        metrics.register("tictactoe_event_waiters", Metrics.GAUGE, "Long polls waiting for a change", new Metrics.Gauge() {
+            @Override
+            public double value() {
+                return events.getWaiting();
+            }
+        });
+        metrics.register("tictactoe_events_sent_total", Metrics.COUNTER, "Events written to subscribers", new Metrics.Gauge() {
+            @Override
+            public double value() {
+                return events.getSent();
+            }
+        });
+        metrics.register("tictactoe_events_dropped_total", Metrics.COUNTER, "Events dropped for slow subscribers",
+                new Metrics.Gauge() {
+                    @Override
+                    public double value() {
+                        return events.getDropped();
+                    }
+                });
+        metrics.register("tictactoe_ai_table_hit_ratio", Metrics.GAUGE, "Hits per probe of the ai search table",
+                new Metrics.Gauge() {
+                    @Override
+                    public double value() {
+                        return table.getHitRate();
+                    }
+                });
+        metrics.register("tictactoe_mcts_playouts_total", Metrics.COUNTER, "Playouts of Monte Carlo tree search",
+                new Metrics.Gauge() {
+                    @Override
+                    public double value() {
+                        return mcts.getPlayouts();
+                    }
+                });
+        metrics.register("tictactoe_mcts_playouts_per_second", Metrics.GAUGE,
+                "Playouts per second of Monte Carlo tree search", new Metrics.Gauge() {
+                    @Override
+                    public double value() {
+                        return mcts.getPlayoutsPerSecond();
+                    }
+                });
+        return metrics;
+    }
+
+    /**
+     * Register the values of the snapshot file, the journal and the database of store, if it has them.
+     *
+     * @param metrics server metrics
+     * @param store game store of createStore
+     */
+    static void registerStoreMetrics(Metrics metrics, GameStore store) {
+        if (store instanceof JournaledGameStore) {
+            final MoveJournal journal = ((JournaledGameStore) store).getJournal();
+            metrics.register("tictactoe_journal_records_total", Metrics.COUNTER, "Records appended to the journal",
+                    new Metrics.Gauge() {
+                        @Override
+                        public double value() {
+                            return journal.getAppended();
+                        }
+                    });
+            metrics.register("tictactoe_journal_commits_total", Metrics.COUNTER, "Fsync calls of the journal",
+                    new Metrics.Gauge() {
+                        @Override
+                        public double value() {
+                            return journal.getCommits();
+                        }
+                    });
+            metrics.register("tictactoe_journal_snapshots_total", Metrics.COUNTER, "Snapshots written by the journal",
+                    new Metrics.Gauge() {
+                        @Override
+                        public double value() {
+                            return journal.getSnapshots();
+                        }
+                    });
+            store = ((JournaledGameStore) store).getStore();
+        }
+        if (store instanceof SnapshotGameStore) {
+            final SnapshotGameStore snapshot = (SnapshotGameStore) store;
+            metrics.register("tictactoe_snapshot_bytes", Metrics.GAUGE, "Size of the last snapshot file read or written",
+                    new Metrics.Gauge() {
+                        @Override
+                        public double value() {
+                            return snapshot.getSnapshotBytes();
+                        }
+                    });
+            metrics.register("tictactoe_snapshot_load_seconds", Metrics.GAUGE, "Time to load the snapshot on start",
+                    new Metrics.Gauge() {
+                        @Override
+                        public double value() {
+                            return snapshot.getLoadMillis() / 1000.0;
+                        }
+                    });
+            metrics.register("tictactoe_snapshot_loaded_games", Metrics.GAUGE, "Games loaded from the snapshot on start",
+                    new Metrics.Gauge() {
+                        @Override
+                        public double value() {
+                            return snapshot.getLoadedGames();
+                        }
+                    });
+            metrics.register("tictactoe_snapshot_save_seconds", Metrics.GAUGE, "Time to write the last snapshot",
+                    new Metrics.Gauge() {
+                        @Override
+                        public double value() {
+                            return snapshot.getSnapshotMillis() / 1000.0;
+                        }
+                    });
+            store = snapshot.getStore();
+        }
+        if (store instanceof PersistentGameStore) {
+            final PersistentGameStore db = (PersistentGameStore) store;
+            metrics.register("tictactoe_db_writes_total", Metrics.COUNTER, "Games written or deleted in the database",
+                    new Metrics.Gauge() {
+                        @Override
+                        public double value() {
+                            return db.getWrites();
+                        }
+                    });
+            metrics.register("tictactoe_db_batches_total", Metrics.COUNTER, "Batch transactions of the database",
+                    new Metrics.Gauge() {
+                        @Override
+                        public double value() {
+                            return db.getBatches();
+                        }
+                    });
+            metrics.register("tictactoe_db_loads_total", Metrics.COUNTER, "Games loaded from the database on cache miss",
+                    new Metrics.Gauge() {
+                        @Override
+                        public double value() {
+                            return db.getLoads();
+                        }
+                    });
+            metrics.register("tictactoe_db_pending_writes", Metrics.GAUGE, "Changed games not written to the database yet",
+                    new Metrics.Gauge() {
+                        @Override
+                        public double value() {
+                            return db.getPendingWrites();
+                        }
+                    });
+        }
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        ServerConfig config = ServerConfig.load();
+        final HttpServer server = startServer(config);
+        long uptime = ManagementFactory.getRuntimeMXBean().getUptime();
+
+        System.out.println(String.format("Jersey app started in %d ms with WADL available at "
+                + "%sapplication.wadl", uptime, config.getUri()));
+        if (System.console() != null) {
+            System.out.println("Hit enter to stop it...");
+            System.in.read();
+            server.shutdownNow();
+        } else {
+            // No terminal, e.g. in a container: run until the process is stopped
+            Runtime.getRuntime().addShutdownHook(new Thread(server::shutdownNow));
+            Thread.currentThread().join();
+        }
+    }
+}
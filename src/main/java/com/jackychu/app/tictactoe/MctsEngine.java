@@ -0,0 +1,521 @@
+package com.jackychu.app.tictactoe;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Computer player with Monte Carlo tree search, for boards too large for alpha-beta search.<br>
+ * Each iteration walks down the tree by UCT, adds one position, plays random moves to the end of game
+ * (a playout) and counts the result on the walked positions. The most visited move is the best move.<br>
+ * Root parallelism: every thread grows its own tree from the same position, with its own random numbers,
+ * and the visits of the root moves are summed at the end. The calling thread is one of them.<br>
+ * The search is anytime: it stops at the time or playout budget and returns the best move so far.<br>
+ * Playouts allocate nothing. Each thread keeps the board as a byte per cell and a list of the empty cells,
+ * a random move is a swap with the last empty cell, and the win check only counts the lines through the move.<br>
+ * The tree only has moves within 2 cells of a mark (the center on an empty board),
+ * the playouts use every empty cell.<br>
+ * One engine can be used by many threads. Close the engine to stop its threads.
+ */
+public class MctsEngine implements Closeable {
+    /**
+     * Default max count of playouts
+     */
+    public static final long DEFAULT_MAX_PLAYOUTS = 2000000;
+
+    /**
+     * Exploration constant of UCT
+     */
+    static final double EXPLORATION = 1.4;
+
+    /**
+     * Max count of positions in the tree of one thread, later iterations only play out
+     */
+    static final int MAX_TREE_NODES = 1 << 18;
+
+    /**
+     * Distance to a mark of the moves in the tree
+     */
+    private static final int NEAR = 2;
+
+    private static final int[][] DIRECTIONS = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+
+    private final int threads;
+
+    /**
+     * Threads of the searches besides the calling thread, null for one thread
+     */
+    private final ExecutorService pool;
+
+    private final AtomicLong playouts = new AtomicLong();
+    private final AtomicLong searchNanos = new AtomicLong();
+    private final AtomicLong searches = new AtomicLong();
+
+    /**
+     * Create engine with one thread per core
+     */
+    public MctsEngine() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Create engine
+     * @param threads count of threads of one search, the calling thread included
+     */
+    public MctsEngine(int threads) {
+        if (threads <= 0) throw new IllegalArgumentException("Threads should be positive: " + threads);
+
+        this.threads = threads;
+        this.pool = threads == 1 ? null : Executors.newFixedThreadPool(threads - 1, new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "mcts-worker-" + this.count.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Find the best move for the player to move
+     * @param game a game which is not end
+     * @param maxPlayouts max count of playouts of all threads
+     * @param maxMillis max search time
+     * @return best move and search stats. Score is the win rate of the move from -1000 to 1000,
+     * nodes is the count of playouts, depth is the deepest position in the trees.
+     */
+    public SearchResult search(Game game, long maxPlayouts, long maxMillis) {
+        if (game.getStatus() == Game.Status.END || game.board().full()) {
+            throw new IllegalArgumentException("Game is end: " + game.getId());
+        }
+        if (maxPlayouts <= 0) throw new IllegalArgumentException("Max playouts should be positive: " + maxPlayouts);
+        if (maxMillis <= 0) throw new IllegalArgumentException("Max millis should be positive: " + maxMillis);
+
+        long start = System.nanoTime();
+        long deadline = start + maxMillis * 1000000L;
+        Board board = game.board();
+        long perThread = Math.max(1, (maxPlayouts + this.threads - 1) / this.threads);
+
+        List<Worker> workers = new ArrayList<>(this.threads);
+        for (int i=0; i<this.threads; i++) {
+            workers.add(new Worker(board, perThread, deadline, start + i));
+        }
+        List<Future<Worker>> futures = new ArrayList<>();
+        for (int i=1; i<this.threads; i++) {
+            futures.add(this.pool.submit(workers.get(i)));
+        }
+        workers.get(0).call();
+        for (Future<Worker> future : futures) {
+            try {
+                future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (ExecutionException e) {
+                throw new IllegalStateException("Search failed", e.getCause());
+            }
+        }
+
+        // Sum the root moves of all trees
+        int d = board.dimension();
+        long[] visits = new long[d * d];
+        double[] wins = new double[d * d];
+        long total = 0;
+        int depth = 0;
+        for (Worker worker : workers) {
+            total += worker.playouts;
+            depth = Math.max(depth, worker.depth);
+            Node root = worker.root;
+            for (int i=0; i<root.childCount; i++) {
+                Node child = root.children[i];
+                visits[child.cell] += child.visits;
+                wins[child.cell] += child.wins;
+            }
+        }
+        int best = -1;
+        for (int cell=0; cell<visits.length; cell++) {
+            if (visits[cell] > 0 && (best < 0 || visits[cell] > visits[best])) best = cell;
+        }
+        if (best < 0) best = workers.get(0).root.firstMove();
+
+        long nanos = System.nanoTime() - start;
+        this.playouts.addAndGet(total);
+        this.searchNanos.addAndGet(nanos);
+        this.searches.incrementAndGet();
+
+        int score = visits[best] == 0 ? 0 : (int) Math.round((2 * wins[best] / visits[best] - 1) * 1000);
+        Move move = new Move(best / d, best % d, AlphaBetaEngine.toMove(board));
+        return new SearchResult(move, score, depth, total, nanos / 1000000, false);
+    }
+
+    /**
+     * Get count of threads of one search
+     * @return count of threads
+     */
+    public int getThreads() {
+        return this.threads;
+    }
+
+    /**
+     * Get count of playouts of all searches
+     * @return count of playouts
+     */
+    public long getPlayouts() {
+        return this.playouts.get();
+    }
+
+    /**
+     * Get count of searches
+     * @return count of searches
+     */
+    public long getSearches() {
+        return this.searches.get();
+    }
+
+    /**
+     * Get playouts per second of search time, of all searches
+     * @return playouts per second
+     */
+    public double getPlayoutsPerSecond() {
+        long nanos = this.searchNanos.get();
+        return nanos == 0 ? 0 : this.playouts.get() * 1e9 / nanos;
+    }
+
+    /**
+     * Stop the threads
+     */
+    @Override
+    public void close() {
+        if (this.pool != null) this.pool.shutdownNow();
+    }
+
+    /**
+     * One position in the tree
+     */
+    private static final class Node {
+        /**
+         * Cell of the move to this position
+         */
+        final int cell;
+
+        /**
+         * Player who made the move to this position
+         */
+        final int player;
+
+        /**
+         * Winner if the game is end at this position: 0 for draw. -1 if not end.
+         */
+        final int winner;
+
+        /**
+         * Moves not in the tree yet, null until the first expansion
+         */
+        int[] moves;
+        int untried;
+
+        Node[] children;
+        int childCount;
+
+        int visits;
+
+        /**
+         * Wins of player, a draw is half a win
+         */
+        double wins;
+
+        Node(int cell, int player, int winner) {
+            this.cell = cell;
+            this.player = player;
+            this.winner = winner;
+        }
+
+        /**
+         * A move of the position, for a search without any finished playout
+         */
+        int firstMove() {
+            return this.childCount > 0 ? this.children[0].cell : this.moves[0];
+        }
+    }
+
+    /**
+     * Tree and playout board of one thread
+     */
+    private static final class Worker implements Callable<Worker> {
+        private final int d;
+        private final int k;
+        private final int cells;
+        private final long maxPlayouts;
+        private final long deadline;
+
+        /**
+         * Position of the root: marks, empty cells, index in empty cells and count of marks near each cell
+         */
+        private final byte[] rootCells;
+        private final int[] rootEmpties;
+        private final int[] rootWhere;
+        private final int[] rootNear;
+        private final int rootEmpty;
+
+        /**
+         * Position of the running iteration, reset from the root each iteration
+         */
+        private final byte[] board;
+        private final int[] empties;
+        private final int[] where;
+        private final int[] near;
+        private int empty;
+
+        private final Node root;
+        private Node[] path = new Node[64];
+        private long seed;
+        private int nodes;
+
+        long playouts;
+        int depth;
+
+        Worker(Board position, long maxPlayouts, long deadline, long seed) {
+            this.d = position.dimension();
+            this.k = position.winLength();
+            this.cells = this.d * this.d;
+            this.maxPlayouts = maxPlayouts;
+            this.deadline = deadline;
+            this.seed = seed * 0x9E3779B97F4A7C15L | 1;
+
+            this.rootCells = new byte[this.cells];
+            this.rootEmpties = new int[this.cells];
+            this.rootWhere = new int[this.cells];
+            this.rootNear = new int[this.cells];
+            this.board = new byte[this.cells];
+            this.empties = new int[this.cells];
+            this.where = new int[this.cells];
+            this.near = new int[this.cells];
+
+            for (int cell=0; cell<this.cells; cell++) {
+                this.board[cell] = (byte) position.get(cell / this.d, cell % this.d);
+                this.where[cell] = -1;
+            }
+            for (int cell=0; cell<this.cells; cell++) {
+                if (this.board[cell] == 0) {
+                    this.where[cell] = this.empty;
+                    this.empties[this.empty++] = cell;
+                } else {
+                    this.mark(cell);
+                }
+            }
+            this.rootEmpty = this.empty;
+            System.arraycopy(this.board, 0, this.rootCells, 0, this.cells);
+            System.arraycopy(this.empties, 0, this.rootEmpties, 0, this.cells);
+            System.arraycopy(this.where, 0, this.rootWhere, 0, this.cells);
+            System.arraycopy(this.near, 0, this.rootNear, 0, this.cells);
+
+            this.root = new Node(-1, 3 - AlphaBetaEngine.toMove(position), -1);
+            this.root.moves = this.candidates();
+            this.root.untried = this.root.moves.length;
+        }
+
+        @Override
+        public Worker call() {
+            while (this.playouts < this.maxPlayouts) {
+                if ((this.playouts & 63) == 0 && System.nanoTime() >= this.deadline) break;
+                this.iterate();
+                this.playouts++;
+            }
+            return this;
+        }
+
+        /**
+         * One iteration: select, expand, play out, count the result
+         */
+        private void iterate() {
+            System.arraycopy(this.rootCells, 0, this.board, 0, this.cells);
+            System.arraycopy(this.rootEmpties, 0, this.empties, 0, this.cells);
+            System.arraycopy(this.rootWhere, 0, this.where, 0, this.cells);
+            System.arraycopy(this.rootNear, 0, this.near, 0, this.cells);
+            this.empty = this.rootEmpty;
+
+            Node node = this.root;
+            int length = 0;
+            this.path[length++] = node;
+            while (node.winner < 0) {
+                if (node.moves == null) {
+                    node.moves = this.candidates();
+                    node.untried = node.moves.length;
+                }
+                if (node.untried > 0 && this.nodes < MAX_TREE_NODES) {
+                    node = this.expand(node);
+                    if (length == this.path.length) this.grow();
+                    this.path[length++] = node;
+                    break;
+                }
+                if (node.childCount == 0) break;
+                node = this.select(node);
+                this.play(node.cell, node.player);
+                if (length == this.path.length) this.grow();
+                this.path[length++] = node;
+            }
+            if (length - 1 > this.depth) this.depth = length - 1;
+
+            int winner = node.winner >= 0 ? node.winner : this.playout(3 - node.player);
+            for (int i=0; i<length; i++) {
+                Node n = this.path[i];
+                n.visits++;
+                if (winner == n.player) n.wins += 1;
+                else if (winner == 0) n.wins += 0.5;
+            }
+        }
+
+        /**
+         * Add a random untried move of node to the tree, and play it
+         */
+        private Node expand(Node node) {
+            int i = (int) (this.next() % node.untried);
+            int cell = node.moves[i];
+            node.moves[i] = node.moves[--node.untried];
+            node.moves[node.untried] = cell;
+
+            int player = 3 - node.player;
+            this.play(cell, player);
+            int winner = this.wins(cell, player) ? player : this.empty == 0 ? 0 : -1;
+            Node child = new Node(cell, player, winner);
+            if (node.children == null) {
+                node.children = new Node[Math.min(node.moves.length, 4)];
+            } else if (node.childCount == node.children.length) {
+                Node[] children = new Node[Math.min(node.moves.length, node.children.length * 2)];
+                System.arraycopy(node.children, 0, children, 0, node.childCount);
+                node.children = children;
+            }
+            node.children[node.childCount++] = child;
+            this.nodes++;
+            return child;
+        }
+
+        /**
+         * Child with the highest UCT value
+         */
+        private Node select(Node node) {
+            double log = Math.log(node.visits);
+            Node best = null;
+            double bestValue = Double.NEGATIVE_INFINITY;
+            for (int i=0; i<node.childCount; i++) {
+                Node child = node.children[i];
+                double value = child.visits == 0 ? Double.POSITIVE_INFINITY
+                        : child.wins / child.visits + EXPLORATION * Math.sqrt(log / child.visits);
+                if (value > bestValue) {
+                    bestValue = value;
+                    best = child;
+                }
+            }
+            return best;
+        }
+
+        /**
+         * Random moves to the end of game, without allocation
+         * @param player player to move
+         * @return winner, 0 for draw
+         */
+        private int playout(int player) {
+            while (this.empty > 0) {
+                int i = (int) (this.next() % this.empty);
+                int cell = this.empties[i];
+                this.empties[i] = this.empties[--this.empty];
+                this.board[cell] = (byte) player;
+                if (this.wins(cell, player)) return player;
+                player = 3 - player;
+            }
+            return 0;
+        }
+
+        /**
+         * Place a move of the tree, and count it near the cells around
+         */
+        private void play(int cell, int player) {
+            this.board[cell] = (byte) player;
+            int i = this.where[cell];
+            int last = this.empties[--this.empty];
+            this.empties[i] = last;
+            this.where[last] = i;
+            this.where[cell] = -1;
+            this.mark(cell);
+        }
+
+        private void mark(int cell) {
+            int row = cell / this.d, col = cell % this.d;
+            for (int r=Math.max(0, row - NEAR); r<=Math.min(this.d - 1, row + NEAR); r++) {
+                for (int c=Math.max(0, col - NEAR); c<=Math.min(this.d - 1, col + NEAR); c++) {
+                    this.near[r * this.d + c]++;
+                }
+            }
+        }
+
+        /**
+         * Moves of the current position in the tree: empty cells near a mark, or the center if there is no mark
+         */
+        private int[] candidates() {
+            int count = 0;
+            for (int i=0; i<this.empty; i++) {
+                if (this.near[this.empties[i]] > 0) count++;
+            }
+            if (count == 0) {
+                int center = (this.d / 2) * this.d + this.d / 2;
+                return new int[]{this.board[center] == 0 ? center : this.empties[0]};
+            }
+            int[] moves = new int[count];
+            count = 0;
+            for (int i=0; i<this.empty; i++) {
+                if (this.near[this.empties[i]] > 0) moves[count++] = this.empties[i];
+            }
+            return moves;
+        }
+
+        /**
+         * Check win length marks in a row through the cell
+         */
+        private boolean wins(int cell, int player) {
+            int row = cell / this.d, col = cell % this.d;
+            for (int[] direction : DIRECTIONS) {
+                int count = 1;
+                for (int sign=-1; sign<=1; sign+=2) {
+                    int r = row + sign * direction[0], c = col + sign * direction[1];
+                    while (count < this.k && r >= 0 && r < this.d && c >= 0 && c < this.d
+                            && this.board[r * this.d + c] == player) {
+                        count++;
+                        r += sign * direction[0];
+                        c += sign * direction[1];
+                    }
+                }
+                if (count >= this.k) return true;
+            }
+            return false;
+        }
+
+        private void grow() {
+            Node[] path = new Node[this.path.length * 2];
+            System.arraycopy(this.path, 0, path, 0, this.path.length);
+            this.path = path;
+        }
+
+        /**
+         * Random number, xorshift
+         * @return non-negative random long
+         */
+        private long next() {
+            long x = this.seed;
+            x ^= x << 13;
+            x ^= x >>> 7;
+            x ^= x << 17;
+            this.seed = x;
+            return x >>> 1;
+        }
+    }
+}
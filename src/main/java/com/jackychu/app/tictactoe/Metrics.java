@@ -0,0 +1,248 @@
+package com.jackychu.app.tictactoe;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Server-wide metrics, exposed at /metrics in the Prometheus text format.<br>
+ * Requests are counted by endpoint (the resource method name) and http status, with a latency histogram
+ * of each endpoint. Rejected games and moves are counted by endpoint. Recording never takes a lock:
+ * the counters are lock-free and a new label is added with putIfAbsent.<br>
+ * Values kept by other parts of the server, like the count of games or evictions, are registered as gauges
+ * and read only when the metrics are scraped.
+ */
+public class Metrics {
+    /**
+     * Content type of the Prometheus text format
+     */
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4";
+
+    public static final String COUNTER = "counter";
+    public static final String GAUGE = "gauge";
+
+    /**
+     * Value read on scrape
+     */
+    public interface Gauge {
+        double value();
+    }
+
+    /**
+     * Values of one label read on scrape
+     */
+    public interface Gauges {
+        /**
+         * @return value of each label value
+         */
+        Map<String, ? extends Number> values();
+    }
+
+    /**
+     * Counters of each endpoint. The key is resource method name.
+     */
+    private final ConcurrentHashMap<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    /**
+     * Registered gauges in order
+     */
+    private final List<Family> families = new ArrayList<>();
+
+    /**
+     * Count one answered request
+     * @param endpoint resource method name
+     * @param status http status
+     * @param nanos latency in nanos
+     */
+    public void request(String endpoint, int status, long nanos) {
+        Endpoint e = this.endpoint(endpoint);
+        e.status(status).increment();
+        e.latency.record(nanos);
+    }
+
+    /**
+     * Count one game or move rejected by validate
+     * @param endpoint resource method name
+     */
+    public void invalid(String endpoint) {
+        this.endpoint(endpoint).invalid.increment();
+    }
+
+    /**
+     * Register a value read on scrape
+     * @param name metric name
+     * @param type COUNTER or GAUGE
+     * @param help description
+     * @param gauge value
+     */
+    public synchronized void register(String name, String type, String help, Gauge gauge) {
+        this.families.add(new Family(name, type, help, null, gauge, null));
+    }
+
+    /**
+     * Register values of one label read on scrape
+     * @param name metric name
+     * @param label label name
+     * @param type COUNTER or GAUGE
+     * @param help description
+     * @param gauges value of each label value
+     */
+    public synchronized void register(String name, String label, String type, String help, Gauges gauges) {
+        this.families.add(new Family(name, type, help, label, null, gauges));
+    }
+
+    /**
+     * Get count of requests
+     * @param endpoint resource method name
+     * @param status http status
+     * @return count of requests
+     */
+    public long getRequests(String endpoint, int status) {
+        Endpoint e = this.endpoints.get(endpoint);
+        Counter counter = e == null || status < 0 || status >= Endpoint.STATUSES ? null : e.statuses.get(status);
+        return counter == null ? 0 : counter.sum();
+    }
+
+    /**
+     * Get count of rejected games and moves
+     * @param endpoint resource method name
+     * @return count of rejected requests
+     */
+    public long getInvalid(String endpoint) {
+        Endpoint e = this.endpoints.get(endpoint);
+        return e == null ? 0 : e.invalid.sum();
+    }
+
+    /**
+     * Write all metrics in the Prometheus text format
+     * @return metrics text
+     */
+    public String scrape() {
+        StringBuilder out = new StringBuilder(4096);
+
+        Map<String, Endpoint> endpoints = new TreeMap<>(this.endpoints);
+
+        header(out, "tictactoe_http_requests_total", COUNTER, "Answered requests by endpoint and status");
+        for (Map.Entry<String, Endpoint> e : endpoints.entrySet()) {
+            for (int status=0; status<Endpoint.STATUSES; status++) {
+                Counter counter = e.getValue().statuses.get(status);
+                if (counter == null) continue;
+                out.append("tictactoe_http_requests_total{endpoint=\"").append(e.getKey())
+                        .append("\",status=\"").append(status).append("\"} ").append(counter.sum()).append('\n');
+            }
+        }
+
+        String name = "tictactoe_http_request_duration_seconds";
+        header(out, name, "histogram", "Request latency by endpoint");
+        for (Map.Entry<String, Endpoint> e : endpoints.entrySet()) {
+            String endpoint = "endpoint=\"" + e.getKey() + "\"";
+            LatencyHistogram latency = e.getValue().latency;
+            long[] counts = latency.cumulativeCounts();
+            for (int i=0; i<counts.length; i++) {
+                String le = i < LatencyHistogram.BOUNDS.length
+                        ? BigDecimal.valueOf(LatencyHistogram.BOUNDS[i]).stripTrailingZeros().toPlainString() : "+Inf";
+                out.append(name).append("_bucket{").append(endpoint).append(",le=\"").append(le).append("\"} ")
+                        .append(counts[i]).append('\n');
+            }
+            out.append(name).append("_sum{").append(endpoint).append("} ").append(latency.sumSeconds()).append('\n');
+            out.append(name).append("_count{").append(endpoint).append("} ").append(counts[counts.length - 1]).append('\n');
+        }
+
+        header(out, "tictactoe_invalid_requests_total", COUNTER, "Games and moves rejected by validate, by endpoint");
+        for (Map.Entry<String, Endpoint> e : endpoints.entrySet()) {
+            out.append("tictactoe_invalid_requests_total{endpoint=\"").append(e.getKey()).append("\"} ")
+                    .append(e.getValue().invalid.sum()).append('\n');
+        }
+
+        List<Family> families;
+        synchronized (this) {
+            families = new ArrayList<>(this.families);
+        }
+        for (Family family : families) {
+            header(out, family.name, family.type, family.help);
+            if (family.gauge != null) {
+                out.append(family.name).append(' ').append(number(family.gauge.value())).append('\n');
+                continue;
+            }
+            for (Map.Entry<String, ? extends Number> e : new TreeMap<>(family.gauges.values()).entrySet()) {
+                out.append(family.name).append('{').append(family.label).append("=\"").append(e.getKey()).append("\"} ")
+                        .append(number(e.getValue().doubleValue())).append('\n');
+            }
+        }
+        return out.toString();
+    }
+
+    private Endpoint endpoint(String name) {
+        Endpoint e = this.endpoints.get(name);
+        if (e == null) {
+            e = new Endpoint();
+            Endpoint old = this.endpoints.putIfAbsent(name, e);
+            if (old != null) e = old;
+        }
+        return e;
+    }
+
+    private static void header(StringBuilder out, String name, String type, String help) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    /**
+     * Whole numbers without the decimal point
+     */
+    private static String number(double value) {
+        return value == Math.rint(value) && !Double.isInfinite(value) ? String.valueOf((long) value) : String.valueOf(value);
+    }
+
+    /**
+     * Counters of one endpoint
+     */
+    private static final class Endpoint {
+        /**
+         * Http status is less than 600
+         */
+        static final int STATUSES = 600;
+
+        /**
+         * Count of requests by http status, created on the first request of a status
+         */
+        final AtomicReferenceArray<Counter> statuses = new AtomicReferenceArray<>(STATUSES);
+        final LatencyHistogram latency = new LatencyHistogram();
+        final Counter invalid = new Counter();
+
+        Counter status(int status) {
+            int i = status < 0 || status >= STATUSES ? 0 : status;
+            Counter counter = this.statuses.get(i);
+            if (counter == null) {
+                this.statuses.compareAndSet(i, null, new Counter());
+                counter = this.statuses.get(i);
+            }
+            return counter;
+        }
+    }
+
+    /**
+     * One registered metric
+     */
+    private static final class Family {
+        final String name;
+        final String type;
+        final String help;
+        final String label;
+        final Gauge gauge;
+        final Gauges gauges;
+
+        Family(String name, String type, String help, String label, Gauge gauge, Gauges gauges) {
+            this.name = name;
+            this.type = type;
+            this.help = help;
+            this.label = label;
+            this.gauge = gauge;
+            this.gauges = gauges;
+        }
+    }
+}
@@ -0,0 +1,44 @@
+package com.jackychu.app.tictactoe;
+
+import java.lang.reflect.Method;
+import javax.inject.Inject;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.container.PreMatching;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.ext.Provider;
+
+/**
+ * Count every request and its latency in the server metrics.<br>
+ * The endpoint is the name of the resource method, "unmatched" for a path without resource.
+ * The latency is from the request is matched to the response headers, and includes the wait of long polls.
+ */
+@Provider
+@PreMatching
+public class MetricsFilter implements ContainerRequestFilter, ContainerResponseFilter {
+    private static final String START = MetricsFilter.class.getName() + ".start";
+
+    @Context
+    private ResourceInfo resourceInfo;
+
+    @Inject
+    private Metrics metrics;
+
+    @Override
+    public void filter(ContainerRequestContext request) {
+        request.setProperty(START, System.nanoTime());
+    }
+
+    @Override
+    public void filter(ContainerRequestContext request, ContainerResponseContext response) {
+        Object start = request.getProperty(START);
+        if (start == null) return;
+
+        Method method = this.resourceInfo.getResourceMethod();
+        String endpoint = method == null ? "unmatched" : method.getName();
+        this.metrics.request(endpoint, response.getStatus(), System.nanoTime() - (Long) start);
+    }
+}
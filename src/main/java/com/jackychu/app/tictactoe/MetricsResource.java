@@ -0,0 +1,26 @@
+package com.jackychu.app.tictactoe;
+
+import javax.inject.Inject;
+import javax.ws.rs.GET;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+
+/**
+ * Metrics resource (exposed at "/metrics" path) for Prometheus
+ */
+@Path("/metrics")
+public class MetricsResource {
+
+    @Inject
+    private Metrics metrics;
+
+    /**
+     * Get all server metrics
+     * @return metrics in the Prometheus text format
+     */
+    @GET
+    @Produces(Metrics.CONTENT_TYPE)
+    public String getMetrics() {
+        return this.metrics.scrape();
+    }
+}
@@ -0,0 +1,81 @@
+package com.jackychu.app.tictactoe;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * One move on the game board. Used as request payload of the move api.<br>
+ * Will convert from json format automatically when request from client.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class Move {
+    /**
+     * Id of game. Only used by the batch move api
+     */
+    private String id;
+
+    /**
+     * The row of cell
+     */
+    private int row;
+
+    /**
+     * The column of cell
+     */
+    private int col;
+
+    /**
+     * The player who place the mark. 1 for player 1, 2 for player 2
+     */
+    private int player;
+
+    /**
+     * Constructor for json conversion
+     */
+    public Move() {
+    }
+
+    /**
+     * Constructor with cell and player
+     *
+     * @param row The row of cell
+     * @param col The column of cell
+     * @param player 1 for player 1, 2 for player 2
+     */
+    public Move(int row, int col, int player) {
+        this.row = row;
+        this.col = col;
+        this.player = player;
+    }
+
+    public String getId() {
+        return this.id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public int getRow() {
+        return this.row;
+    }
+
+    public void setRow(int row) {
+        this.row = row;
+    }
+
+    public int getCol() {
+        return this.col;
+    }
+
+    public void setCol(int col) {
+        this.col = col;
+    }
+
+    public int getPlayer() {
+        return this.player;
+    }
+
+    public void setPlayer(int player) {
+        this.player = player;
+    }
+}
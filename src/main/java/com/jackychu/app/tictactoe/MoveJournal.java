@@ -0,0 +1,682 @@
+package com.jackychu.app.tictactoe;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only journal of game changes in memory-mapped segment files.<br>
+ * Every change is one or more fixed-size binary records. Records only set state
+ * (create a game, set a cell, set status, delete a game), so replaying a record twice is harmless,
+ * and the status of a game is only taken from a record with a version not older than the replayed one.
+ * A move of a game which is not live (deleted, or evicted from a GameRegistry) is ignored.<br>
+ * Appends are written into the mapped segment. A committer thread forces the segment to disk
+ * for all appends waiting at that moment (group commit), so one fsync covers many moves.<br>
+ * After some segments are filled, a snapshot of all games is written and older segments are deleted,
+ * so replay on startup reads one snapshot and a few segments. Snapshots are {@link GameSnapshot} files.
+ *
+ * <pre>
+ * Record, 80 bytes, big endian
+ *  0 int   CRC32 of bytes 4..79
+ *  4 byte  type: 1 create, 2 move, 3 delete
+ *  5 byte  status ordinal
+ *  6 byte  winner
+ *  7 byte  player of cell, 0 if no cell
+ *  8 short board dimension
+ * 10 short win length
+ * 12 int   row, -1 if no cell
+ * 16 int   column, -1 if no cell
+ * 20 long  lastUpdateTime
+ * 28 long  version
+ * 36 byte  length of id
+ * 37 byte  format version
+ * 40       id, up to 40 bytes ASCII
+ * </pre>
+ */
+public class MoveJournal implements Closeable {
+    private static final Logger LOGGER = Logger.getLogger(MoveJournal.class.getName());
+
+    /**
+     * Size of one record
+     */
+    static final int RECORD_SIZE = 80;
+
+    /**
+     * Format version of records. Format 1 had the game dimension instead of the win length.
+     */
+    static final byte FORMAT = 2;
+
+    /**
+     * Record type to create a game
+     */
+    static final byte CREATE = 1;
+
+    /**
+     * Record type to set a cell and the status of game
+     */
+    static final byte MOVE = 2;
+
+    /**
+     * Record type to delete a game
+     */
+    static final byte DELETE = 3;
+
+    /**
+     * Max length of game id
+     */
+    private static final int MAX_ID_LENGTH = 40;
+
+    /**
+     * Default count of records in one segment. 16 MB per segment.
+     */
+    public static final int DEFAULT_SEGMENT_RECORDS = 209715;
+
+    /**
+     * Default count of filled segments before a snapshot
+     */
+    public static final int DEFAULT_COMPACT_SEGMENTS = 4;
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String SNAPSHOT_SUFFIX = ".snap";
+
+    /**
+     * Directory of segment and snapshot files
+     */
+    private final File dir;
+
+    /**
+     * Count of records in one segment
+     */
+    private final int segmentRecords;
+
+    /**
+     * Count of filled segments before a snapshot
+     */
+    private final int compactSegments;
+
+    /**
+     * Wait for fsync in append
+     */
+    private final boolean sync;
+
+    /**
+     * Sequence of current segment
+     */
+    private long segment;
+
+    /**
+     * Sequence of segment the last snapshot starts from
+     */
+    private long snapshotSegment;
+
+    /**
+     * Current segment file
+     */
+    private FileChannel channel;
+
+    /**
+     * Current mapped segment
+     */
+    private MappedByteBuffer buffer;
+
+    /**
+     * Count of records written into current segment
+     */
+    private int records;
+
+    /**
+     * Count of records appended since open
+     */
+    private long appended;
+
+    /**
+     * Count of records forced to disk since open
+     */
+    private long durable;
+
+    /**
+     * Lock of committer and waiters
+     */
+    private final Object commitLock = new Object();
+
+    /**
+     * Count of fsync calls
+     */
+    private final AtomicLong commits = new AtomicLong();
+
+    /**
+     * Count of snapshots
+     */
+    private final AtomicLong snapshots = new AtomicLong();
+
+    /**
+     * The journal is closed
+     */
+    private volatile boolean closed;
+
+    /**
+     * A snapshot is scheduled or running
+     */
+    private final AtomicBoolean compacting = new AtomicBoolean();
+
+    /**
+     * Only one snapshot at a time
+     */
+    private final Object snapshotLock = new Object();
+
+    /**
+     * Games to write into snapshot
+     */
+    private volatile GameStore source;
+
+    /**
+     * Thread forcing segments to disk
+     */
+    private final Thread committer;
+
+    /**
+     * Thread writing snapshots
+     */
+    private final ExecutorService compactor;
+
+    /**
+     * Open journal in directory. Appends go to a new segment after the existing ones.
+     * @param dir directory of journal files
+     * @param segmentRecords count of records in one segment
+     * @param compactSegments count of filled segments before a snapshot
+     * @param sync wait for fsync in append
+     * @throws IOException fail to open segment
+     */
+    public MoveJournal(File dir, int segmentRecords, int compactSegments, boolean sync) throws IOException {
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create journal directory " + dir);
+        }
+        this.dir = dir;
+        this.segmentRecords = segmentRecords;
+        this.compactSegments = compactSegments;
+        this.sync = sync;
+
+        long[] segments = this.list(SEGMENT_SUFFIX);
+        long[] snapshots = this.list(SNAPSHOT_SUFFIX);
+        this.segment = segments.length == 0 ? 0 : segments[segments.length - 1];
+        this.snapshotSegment = snapshots.length == 0 ? 0 : snapshots[snapshots.length - 1];
+        this.segment = Math.max(this.segment, this.snapshotSegment);
+        this.openSegment(this.segment + 1);
+
+        this.committer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                commitLoop();
+            }
+        }, "move-journal-committer");
+        this.committer.setDaemon(true);
+        this.committer.start();
+
+        this.compactor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "move-journal-compactor");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+    }
+
+    /**
+     * Set the store to write into snapshots.
+     * Start a snapshot if too many segments are left from the last run.
+     * @param source game store
+     */
+    public void setSource(GameStore source) {
+        this.source = source;
+        int segments = 0;
+        for (long seq : this.list(SEGMENT_SUFFIX)) {
+            if (seq >= this.snapshotSegment) segments++;
+        }
+        if (segments > this.compactSegments) {
+            this.compactLater();
+        }
+    }
+
+    /**
+     * Rebuild games from the last snapshot and the segments after it.<br>
+     * Replay of a segment stops at its first broken record, which is a write torn by a crash.
+     * The later segments were written by the runs after the crash, so they are still replayed.
+     * @return games, the key is id of game
+     * @throws IOException fail to read files
+     */
+    public Map<String, Game> replay() throws IOException {
+        Map<String, Game> games = new HashMap<>();
+        if (this.snapshotSegment > 0) {
+            for (Game g : GameSnapshot.read(this.file(this.snapshotSegment, SNAPSHOT_SUFFIX))) {
+                games.put(g.getId(), g);
+            }
+        }
+        for (long seq : this.list(SEGMENT_SUFFIX)) {
+            if (seq < this.snapshotSegment || seq == this.segment) continue;
+            this.replayFile(this.file(seq, SEGMENT_SUFFIX), games);
+        }
+        return games;
+    }
+
+    /**
+     * Append records of a new game, with all its placed cells
+     * @param game Game object
+     */
+    public void appendCreate(Game game) {
+        this.append(stateRecords(game));
+    }
+
+    /**
+     * Append records of the cells changed between two versions of a game
+     * @param before the game before change
+     * @param after the game after change
+     */
+    public void appendChange(Game before, Game after) {
+        Board from = before.board(), to = after.board();
+        int d = to.dimension();
+        List<ByteBuffer> records = new ArrayList<>();
+        if (from.dimension() == d) {
+            int changes = from.differences(to);
+            Board walk = from.copy();
+            for (int i=0; i<changes; i++) {
+                int index = walk.firstDifference(to);
+                int row = index / d, col = index % d;
+                int player = to.get(row, col);
+                walk.set(row, col, player);
+                records.add(record(MOVE, after, row, col, player));
+            }
+        } else {
+            records.addAll(Arrays.asList(stateRecords(after)));
+        }
+        if (records.isEmpty()) {
+            records.add(record(MOVE, after, -1, -1, 0));
+        }
+        this.append(records.toArray(new ByteBuffer[records.size()]));
+    }
+
+    /**
+     * Append record of a deleted game
+     * @param game the deleted game
+     */
+    public void appendDelete(Game game) {
+        this.append(record(DELETE, game, -1, -1, 0));
+    }
+
+    /**
+     * Write a snapshot of all games of source now, then delete older segments
+     * @throws IOException fail to write snapshot
+     */
+    public void snapshot() throws IOException {
+        synchronized (this.snapshotLock) {
+            this.writeSnapshot();
+        }
+    }
+
+    /**
+     * Write snapshot. Caller holds the snapshot lock.
+     */
+    private void writeSnapshot() throws IOException {
+        GameStore source = this.source;
+        if (source == null) return;
+
+        long start;
+        synchronized (this) {
+            // Appends from now go to segments after the snapshot start
+            this.rollSegment();
+            start = this.segment;
+        }
+
+        GameSnapshot.write(this.file(start, SNAPSHOT_SUFFIX), source.games());
+
+        synchronized (this) {
+            this.snapshotSegment = start;
+        }
+        for (long seq : this.list(SNAPSHOT_SUFFIX)) {
+            if (seq < start) this.file(seq, SNAPSHOT_SUFFIX).delete();
+        }
+        for (long seq : this.list(SEGMENT_SUFFIX)) {
+            if (seq < start) this.file(seq, SEGMENT_SUFFIX).delete();
+        }
+        this.snapshots.incrementAndGet();
+    }
+
+    /**
+     * Get count of fsync calls
+     * @return count of commits
+     */
+    public long getCommits() {
+        return this.commits.get();
+    }
+
+    /**
+     * Get count of records appended since open
+     * @return count of records
+     */
+    public synchronized long getAppended() {
+        return this.appended;
+    }
+
+    /**
+     * Get count of snapshots written since open
+     * @return count of snapshots
+     */
+    public long getSnapshots() {
+        return this.snapshots.get();
+    }
+
+    /**
+     * Force appended records to disk and close the journal
+     * @throws IOException fail to close segment
+     */
+    @Override
+    public void close() throws IOException {
+        this.compactor.shutdown();
+        try {
+            this.compactor.awaitTermination(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            this.closed = true;
+            this.buffer.force();
+            this.channel.close();
+        }
+        synchronized (this.commitLock) {
+            this.durable = this.appended;
+            this.commitLock.notifyAll();
+        }
+        this.committer.interrupt();
+    }
+
+    /**
+     * Append records. Wait for fsync in sync mode.
+     */
+    private void append(ByteBuffer... records) {
+        long seq;
+        boolean compact = false;
+        synchronized (this) {
+            if (this.closed) throw new IllegalStateException("Journal is closed");
+            try {
+                for (ByteBuffer record : records) {
+                    if (this.records == this.segmentRecords) {
+                        this.rollSegment();
+                        compact = this.segment - this.snapshotSegment > this.compactSegments;
+                    }
+                    this.buffer.position(this.records * RECORD_SIZE);
+                    this.buffer.put(record);
+                    this.records++;
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException("Fail to append journal", e);
+            }
+            seq = this.appended += records.length;
+        }
+
+        if (compact) this.compactLater();
+        if (this.sync) this.awaitDurable(seq);
+    }
+
+    /**
+     * Wait until the committer forced the record to disk
+     */
+    private void awaitDurable(long seq) {
+        synchronized (this.commitLock) {
+            this.commitLock.notifyAll();
+            while (this.durable < seq && !this.closed) {
+                try {
+                    this.commitLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Committer loop. One force covers every record appended before it.
+     */
+    private void commitLoop() {
+        while (!this.closed) {
+            try {
+                synchronized (this.commitLock) {
+                    while (this.durable >= this.currentAppended() && !this.closed) {
+                        this.commitLock.wait(100);
+                    }
+                }
+                long target;
+                MappedByteBuffer buffer;
+                synchronized (this) {
+                    if (this.closed) return;
+                    target = this.appended;
+                    buffer = this.buffer;
+                }
+                buffer.force();
+                this.commits.incrementAndGet();
+                synchronized (this.commitLock) {
+                    if (target > this.durable) this.durable = target;
+                    this.commitLock.notifyAll();
+                }
+            } catch (InterruptedException e) {
+                return;
+            }
+        }
+    }
+
+    private synchronized long currentAppended() {
+        return this.appended;
+    }
+
+    /**
+     * Write snapshot in background
+     */
+    private void compactLater() {
+        if (this.source == null || !this.compacting.compareAndSet(false, true)) return;
+        try {
+            this.compactor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        snapshot();
+                    } catch (IOException e) {
+                        LOGGER.log(Level.WARNING, "Fail to write journal snapshot", e);
+                    } finally {
+                        compacting.set(false);
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            this.compacting.set(false);
+        }
+    }
+
+    /**
+     * Force current segment and start the next one. Caller holds the journal lock.
+     */
+    private void rollSegment() throws IOException {
+        this.buffer.force();
+        this.channel.close();
+        this.openSegment(this.segment + 1);
+    }
+
+    /**
+     * Create and map a new segment file. Caller holds the journal lock.
+     */
+    private void openSegment(long seq) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(this.file(seq, SEGMENT_SUFFIX), "rw");
+        this.channel = raf.getChannel();
+        this.buffer = this.channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) this.segmentRecords * RECORD_SIZE);
+        this.segment = seq;
+        this.records = 0;
+    }
+
+    /**
+     * Replay one file into games
+     * @return false if a broken record is found
+     */
+    private boolean replayFile(File file, Map<String, Game> games) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            FileChannel in = raf.getChannel();
+            long size = in.size() - in.size() % RECORD_SIZE;
+            if (size == 0) return true;
+
+            MappedByteBuffer map = in.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            byte[] bytes = new byte[RECORD_SIZE];
+            CRC32 crc = new CRC32();
+            while (map.remaining() >= RECORD_SIZE) {
+                map.get(bytes);
+                ByteBuffer record = ByteBuffer.wrap(bytes);
+                if (record.get(4) == 0) return true; // unused space of segment
+
+                crc.reset();
+                crc.update(bytes, 4, RECORD_SIZE - 4);
+                if ((int) crc.getValue() != record.getInt(0)) {
+                    LOGGER.warning("Broken journal record in " + file + ", replay of the segment stops here");
+                    return false;
+                }
+                if (record.get(37) != FORMAT) {
+                    throw new IOException("Unknown journal format " + record.get(37) + ": " + file);
+                }
+                apply(record, games);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Apply one record to games
+     */
+    private static void apply(ByteBuffer record, Map<String, Game> games) {
+        byte type = record.get(4);
+        Game.Status status = Game.Status.values()[record.get(5)];
+        int winner = record.get(6);
+        int player = record.get(7);
+        int boardDimension = record.getShort(8);
+        int winLength = record.getShort(10);
+        int row = record.getInt(12);
+        int col = record.getInt(16);
+        long lastUpdateTime = record.getLong(20);
+        long version = record.getLong(28);
+        byte[] id = new byte[record.get(36)];
+        record.position(40);
+        record.get(id);
+        String gameId = new String(id, StandardCharsets.US_ASCII);
+
+        Game g = games.get(gameId);
+        if (type == DELETE) {
+            games.remove(gameId);
+            return;
+        }
+        // A move appended after the delete of its game, by an update which raced the delete
+        if (g == null && type != CREATE) return;
+        if (g == null) {
+            g = Game.restore(gameId, Board.create(boardDimension, winLength), status, winner, lastUpdateTime, version);
+            games.put(gameId, g);
+        }
+        if (row >= 0 && player != 0) {
+            g.board().set(row, col, player);
+        }
+        if (version >= g.getVersion()) {
+            games.put(gameId, Game.restore(gameId, g.board(), status, winner, lastUpdateTime, version));
+        }
+    }
+
+    /**
+     * Records to rebuild a game: create, then one move per placed cell
+     */
+    private static ByteBuffer[] stateRecords(Game game) {
+        Board board = game.board();
+        int d = board.dimension();
+        List<ByteBuffer> records = new ArrayList<>();
+        records.add(record(CREATE, game, -1, -1, 0));
+        for (int i=0; i<d; i++) {
+            for (int j=0; j<d; j++) {
+                int p = board.get(i, j);
+                if (p != 0) records.add(record(MOVE, game, i, j, p));
+            }
+        }
+        return records.toArray(new ByteBuffer[records.size()]);
+    }
+
+    /**
+     * Build one record
+     */
+    private static ByteBuffer record(byte type, Game game, int row, int col, int player) {
+        byte[] id = game.getId().getBytes(StandardCharsets.US_ASCII);
+        if (id.length > MAX_ID_LENGTH) {
+            throw new IllegalArgumentException("Game id too long for journal: " + game.getId());
+        }
+
+        ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE);
+        record.put(4, type);
+        record.put(5, (byte) game.getStatus().ordinal());
+        record.put(6, (byte) game.getWinner());
+        record.put(7, (byte) player);
+        record.putShort(8, (short) game.board().dimension());
+        record.putShort(10, (short) game.getWinLength());
+        record.putInt(12, row);
+        record.putInt(16, col);
+        record.putLong(20, game.getLastUpdateTime());
+        record.putLong(28, game.getVersion());
+        record.put(36, (byte) id.length);
+        record.put(37, FORMAT);
+        record.position(40);
+        record.put(id);
+
+        CRC32 crc = new CRC32();
+        crc.update(record.array(), 4, RECORD_SIZE - 4);
+        record.putInt(0, (int) crc.getValue());
+        record.rewind();
+        return record;
+    }
+
+    /**
+     * Sorted sequences of files with suffix
+     */
+    private long[] list(final String suffix) {
+        String[] names = this.dir.list();
+        List<Long> seqs = new ArrayList<>();
+        if (names != null) {
+            for (String name : names) {
+                if (!name.endsWith(suffix)) continue;
+                try {
+                    seqs.add(Long.parseLong(name.substring(0, name.length() - suffix.length())));
+                } catch (NumberFormatException e) {
+                    // not a journal file
+                }
+            }
+        }
+        long[] result = new long[seqs.size()];
+        for (int i=0; i<result.length; i++) result[i] = seqs.get(i);
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * File of sequence
+     */
+    private File file(long seq, String suffix) {
+        return new File(this.dir, String.format("%016d%s", seq, suffix));
+    }
+}
@@ -0,0 +1,179 @@
+package com.jackychu.app.tictactoe;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * The class for http response of the move api.<br>
+ * Only carries the move and the game status after it, not the whole board.<br>
+ * A rejected move of the batch move api has accepted false and the error message instead of the game status.<br>
+ * Will convert to json format automatically when response to client.
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class MoveResult {
+    /**
+     * Id of game
+     */
+    private String id;
+
+    /**
+     * The row of cell
+     */
+    private int row;
+
+    /**
+     * The column of cell
+     */
+    private int col;
+
+    /**
+     * The player who placed the mark
+     */
+    private int player;
+
+    /**
+     * The status of game after the move
+     */
+    private Game.Status status;
+
+    /**
+     * The winner after the move. 0 for no winner
+     */
+    private int winner;
+
+    /**
+     * The lastUpdateTime of game after the move
+     */
+    private long lastUpdateTime;
+
+    /**
+     * The move was placed on the game
+     */
+    private boolean accepted;
+
+    /**
+     * The error message of rejected move
+     */
+    private String message;
+
+    /**
+     * Constructor for json conversion
+     */
+    public MoveResult() {
+    }
+
+    /**
+     * Constructor with the game after the move is applied
+     *
+     * @param game game which the move applied to
+     * @param move the accepted move
+     */
+    public MoveResult(Game game, Move move) {
+        this.id = game.getId();
+        this.row = move.getRow();
+        this.col = move.getCol();
+        this.player = move.getPlayer();
+        this.status = game.getStatus();
+        this.winner = game.getWinner();
+        this.lastUpdateTime = game.getLastUpdateTime();
+        this.accepted = true;
+    }
+
+    /**
+     * Constructor with the rejected move
+     *
+     * @param move the rejected move
+     * @param message error message
+     */
+    public MoveResult(Move move, String message) {
+        this.id = move.getId();
+        this.row = move.getRow();
+        this.col = move.getCol();
+        this.player = move.getPlayer();
+        this.reject(message);
+    }
+
+    /**
+     * Mark the move as rejected. Clear the game status of the result.
+     *
+     * @param message error message
+     */
+    public void reject(String message) {
+        this.status = null;
+        this.winner = 0;
+        this.lastUpdateTime = 0;
+        this.accepted = false;
+        this.message = message;
+    }
+
+    public String getId() {
+        return this.id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public int getRow() {
+        return this.row;
+    }
+
+    public void setRow(int row) {
+        this.row = row;
+    }
+
+    public int getCol() {
+        return this.col;
+    }
+
+    public void setCol(int col) {
+        this.col = col;
+    }
+
+    public int getPlayer() {
+        return this.player;
+    }
+
+    public void setPlayer(int player) {
+        this.player = player;
+    }
+
+    public Game.Status getStatus() {
+        return this.status;
+    }
+
+    public void setStatus(Game.Status status) {
+        this.status = status;
+    }
+
+    public int getWinner() {
+        return this.winner;
+    }
+
+    public void setWinner(int winner) {
+        this.winner = winner;
+    }
+
+    public long getLastUpdateTime() {
+        return this.lastUpdateTime;
+    }
+
+    public void setLastUpdateTime(long lastUpdateTime) {
+        this.lastUpdateTime = lastUpdateTime;
+    }
+
+    public boolean isAccepted() {
+        return this.accepted;
+    }
+
+    public void setAccepted(boolean accepted) {
+        this.accepted = accepted;
+    }
+
+    public String getMessage() {
+        return this.message;
+    }
+
+    public void setMessage(String message) {
+        this.message = message;
+    }
+}
@@ -0,0 +1,105 @@
+package com.jackychu.app.tictactoe;
+
+import java.io.Closeable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Solver of large boards which searches the game tree with all cores.<br>
+ * The search is the same alpha-beta search as AlphaBetaEngine, run in a ForkJoinPool: the moves of
+ * positions far from the depth limit are searched as parallel tasks after the first move (young brothers wait),
+ * and idle threads steal tasks from busy ones. All tasks share one TranspositionTable.<br>
+ * The search deepens until the game tree is searched to the end or the deadline is reached,
+ * then the best move of the last finished depth is returned.<br>
+ * One solver can be used by many threads. Close the solver to stop its threads.
+ */
+public class ParallelSolver implements Closeable {
+    /**
+     * Default min depth of a position to search its moves in parallel.
+     * Positions nearer the depth limit are too small to be worth a task.
+     */
+    public static final int DEFAULT_SPLIT_DEPTH = 4;
+
+    private final ForkJoinPool pool;
+
+    private final TranspositionTable table;
+
+    private final int splitDepth;
+
+    /**
+     * Create solver with one thread per core and a table of default size
+     */
+    public ParallelSolver() {
+        this(Runtime.getRuntime().availableProcessors(), new TranspositionTable(), DEFAULT_SPLIT_DEPTH);
+    }
+
+    /**
+     * Create solver
+     * @param threads count of threads
+     * @param table table of searched positions shared by all threads
+     * @param splitDepth min depth of a position to search its moves in parallel, at least 1
+     */
+    public ParallelSolver(int threads, TranspositionTable table, int splitDepth) {
+        if (threads <= 0) throw new IllegalArgumentException("Threads should be positive: " + threads);
+        if (table == null) throw new IllegalArgumentException("Table should not be null");
+        if (splitDepth <= 0) throw new IllegalArgumentException("Split depth should be positive: " + splitDepth);
+
+        this.pool = new ForkJoinPool(threads);
+        this.table = table;
+        this.splitDepth = splitDepth;
+    }
+
+    /**
+     * Solve the game, or find the best move before the deadline
+     * @param game a game which is not end
+     * @param maxMillis max search time
+     * @return best move and search stats, complete if the game is solved
+     */
+    public SearchResult solve(Game game, long maxMillis) {
+        if (game.getStatus() == Game.Status.END || game.board().full()) {
+            throw new IllegalArgumentException("Game is end: " + game.getId());
+        }
+        if (maxMillis <= 0) throw new IllegalArgumentException("Max millis should be positive: " + maxMillis);
+
+        final AlphaBetaEngine.Search search = new AlphaBetaEngine.Search(game.board().copy(), Long.MAX_VALUE,
+                maxMillis, this.table, this.splitDepth);
+        return this.pool.invoke(new RecursiveTask<SearchResult>() {
+            @Override
+            protected SearchResult compute() {
+                return search.run();
+            }
+        });
+    }
+
+    /**
+     * Get count of threads
+     * @return count of threads
+     */
+    public int getThreads() {
+        return this.pool.getParallelism();
+    }
+
+    /**
+     * Get count of tasks stolen by idle threads
+     * @return count of steals
+     */
+    public long getSteals() {
+        return this.pool.getStealCount();
+    }
+
+    /**
+     * Get the shared table
+     * @return table of searched positions
+     */
+    public TranspositionTable getTable() {
+        return this.table;
+    }
+
+    /**
+     * Stop the threads. Running searches are cancelled.
+     */
+    @Override
+    public void close() {
+        this.pool.shutdownNow();
+    }
+}
@@ -0,0 +1,183 @@
+package com.jackychu.app.tictactoe;
+
+/**
+ * Perfect play of every reachable 3x3 position (3 in a row to win), solved once when the class is first used.<br>
+ * The table is one short per grid, indexed by the base-3 number of the grid: the cell at (row, col)
+ * is the digit row * 3 + col. Only 5,478 of the 19,683 grids can be reached by legal play,
+ * the others are UNKNOWN. So a hint, an ai move or a decided check of a 3x3 game is one array lookup.
+ *
+ * <pre>
+ * Entry, 16 bits
+ *  0-3   best cell (row * 3 + col), 15 for none
+ *  4-5   outcome for the player to move: 0 unknown, 1 win, 2 draw, 3 loss
+ *  6-9   count of moves to the end of game with perfect play
+ * </pre>
+ */
+final class PerfectPlay {
+    /**
+     * Board dimension of the table
+     */
+    static final int DIMENSION = 3;
+
+    /**
+     * Count of grids, 3 ^ 9
+     */
+    static final int POSITIONS = 19683;
+
+    static final int UNKNOWN = 0;
+    static final int WIN = 1;
+    static final int DRAW = 2;
+    static final int LOSS = 3;
+
+    private static final int NONE = 15;
+
+    /**
+     * Value of a mark of player 1 on each cell, player 2 is twice of it
+     */
+    private static final int[] POWERS = {1, 3, 9, 27, 81, 243, 729, 2187, 6561};
+
+    private static final short[] TABLE = build();
+
+    private PerfectPlay() {
+    }
+
+    /**
+     * Get the table index of a 3x3 board
+     * @param board board of dimension 3
+     * @return base-3 number of the grid
+     */
+    static int index(Board board) {
+        int index = 0;
+        for (int i=0; i<POWERS.length; i++) {
+            index += board.get(i / DIMENSION, i % DIMENSION) * POWERS[i];
+        }
+        return index;
+    }
+
+    /**
+     * Check the board is in the table
+     * @param board game board
+     * @return true if the board is 3x3 with 3 in a row to win, and can be reached by legal play
+     */
+    static boolean covers(Board board) {
+        return board.dimension() == DIMENSION && board.winLength() == DIMENSION && outcome(index(board)) != UNKNOWN;
+    }
+
+    /**
+     * @return WIN, DRAW or LOSS for the player to move, UNKNOWN if not reachable
+     */
+    static int outcome(int index) {
+        return (TABLE[index] >> 4) & 3;
+    }
+
+    /**
+     * @return best cell (row * 3 + col), -1 if the game is end or the grid is not reachable
+     */
+    static int best(int index) {
+        int cell = TABLE[index] & 15;
+        return cell == NONE || outcome(index) == UNKNOWN ? -1 : cell;
+    }
+
+    /**
+     * @return count of moves to the end of game with perfect play
+     */
+    static int plies(int index) {
+        return (TABLE[index] >> 6) & 15;
+    }
+
+    /**
+     * Get the winner with perfect play from the board
+     * @param board a board covered by the table
+     * @return 0 for draw, 1 for player 1, 2 for player 2
+     */
+    static int winner(Board board) {
+        int outcome = outcome(index(board));
+        int player = AlphaBetaEngine.toMove(board);
+        if (outcome == WIN) return player;
+        if (outcome == LOSS) return 3 - player;
+        return 0;
+    }
+
+    /**
+     * Get the perfect move as a search result, scored like AlphaBetaEngine
+     * @param board game board
+     * @return the best move, null if the board is not covered or the game is end
+     */
+    static SearchResult result(Board board) {
+        if (board.dimension() != DIMENSION || board.winLength() != DIMENSION) return null;
+        int index = index(board);
+        int cell = best(index);
+        if (cell < 0) return null;
+
+        int plies = plies(index);
+        int outcome = outcome(index);
+        int score = outcome == WIN ? AlphaBetaEngine.WIN - plies
+                : outcome == LOSS ? -(AlphaBetaEngine.WIN - plies) : 0;
+        Move move = new Move(cell / DIMENSION, cell % DIMENSION, AlphaBetaEngine.toMove(board));
+        return new SearchResult(move, score, plies, 0, 0, true);
+    }
+
+    /**
+     * Solve every position reachable from the empty board
+     */
+    private static short[] build() {
+        short[] table = new short[POSITIONS];
+        solve(Board.create(DIMENSION), 0, 1, table);
+        return table;
+    }
+
+    /**
+     * Solve a position which is not end, and all positions after it
+     * @return the entry of the position
+     */
+    private static short solve(Board board, int index, int player, short[] table) {
+        if (table[index] != 0) return table[index];
+
+        int bestOutcome = UNKNOWN, bestPlies = 0, bestCell = NONE;
+        for (int cell : AlphaBetaEngine.order(DIMENSION, DIMENSION)) {
+            int row = cell / DIMENSION, col = cell % DIMENSION;
+            if (board.get(row, col) != 0) continue;
+
+            board.set(row, col, player);
+            int next = index + player * POWERS[cell];
+            int outcome, plies;
+            if (board.winnerThrough(row, col) == player) {
+                table[next] = entry(NONE, LOSS, 0);
+                outcome = WIN;
+                plies = 1;
+            } else if (board.full()) {
+                table[next] = entry(NONE, DRAW, 0);
+                outcome = DRAW;
+                plies = 1;
+            } else {
+                short e = solve(board, next, 3 - player, table);
+                outcome = 4 - ((e >> 4) & 3);
+                plies = ((e >> 6) & 15) + 1;
+            }
+            board.set(row, col, 0);
+
+            if (bestCell == NONE || better(outcome, plies, bestOutcome, bestPlies)) {
+                bestOutcome = outcome;
+                bestPlies = plies;
+                bestCell = cell;
+            }
+        }
+        table[index] = entry(bestCell, bestOutcome, bestPlies);
+        return table[index];
+    }
+
+    /**
+     * A win is better than a draw, a draw is better than a loss.
+     * The fastest win and the slowest loss are better.
+     */
+    private static boolean better(int outcome, int plies, int bestOutcome, int bestPlies) {
+        if (outcome != bestOutcome) return outcome < bestOutcome;
+        if (outcome == WIN) return plies < bestPlies;
+        if (outcome == LOSS) return plies > bestPlies;
+        return false;
+    }
+
+    private static short entry(int cell, int outcome, int plies) {
+        return (short) (cell | outcome << 4 | plies << 6);
+    }
+}
@@ -0,0 +1,506 @@
+package com.jackychu.app.tictactoe;
+
+import java.io.IOException;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import com.j256.ormlite.dao.Dao;
+import com.j256.ormlite.dao.DaoManager;
+import com.j256.ormlite.jdbc.JdbcPooledConnectionSource;
+import com.j256.ormlite.logger.LocalLog;
+import com.j256.ormlite.stmt.QueryBuilder;
+import com.j256.ormlite.table.TableUtils;
+
+/**
+ * Game store saved in a database with ORMLite.<br>
+ * Hot games are kept in a GameRegistry in front of the database, so reads of them never touch the database.
+ * A game evicted from the registry is loaded again on the next read.<br>
+ * Writes are write-behind: changed games are collected and written by a background thread
+ * in one batch transaction. A burst of moves on one game becomes one row update.<br>
+ * The cache and the pending change of one id are updated together under a lock of the id,
+ * so a removed game is never written back or cached again by a concurrent update or load.
+ */
+public class PersistentGameStore implements GameStore {
+    private static final Logger LOGGER = Logger.getLogger(PersistentGameStore.class.getName());
+
+    static {
+        // ORMLite logs every statement at DEBUG to stdout by default. Set before its classes make their loggers.
+        if (System.getProperty(LocalLog.LOCAL_LOG_LEVEL_PROPERTY) == null) {
+            System.setProperty(LocalLog.LOCAL_LOG_LEVEL_PROPERTY, "INFO");
+        }
+    }
+
+    /**
+     * Default time between two flushes
+     */
+    public static final long DEFAULT_FLUSH_MILLIS = 200;
+
+    /**
+     * Default count of changed games which starts a flush before the flush time
+     */
+    public static final int DEFAULT_BATCH_SIZE = 500;
+
+    /**
+     * Count of rows read at a time by games()
+     */
+    static final int PAGE_SIZE = 1000;
+
+    /**
+     * Hot games in memory
+     */
+    private final GameRegistry cache;
+
+    /**
+     * Database connections
+     */
+    private final JdbcPooledConnectionSource connectionSource;
+
+    /**
+     * Dao of game table
+     */
+    private final Dao<GameRecord, String> dao;
+
+    /**
+     * Count of locks of ids, a power of two
+     */
+    private static final int LOCKS = 256;
+
+    /**
+     * Changes not written yet, the latest one of each game. The key is id of game.
+     */
+    private final ConcurrentHashMap<String, Change> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Locks of ids. The cache and the pending change of an id are only changed under its lock.
+     */
+    private final Object[] locks = new Object[LOCKS];
+
+    /**
+     * Count of rows in database, as of the last flush
+     */
+    private final AtomicLong rows = new AtomicLong();
+
+    /**
+     * Background writer
+     */
+    private final ScheduledExecutorService writer;
+
+    /**
+     * A flush is requested because batch size is reached
+     */
+    private final AtomicBoolean flushRequested = new AtomicBoolean();
+
+    /**
+     * Only one flush at a time
+     */
+    private final Object flushLock = new Object();
+
+    /**
+     * Count of changed games which starts a flush
+     */
+    private final int batchSize;
+
+    /**
+     * Count of games written to database
+     */
+    private final AtomicLong writes = new AtomicLong();
+
+    /**
+     * Count of batch transactions
+     */
+    private final AtomicLong batches = new AtomicLong();
+
+    /**
+     * Count of games loaded from database
+     */
+    private final AtomicLong loads = new AtomicLong();
+
+    /**
+     * Open the database and create the game table if not exists
+     * @param jdbcUrl jdbc url, e.g. jdbc:h2:./data/tictactoe
+     * @param cache registry of hot games
+     * @param flushMillis time between two flushes
+     * @param batchSize count of changed games which starts a flush before the flush time
+     * @throws SQLException fail to open database
+     */
+    public PersistentGameStore(String jdbcUrl, GameRegistry cache, long flushMillis, int batchSize) throws SQLException {
+        this.cache = cache;
+        this.batchSize = batchSize;
+        this.connectionSource = new JdbcPooledConnectionSource(jdbcUrl);
+        this.dao = DaoManager.createDao(this.connectionSource, GameRecord.class);
+        TableUtils.createTableIfNotExists(this.connectionSource, GameRecord.class);
+        this.rows.set(this.dao.countOf());
+        for (int i=0; i<LOCKS; i++) {
+            this.locks[i] = new Object();
+        }
+
+        this.writer = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "game-store-writer");
+                t.setDaemon(true);
+                return t;
+            }
+        });
+        this.writer.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                flushQuietly();
+            }
+        }, flushMillis, flushMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Get game from cache, or the change not written yet, or database.
+     * The database is read under the lock of id, so a concurrent remove waits for the load.
+     * @param id Game id
+     * @return Game object, null if not found
+     */
+    @Override
+    public Game get(String id) {
+        Game g = this.cache.get(id);
+        if (g != null) return g;
+
+        synchronized (this.lock(id)) {
+            g = this.cache.get(id);
+            if (g != null) return g;
+
+            // Not written yet, or load from database
+            Change change = this.pending.get(id);
+            if (change != null) {
+                if (change.game == null) return null;
+                g = change.game;
+            } else {
+                try {
+                    GameRecord record = this.dao.queryForId(id);
+                    if (record == null) return null;
+                    g = record.toGame();
+                    this.loads.incrementAndGet();
+                } catch (SQLException e) {
+                    throw new IllegalStateException("Fail to load game " + id, e);
+                }
+            }
+
+            Game existing = this.cache.putIfAbsent(g);
+            return existing != null ? existing : g;
+        }
+    }
+
+    /**
+     * Get all games. Changed games are written first, then all games are read from database.
+     * @return snapshot of games. The key is id of game.
+     */
+    @Override
+    public Map<String, Game> getAll() {
+        try {
+            this.flush();
+            Map<String, Game> all = new HashMap<>();
+            for (GameRecord record : this.dao.queryForAll()) {
+                all.put(record.getId(), record.toGame());
+            }
+            all.putAll(this.cache.getAll());
+            return all;
+        } catch (SQLException e) {
+            throw new IllegalStateException("Fail to load games", e);
+        }
+    }
+
+    /**
+     * Get all games a page of rows at a time, so the table is never in memory at once.
+     * Changed games are written first. A game changed while iterating may come at an older version.
+     * @return games in id order, then the games not in database yet
+     */
+    @Override
+    public Iterable<Game> games() {
+        try {
+            this.flush();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Fail to write games", e);
+        }
+        return new Iterable<Game>() {
+            @Override
+            public Iterator<Game> iterator() {
+                return new GameIterator(new HashMap<>(pending));
+            }
+        };
+    }
+
+    @Override
+    public void put(Game game) {
+        synchronized (this.lock(game.getId())) {
+            this.cache.put(game);
+            this.pending.put(game.getId(), new Change(game));
+        }
+        this.changed();
+    }
+
+    @Override
+    public boolean replace(Game expected, Game updated) {
+        synchronized (this.lock(updated.getId())) {
+            if (!this.cache.replace(expected, updated)) return false;
+            this.pending.put(updated.getId(), new Change(updated));
+        }
+        this.changed();
+        return true;
+    }
+
+    @Override
+    public Game remove(String id) {
+        synchronized (this.lock(id)) {
+            Game g = this.get(id);
+            if (g == null) return null;
+            this.cache.remove(id);
+            this.pending.put(id, new Change(null));
+            return g;
+        }
+    }
+
+    /**
+     * Get count of games in database as of the last flush. Changes not written yet
+     * are counted by the next flush, within the flush time. The database is not read.
+     * @return count of games
+     */
+    @Override
+    public int size() {
+        return (int) this.rows.get();
+    }
+
+    /**
+     * Write changed games and delete removed games in one batch transaction
+     * @throws SQLException fail to write database
+     */
+    public void flush() throws SQLException {
+        synchronized (this.flushLock) {
+            this.flushRequested.set(false);
+            if (this.pending.isEmpty()) return;
+
+            final Map<String, Change> changes = new HashMap<>(this.pending);
+            final long[] added = new long[1];
+            try {
+                this.dao.callBatchTasks(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        for (Map.Entry<String, Change> e : changes.entrySet()) {
+                            Game g = e.getValue().game;
+                            if (g == null) {
+                                added[0] -= dao.deleteById(e.getKey());
+                            } else {
+                                GameRecord record = new GameRecord(g);
+                                if (dao.update(record) == 0) {
+                                    dao.create(record);
+                                    added[0]++;
+                                }
+                            }
+                        }
+                        return null;
+                    }
+                });
+            } catch (SQLException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new SQLException("Fail to write games", e);
+            }
+
+            // Keep the newer changes made while writing
+            for (Map.Entry<String, Change> e : changes.entrySet()) {
+                this.pending.remove(e.getKey(), e.getValue());
+            }
+            this.rows.addAndGet(added[0]);
+            this.writes.addAndGet(changes.size());
+            this.batches.incrementAndGet();
+        }
+    }
+
+    /**
+     * Get count of games written or deleted in database
+     * @return count of writes
+     */
+    public long getWrites() {
+        return this.writes.get();
+    }
+
+    /**
+     * Get count of batch transactions
+     * @return count of batches
+     */
+    public long getBatches() {
+        return this.batches.get();
+    }
+
+    /**
+     * Get count of games loaded from database on cache miss
+     * @return count of loads
+     */
+    public long getLoads() {
+        return this.loads.get();
+    }
+
+    /**
+     * Get count of changed games not written yet
+     * @return count of pending writes
+     */
+    public int getPendingWrites() {
+        return this.pending.size();
+    }
+
+    /**
+     * Write all changed games and close the database
+     * @throws IOException fail to write or close database
+     */
+    @Override
+    public void close() throws IOException {
+        this.writer.shutdown();
+        try {
+            this.writer.awaitTermination(10, TimeUnit.SECONDS);
+            this.flush();
+        } catch (SQLException e) {
+            throw new IOException("Fail to write games", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            this.connectionSource.close();
+            this.cache.close();
+        }
+    }
+
+    /**
+     * Start a flush if enough games are changed
+     */
+    private void changed() {
+        if (this.pending.size() >= this.batchSize) {
+            this.requestFlush();
+        }
+    }
+
+    private Object lock(String id) {
+        int h = id.hashCode();
+        return this.locks[(h ^ (h >>> 16)) & (LOCKS - 1)];
+    }
+
+    /**
+     * Start a flush now instead of waiting for the flush time
+     */
+    private void requestFlush() {
+        if (this.flushRequested.compareAndSet(false, true)) {
+            try {
+                this.writer.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        flushQuietly();
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                // closing, the last flush is done by close
+            }
+        }
+    }
+
+    /**
+     * Flush in background thread. Failed writes stay changed and are written by the next flush.
+     */
+    private void flushQuietly() {
+        try {
+            this.flush();
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Fail to write games", e);
+        }
+    }
+
+    /**
+     * Iterator of games in pages of rows.<br>
+     * The changes not written when it starts are kept. A row with a kept change is replaced by it,
+     * and the kept games without a row come last. A game written by a flush while iterating is still
+     * found once: as a row if its page is read later, otherwise as a kept change.
+     */
+    private final class GameIterator implements Iterator<Game> {
+        private final Map<String, Change> changes;
+        private List<GameRecord> page = Collections.emptyList();
+        private int index;
+        private String last;
+        private boolean loaded;
+        private Iterator<Change> rest;
+        private Game next;
+
+        GameIterator(Map<String, Change> changes) {
+            this.changes = changes;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (this.next == null) {
+                if (this.rest == null) {
+                    this.nextRow();
+                } else if (this.rest.hasNext()) {
+                    this.next = this.rest.next().game;
+                } else {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public Game next() {
+            if (!this.hasNext()) throw new NoSuchElementException();
+
+            Game g = this.next;
+            this.next = null;
+            return g;
+        }
+
+        /**
+         * Take the next row, or read the next page. After the last page, go on with the kept changes.
+         */
+        private void nextRow() {
+            if (this.index < this.page.size()) {
+                GameRecord record = this.page.get(this.index++);
+                this.last = record.getId();
+                Change change = this.changes.remove(this.last);
+                this.next = change == null ? record.toGame() : change.game;
+            } else if (this.loaded && this.page.size() < PAGE_SIZE) {
+                this.rest = this.changes.values().iterator();
+            } else {
+                try {
+                    QueryBuilder<GameRecord, String> query = dao.queryBuilder();
+                    query.orderBy("id", true).limit((long) PAGE_SIZE);
+                    if (this.last != null) query.where().gt("id", this.last);
+                    this.page = query.query();
+                } catch (SQLException e) {
+                    throw new IllegalStateException("Fail to load games", e);
+                }
+                this.index = 0;
+                this.loaded = true;
+            }
+        }
+    }
+
+    /**
+     * Latest change of a game not written yet
+     */
+    private static final class Change {
+        /**
+         * The game to write, null to delete it
+         */
+        final Game game;
+
+        Change(Game game) {
+            this.game = game;
+        }
+    }
+}
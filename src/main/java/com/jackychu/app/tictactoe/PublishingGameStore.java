@@ -0,0 +1,133 @@
+package com.jackychu.app.tictactoe;
+
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * Game store which publishes every accepted change to GameEvents.<br>
+ * The change is published after the inner store accepted it, so subscribers only see stored versions.
+ * A change and its publish are done under a lock of the game id, so the changes of one game are
+ * published in version order.<br>
+ * As an eviction listener of a GameRegistry, a game evicted for good is published as deleted.
+ */
+public class PublishingGameStore implements GameStore, GameRegistry.EvictionListener {
+    /**
+     * Count of locks of ids, a power of two
+     */
+    private static final int LOCKS = 256;
+
+    /**
+     * The store of games
+     */
+    private final GameStore store;
+
+    /**
+     * Subscribers of game changes
+     */
+    private final GameEvents events;
+
+    /**
+     * Locks of ids. A change of an id is stored and published under its lock.
+     */
+    private final Object[] locks = new Object[LOCKS];
+
+    /**
+     * Publish the changes of store
+     * @param store game store
+     * @param events subscribers of game changes
+     */
+    public PublishingGameStore(GameStore store, GameEvents events) {
+        this.store = store;
+        this.events = events;
+        for (int i=0; i<LOCKS; i++) {
+            this.locks[i] = new Object();
+        }
+        events.setSource(store);
+    }
+
+    @Override
+    public Game get(String id) {
+        return this.store.get(id);
+    }
+
+    @Override
+    public Map<String, Game> getAll() {
+        return this.store.getAll();
+    }
+
+    @Override
+    public Iterable<Game> games() {
+        return this.store.games();
+    }
+
+    @Override
+    public void put(Game game) {
+        synchronized (this.lock(game.getId())) {
+            this.store.put(game);
+            // All placed cells of the game, as if it is new
+            this.events.publish(null, game);
+        }
+    }
+
+    @Override
+    public boolean replace(Game expected, Game updated) {
+        synchronized (this.lock(updated.getId())) {
+            if (!this.store.replace(expected, updated)) return false;
+
+            this.events.publish(expected, updated);
+            return true;
+        }
+    }
+
+    @Override
+    public Game remove(String id) {
+        synchronized (this.lock(id)) {
+            Game g = this.store.remove(id);
+            if (g != null) {
+                this.events.publish(g, null);
+            }
+            return g;
+        }
+    }
+
+    /**
+     * Publish an evicted game as deleted. The registry may evict while a change of another id holds
+     * its lock, so this does not take the lock of the id. An evicted game has no later change.
+     * @param game the evicted game
+     */
+    @Override
+    public void evicted(Game game) {
+        this.events.publish(game, null);
+    }
+
+    @Override
+    public int size() {
+        return this.store.size();
+    }
+
+    private Object lock(String id) {
+        int h = id.hashCode();
+        return this.locks[(h ^ (h >>> 16)) & (LOCKS - 1)];
+    }
+
+    /**
+     * Get the subscribers of game changes
+     * @return game events
+     */
+    public GameEvents getEvents() {
+        return this.events;
+    }
+
+    /**
+     * Close the subscribers, then the store
+     * @throws IOException fail to close
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            this.events.close();
+        } finally {
+            this.store.close();
+        }
+    }
+}
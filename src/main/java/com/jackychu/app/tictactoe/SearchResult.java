@@ -0,0 +1,109 @@
+package com.jackychu.app.tictactoe;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+/**
+ * The best move found by a search, with the search stats.<br>
+ * Will convert to json format automatically when response to client.
+ */
+public class SearchResult {
+    /**
+     * The best move
+     */
+    private Move move;
+
+    /**
+     * Score of the best move for the player to move. Positive is good for the player.
+     */
+    private int score;
+
+    /**
+     * The deepest search depth which was finished
+     */
+    private int depth;
+
+    /**
+     * Count of searched positions
+     */
+    private long nodes;
+
+    /**
+     * Search time in millis
+     */
+    private long millis;
+
+    /**
+     * The result is exact: the game tree was searched to the end, not cut by the budget
+     */
+    private boolean complete;
+
+    /**
+     * Constructor for json conversion
+     */
+    public SearchResult() {
+    }
+
+    /**
+     * Constructor with all values
+     *
+     * @param move the best move
+     * @param score score of the move for the player to move
+     * @param depth the deepest finished depth
+     * @param nodes count of searched positions
+     * @param millis search time in millis
+     * @param complete the game tree was searched to the end
+     */
+    public SearchResult(Move move, int score, int depth, long nodes, long millis, boolean complete) {
+        this.move = move;
+        this.score = score;
+        this.depth = depth;
+        this.nodes = nodes;
+        this.millis = millis;
+        this.complete = complete;
+    }
+
+    @JsonIgnore
+    public Move getMove() {
+        return this.move;
+    }
+
+    public int getScore() {
+        return this.score;
+    }
+
+    public void setScore(int score) {
+        this.score = score;
+    }
+
+    public int getDepth() {
+        return this.depth;
+    }
+
+    public void setDepth(int depth) {
+        this.depth = depth;
+    }
+
+    public long getNodes() {
+        return this.nodes;
+    }
+
+    public void setNodes(long nodes) {
+        this.nodes = nodes;
+    }
+
+    public long getMillis() {
+        return this.millis;
+    }
+
+    public void setMillis(long millis) {
+        this.millis = millis;
+    }
+
+    public boolean isComplete() {
+        return this.complete;
+    }
+
+    public void setComplete(boolean complete) {
+        this.complete = complete;
+    }
+}
@@ -0,0 +1,172 @@
+package com.jackychu.app.tictactoe;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.glassfish.grizzly.http.KeepAlive;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.grizzly.http.server.NetworkListener;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransport;
+import org.glassfish.grizzly.threadpool.ThreadPoolConfig;
+
+/**
+ * Settings of the http transport, read from a properties file and system properties.<br>
+ * The file is set by system property {@value #CONFIG_FILE_PROPERTY}. A system property overrides
+ * the same key in the file. A setting which is not set keeps the Grizzly default.
+ *
+ * <pre>
+ * tictactoe.server.uri                base uri to listen on, default Main.BASE_URI
+ * tictactoe.server.workers            count of worker threads which run requests
+ * tictactoe.server.selectors          count of selector threads which accept and read connections
+ * tictactoe.server.maxPending         max requests waiting for a worker, -1 for no limit
+ * tictactoe.server.keepAliveSeconds   idle seconds before a kept alive connection is closed, -1 for never
+ * tictactoe.server.keepAliveRequests  max requests of one connection, 0 to close after each request, -1 for no limit
+ * tictactoe.server.writeTimeoutSeconds seconds a blocking write waits for a slow client, e.g. of game events
+ * tictactoe.server.virtualThreads     true to run each request on a new virtual thread,
+ *                                     instead of the worker pool. Workers and maxPending are not used then.
+ * </pre>
+ */
+public class ServerConfig {
+    // System property of the properties file of server settings
+    public static final String CONFIG_FILE_PROPERTY = "tictactoe.config";
+
+    public static final String URI = "tictactoe.server.uri";
+    public static final String WORKERS = "tictactoe.server.workers";
+    public static final String SELECTORS = "tictactoe.server.selectors";
+    public static final String MAX_PENDING = "tictactoe.server.maxPending";
+    public static final String KEEP_ALIVE_SECONDS = "tictactoe.server.keepAliveSeconds";
+    public static final String KEEP_ALIVE_REQUESTS = "tictactoe.server.keepAliveRequests";
+    public static final String WRITE_TIMEOUT_SECONDS = "tictactoe.server.writeTimeoutSeconds";
+    public static final String VIRTUAL_THREADS = "tictactoe.server.virtualThreads";
+
+    /**
+     * Value of a setting which is not set
+     */
+    static final int DEFAULT = Integer.MIN_VALUE;
+
+    private final Properties properties;
+
+    /**
+     * Create config from the given settings only
+     * @param properties settings, the keys are the same as the system properties
+     */
+    public ServerConfig(Properties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * Read settings from the config file if set, then system properties
+     * @return server config
+     */
+    public static ServerConfig load() {
+        Properties properties = new Properties();
+        String file = System.getProperty(CONFIG_FILE_PROPERTY);
+        if (file != null && !file.isEmpty()) {
+            try (InputStream in = new FileInputStream(new File(file))) {
+                properties.load(in);
+            } catch (IOException e) {
+                throw new IllegalStateException("Fail to read config " + file, e);
+            }
+        }
+        for (String key : System.getProperties().stringPropertyNames()) {
+            if (key.startsWith("tictactoe.server.")) {
+                properties.setProperty(key, System.getProperty(key));
+            }
+        }
+        return new ServerConfig(properties);
+    }
+
+    public String getUri() {
+        return this.properties.getProperty(URI, Main.BASE_URI);
+    }
+
+    public int getWorkers() {
+        return this.getInt(WORKERS);
+    }
+
+    public int getSelectors() {
+        return this.getInt(SELECTORS);
+    }
+
+    public int getMaxPending() {
+        return this.getInt(MAX_PENDING);
+    }
+
+    public int getKeepAliveSeconds() {
+        return this.getInt(KEEP_ALIVE_SECONDS);
+    }
+
+    public int getKeepAliveRequests() {
+        return this.getInt(KEEP_ALIVE_REQUESTS);
+    }
+
+    public int getWriteTimeoutSeconds() {
+        return this.getInt(WRITE_TIMEOUT_SECONDS);
+    }
+
+    public boolean isVirtualThreads() {
+        return Boolean.parseBoolean(this.properties.getProperty(VIRTUAL_THREADS, "false").trim());
+    }
+
+    /**
+     * Apply the settings to the listeners of a server which is not started
+     * @param server http server
+     */
+    public void configure(HttpServer server) {
+        ExecutorService virtualThreads = this.isVirtualThreads() ? newVirtualThreadExecutor() : null;
+        for (NetworkListener listener : server.getListeners()) {
+            TCPNIOTransport transport = listener.getTransport();
+            if (this.getSelectors() != DEFAULT) {
+                transport.setSelectorRunnersCount(this.getSelectors());
+            }
+            if (this.getWriteTimeoutSeconds() != DEFAULT) {
+                transport.setWriteTimeout(this.getWriteTimeoutSeconds(), TimeUnit.SECONDS);
+            }
+            if (virtualThreads != null) {
+                transport.setWorkerThreadPool(virtualThreads);
+            } else if (this.getWorkers() != DEFAULT || this.getMaxPending() != DEFAULT) {
+                ThreadPoolConfig pool = transport.getWorkerThreadPoolConfig() == null
+                        ? ThreadPoolConfig.defaultConfig() : transport.getWorkerThreadPoolConfig().copy();
+                if (this.getWorkers() != DEFAULT) {
+                    pool.setCorePoolSize(this.getWorkers()).setMaxPoolSize(this.getWorkers());
+                }
+                if (this.getMaxPending() != DEFAULT) {
+                    pool.setQueueLimit(this.getMaxPending());
+                }
+                transport.setWorkerThreadPoolConfig(pool);
+            }
+
+            KeepAlive keepAlive = listener.getKeepAlive();
+            if (this.getKeepAliveSeconds() != DEFAULT) {
+                keepAlive.setIdleTimeoutInSeconds(this.getKeepAliveSeconds());
+            }
+            if (this.getKeepAliveRequests() != DEFAULT) {
+                keepAlive.setMaxRequestsCount(this.getKeepAliveRequests());
+            }
+        }
+    }
+
+    /**
+     * Executor of one virtual thread per task
+     * @return executor
+     */
+    static ExecutorService newVirtualThreadExecutor() {
+        return Executors.newVirtualThreadPerTaskExecutor();
+    }
+
+    private int getInt(String key) {
+        String value = this.properties.getProperty(key);
+        if (value == null || value.trim().isEmpty()) return DEFAULT;
+        try {
+            return Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            throw new IllegalStateException("Invalid " + key + ": " + value, e);
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.jackychu.app.tictactoe;
+
+/**
+ * Bitboard for boards up to 8x8. One long bitmask per player.
+ */
+final class SmallBoard extends Board {
+    /**
+     * Cells of player 1
+     */
+    long one;
+
+    /**
+     * Cells of player 2
+     */
+    long two;
+
+    /**
+     * Create empty board
+     * @param dimension The dimension of game board, up to 8
+     * @param winLength Count of marks in a row to win
+     */
+    SmallBoard(int dimension, int winLength) {
+        super(dimension, winLength);
+        if (dimension > SMALL_LIMIT) {
+            throw new IllegalArgumentException("Dimension too large for small board: " + dimension);
+        }
+    }
+
+    @Override
+    int get(int row, int col) {
+        long bit = 1L << (row * this.dimension + col);
+        if ((this.one & bit) != 0) return 1;
+        if ((this.two & bit) != 0) return 2;
+        return 0;
+    }
+
+    @Override
+    void set(int row, int col, int player) {
+        long bit = 1L << (row * this.dimension + col);
+        this.one &= ~bit;
+        this.two &= ~bit;
+        if (player == 1) this.one |= bit;
+        if (player == 2) this.two |= bit;
+    }
+
+    @Override
+    int count(int player) {
+        return Long.bitCount(player == 1 ? this.one : this.two);
+    }
+
+    @Override
+    int filled() {
+        return Long.bitCount(this.one | this.two);
+    }
+
+    @Override
+    boolean covers(int player, long[] mask) {
+        long bits = player == 1 ? this.one : this.two;
+        return (bits & mask[0]) == mask[0];
+    }
+
+    @Override
+    int countIn(int player, long[] mask) {
+        return Long.bitCount((player == 1 ? this.one : this.two) & mask[0]);
+    }
+
+    @Override
+    int differences(Board other) {
+        SmallBoard b = (SmallBoard) other;
+        return Long.bitCount((this.one ^ b.one) | (this.two ^ b.two));
+    }
+
+    @Override
+    int firstDifference(Board other) {
+        SmallBoard b = (SmallBoard) other;
+        long diff = (this.one ^ b.one) | (this.two ^ b.two);
+        return diff == 0 ? -1 : Long.numberOfTrailingZeros(diff);
+    }
+
+    @Override
+    Board copy() {
+        SmallBoard b = new SmallBoard(this.dimension, this.winLength);
+        b.one = this.one;
+        b.two = this.two;
+        return b;
+    }
+
+    @Override
+    long[] words() {
+        return new long[]{this.one, this.two};
+    }
+
+    @Override
+    void load(long[] words) {
+        this.one = words[0];
+        this.two = words[1];
+    }
+}
@@ -0,0 +1,165 @@
+package com.jackychu.app.tictactoe;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Game store which is loaded from a snapshot file on start and saved into it on close.<br>
+ * The whole state is one sequential file, so a restart with many games is mostly disk read time.
+ * Size and time of the last save and load are kept for metrics.
+ */
+public class SnapshotGameStore implements GameStore {
+    /**
+     * The store of games
+     */
+    private final GameStore store;
+
+    /**
+     * The snapshot file
+     */
+    private final File file;
+
+    /**
+     * Count of games loaded on start
+     */
+    private final int loadedGames;
+
+    /**
+     * Time to load the snapshot on start
+     */
+    private final long loadMillis;
+
+    /**
+     * Size of the last snapshot file read or written
+     */
+    private volatile long snapshotBytes;
+
+    /**
+     * Time to write the last snapshot
+     */
+    private volatile long snapshotMillis;
+
+    /**
+     * Load the snapshot file into the store if the file exists
+     * @param store game store
+     * @param file snapshot file
+     * @throws IOException fail to read snapshot
+     */
+    public SnapshotGameStore(GameStore store, File file) throws IOException {
+        this.store = store;
+        this.file = file;
+
+        long start = System.nanoTime();
+        int count = 0;
+        if (file.isFile()) {
+            List<Game> games = GameSnapshot.read(file);
+            for (Game g : games) {
+                store.put(g);
+            }
+            count = games.size();
+            this.snapshotBytes = file.length();
+        }
+        this.loadedGames = count;
+        this.loadMillis = (System.nanoTime() - start) / 1000000;
+    }
+
+    @Override
+    public Game get(String id) {
+        return this.store.get(id);
+    }
+
+    @Override
+    public Map<String, Game> getAll() {
+        return this.store.getAll();
+    }
+
+    @Override
+    public Iterable<Game> games() {
+        return this.store.games();
+    }
+
+    @Override
+    public void put(Game game) {
+        this.store.put(game);
+    }
+
+    @Override
+    public boolean replace(Game expected, Game updated) {
+        return this.store.replace(expected, updated);
+    }
+
+    @Override
+    public Game remove(String id) {
+        return this.store.remove(id);
+    }
+
+    @Override
+    public int size() {
+        return this.store.size();
+    }
+
+    /**
+     * Write all games into the snapshot file now
+     * @throws IOException fail to write snapshot
+     */
+    public synchronized void snapshot() throws IOException {
+        long start = System.nanoTime();
+        this.snapshotBytes = GameSnapshot.write(this.file, this.store.games());
+        this.snapshotMillis = (System.nanoTime() - start) / 1000000;
+    }
+
+    /**
+     * Get the store of games
+     * @return inner game store
+     */
+    public GameStore getStore() {
+        return this.store;
+    }
+
+    /**
+     * Get count of games loaded on start
+     * @return count of games
+     */
+    public int getLoadedGames() {
+        return this.loadedGames;
+    }
+
+    /**
+     * Get time to load the snapshot on start
+     * @return time in millis
+     */
+    public long getLoadMillis() {
+        return this.loadMillis;
+    }
+
+    /**
+     * Get size of the last snapshot file read or written
+     * @return size in bytes
+     */
+    public long getSnapshotBytes() {
+        return this.snapshotBytes;
+    }
+
+    /**
+     * Get time to write the last snapshot
+     * @return time in millis
+     */
+    public long getSnapshotMillis() {
+        return this.snapshotMillis;
+    }
+
+    /**
+     * Save the snapshot, then close the store
+     * @throws IOException fail to write snapshot or close
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            this.snapshot();
+        } finally {
+            this.store.close();
+        }
+    }
+}
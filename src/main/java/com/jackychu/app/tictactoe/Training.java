@@ -0,0 +1,93 @@
+package com.jackychu.app.tictactoe;
+
+import org.glassfish.grizzly.http.server.HttpServer;
+
+import javax.ws.rs.core.MediaType;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Training run of the class data sharing archive, see Dockerfile.<br>
+ * Starts the server, plays a few games against it over http, then stops. Run with
+ * -XX:ArchiveClassesAtExit and the same jar as the server, the loaded classes are saved at exit:
+ * <pre>
+ * java -XX:ArchiveClassesAtExit=app.jsa -cp tic-tac-toe.jar com.jackychu.app.tictactoe.Training
+ * </pre>
+ */
+public final class Training {
+
+    private Training() {
+    }
+
+    /**
+     * Call each endpoint once, so the classes of a request are loaded and linked
+     * @param url base url of a running server, ends with /
+     * @throws IOException a request fails
+     */
+    static void train(String url) throws IOException {
+        String game = url + "api/v1.0/game";
+        String small = id(send("POST", game + "?dimension=3", MediaType.APPLICATION_JSON, null));
+        String large = id(send("POST", game + "?dimension=9", MediaType.APPLICATION_JSON, null));
+        send("GET", game + "/" + small, MediaType.APPLICATION_JSON, null);
+        send("GET", game + "/" + small, GameBinaryProvider.APPLICATION_GAME, null);
+        send("POST", game + "/" + small + "/moves", MediaType.APPLICATION_JSON, "{\"row\":1,\"col\":1,\"player\":1}");
+        send("POST", game + "/" + small + "/ai-move", MediaType.APPLICATION_JSON, null);
+        send("GET", game + "/" + small + "/hint", MediaType.APPLICATION_JSON, null);
+        send("POST", game + "/" + large + "/ai-move?engine=alphabeta&millis=100", MediaType.APPLICATION_JSON, null);
+        send("POST", game + "/" + large + "/ai-move?engine=mcts&millis=100", MediaType.APPLICATION_JSON, null);
+        send("GET", game + "/all", MediaType.APPLICATION_JSON, null);
+        send("GET", url + "metrics", Metrics.CONTENT_TYPE, null);
+        send("DELETE", game + "/" + small, MediaType.APPLICATION_JSON, null);
+        send("DELETE", game + "/" + large, MediaType.APPLICATION_JSON, null);
+    }
+
+    private static String id(String json) throws IOException {
+        try {
+            return Game.fromJson(json).getId();
+        } catch (Exception e) {
+            throw new IOException("Invalid game: " + json, e);
+        }
+    }
+
+    private static String send(String method, String url, String accept, String json) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) URI.create(url).toURL().openConnection();
+        connection.setRequestMethod(method);
+        connection.setRequestProperty("Accept", accept);
+        if (json != null) {
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", MediaType.APPLICATION_JSON);
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(json.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        int status = connection.getResponseCode();
+        if (status / 100 != 2) {
+            throw new IOException("Fail to " + method + " " + url + ": " + status);
+        }
+        try (InputStream in = connection.getInputStream()) {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            for (int n = in.read(buffer); n >= 0; n = in.read(buffer)) {
+                body.write(buffer, 0, n);
+            }
+            return body.toString(StandardCharsets.UTF_8);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        ServerConfig config = ServerConfig.load();
+        HttpServer server = Main.startServer(config);
+        try {
+            train(config.getUri().replace("0.0.0.0", "localhost"));
+        } finally {
+            server.shutdownNow();
+        }
+        System.out.println(String.format("Trained in %d ms", ManagementFactory.getRuntimeMXBean().getUptime()));
+    }
+}
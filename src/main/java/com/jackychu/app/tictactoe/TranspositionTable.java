@@ -0,0 +1,191 @@
+package com.jackychu.app.tictactoe;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded table of searched positions, shared by all searches of the server.<br>
+ * Positions are keyed by the canonical Zobrist hash, so a position found in one game is reused by
+ * every game which reaches it or one of its rotations or reflections.<br>
+ * Entries are two longs in flat arrays, in buckets of two slots. The first slot keeps the deeper search
+ * (unless it is from an older search generation), the second slot always takes the new entry.<br>
+ * The table has no locks. The key is stored XOR the data, so an entry torn by two threads writing
+ * at once does not match any key and is a miss.
+ *
+ * <pre>
+ * Data, 64 bits
+ *  0-31  score
+ * 32-39  depth, 255 for a position searched to the end
+ * 40-41  bound: 0 exact, 1 lower, 2 upper
+ * 42-47  generation
+ * 48-62  best cell + 1 in the canonical position, 0 for none
+ *    63  1, so data is never 0
+ * </pre>
+ */
+public class TranspositionTable {
+    /**
+     * Default count of entries, 16 MB
+     */
+    public static final int DEFAULT_ENTRIES = 1 << 20;
+
+    /**
+     * Depth of a position searched to the end of game
+     */
+    static final int SOLVED = 255;
+
+    static final int EXACT = 0;
+    static final int LOWER = 1;
+    static final int UPPER = 2;
+
+    private static final long VALID = 1L << 63;
+
+    private final long[] keys;
+    private final long[] data;
+    private final int mask;
+
+    /**
+     * Search generation, old entries are replaced first
+     */
+    private final AtomicInteger generation = new AtomicInteger();
+
+    private final AtomicLong probes = new AtomicLong();
+    private final AtomicLong hits = new AtomicLong();
+
+    /**
+     * Create table with default count of entries
+     */
+    public TranspositionTable() {
+        this(DEFAULT_ENTRIES);
+    }
+
+    /**
+     * Create table
+     * @param entries count of entries, rounded down to a power of two, at least 2
+     */
+    public TranspositionTable(int entries) {
+        if (entries < 2) throw new IllegalArgumentException("Entries should be at least 2: " + entries);
+
+        int size = Integer.highestOneBit(entries);
+        this.keys = new long[size];
+        this.data = new long[size];
+        this.mask = size - 1;
+    }
+
+    /**
+     * Start a new search generation. Called once per search.
+     * @return generation of the search
+     */
+    int newSearch() {
+        return this.generation.incrementAndGet() & 63;
+    }
+
+    /**
+     * Find the entry of a position
+     * @param key canonical hash
+     * @return entry data, 0 if not found
+     */
+    long probe(long key) {
+        int i = (int) key & this.mask & ~1;
+        for (int j=i; j<=i+1; j++) {
+            long d = this.data[j];
+            if (d != 0 && (this.keys[j] ^ d) == key) return d;
+        }
+        return 0;
+    }
+
+    /**
+     * Store the entry of a position
+     * @param key canonical hash
+     * @param score score for the player to move
+     * @param depth searched depth, SOLVED if searched to the end
+     * @param bound EXACT, LOWER or UPPER
+     * @param cell best cell in the canonical position, -1 for none
+     * @param generation generation of the search
+     */
+    void store(long key, int score, int depth, int bound, int cell, int generation) {
+        long d = VALID | ((long) (cell + 1) & 0x7fff) << 48 | ((long) generation & 63) << 42
+                | ((long) bound & 3) << 40 | ((long) Math.min(depth, SOLVED) & 0xff) << 32 | (score & 0xffffffffL);
+        int i = (int) key & this.mask & ~1;
+        long old = this.data[i];
+        if (old == 0 || (this.keys[i] ^ old) == key || generation(old) != generation || depth(old) <= depth) {
+            this.keys[i] = key ^ d;
+            this.data[i] = d;
+        } else {
+            this.keys[i + 1] = key ^ d;
+            this.data[i + 1] = d;
+        }
+    }
+
+    static int score(long data) {
+        return (int) data;
+    }
+
+    static int depth(long data) {
+        return (int) (data >>> 32) & 0xff;
+    }
+
+    static int bound(long data) {
+        return (int) (data >>> 40) & 3;
+    }
+
+    static int generation(long data) {
+        return (int) (data >>> 42) & 63;
+    }
+
+    static int cell(long data) {
+        return (int) ((data >>> 48) & 0x7fff) - 1;
+    }
+
+    /**
+     * Add the counts of one search
+     * @param probes count of lookups
+     * @param hits count of found positions
+     */
+    void record(long probes, long hits) {
+        this.probes.addAndGet(probes);
+        this.hits.addAndGet(hits);
+    }
+
+    /**
+     * Get count of lookups
+     * @return count of lookups
+     */
+    public long getProbes() {
+        return this.probes.get();
+    }
+
+    /**
+     * Get count of found positions
+     * @return count of hits
+     */
+    public long getHits() {
+        return this.hits.get();
+    }
+
+    /**
+     * Get the rate of lookups which found the position
+     * @return hit rate from 0 to 1
+     */
+    public double getHitRate() {
+        long p = this.probes.get();
+        return p == 0 ? 0 : (double) this.hits.get() / p;
+    }
+
+    /**
+     * Get count of entries
+     * @return count of entries
+     */
+    public int getSize() {
+        return this.data.length;
+    }
+
+    /**
+     * Remove all entries
+     */
+    public void clear() {
+        for (int i=0; i<this.data.length; i++) {
+            this.data[i] = 0;
+            this.keys[i] = 0;
+        }
+    }
+}
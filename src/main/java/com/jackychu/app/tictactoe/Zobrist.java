@@ -0,0 +1,143 @@
+package com.jackychu.app.tictactoe;
+
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Zobrist keys of a board dimension, for each of the 8 symmetries of the square board.<br>
+ * The hash of a position under symmetry s is the XOR of the keys of its marks moved by s.
+ * All 8 hashes are updated by one XOR each when a mark is placed or removed, and the smallest
+ * of them is the canonical hash: positions which are the same up to rotation or reflection have the same key.
+ */
+final class Zobrist {
+    /**
+     * Count of symmetries of a square board
+     */
+    static final int SYMMETRIES = 8;
+
+    /**
+     * Keys cache by dimension
+     */
+    private static final ConcurrentHashMap<Integer, Zobrist> CACHE = new ConcurrentHashMap<>();
+
+    /**
+     * The board dimension
+     */
+    final int dimension;
+
+    /**
+     * Key of player mark on cell under symmetry: keys[player - 1][symmetry][cell]
+     */
+    final long[][][] keys;
+
+    /**
+     * Cell moved by symmetry: map[symmetry][cell]
+     */
+    final int[][] map;
+
+    /**
+     * Cell moved back by the inverse of symmetry: inverse[symmetry][cell]
+     */
+    final int[][] inverse;
+
+    private Zobrist(int d) {
+        this.dimension = d;
+        int cells = d * d;
+        this.map = new int[SYMMETRIES][cells];
+        this.inverse = new int[SYMMETRIES][cells];
+        for (int r=0; r<d; r++) {
+            for (int c=0; c<d; c++) {
+                int[][] moved = {
+                        {r, c}, {c, d - 1 - r}, {d - 1 - r, d - 1 - c}, {d - 1 - c, r},
+                        {r, d - 1 - c}, {d - 1 - r, c}, {c, r}, {d - 1 - c, d - 1 - r}
+                };
+                for (int s=0; s<SYMMETRIES; s++) {
+                    int to = moved[s][0] * d + moved[s][1];
+                    this.map[s][r * d + c] = to;
+                    this.inverse[s][to] = r * d + c;
+                }
+            }
+        }
+
+        // Fixed seed per dimension, so keys are the same in every run
+        Random random = new Random(0x5DEECE66DL * d);
+        long[][] base = new long[2][cells];
+        for (int p=0; p<2; p++) {
+            for (int i=0; i<cells; i++) {
+                base[p][i] = random.nextLong();
+            }
+        }
+        this.keys = new long[2][SYMMETRIES][cells];
+        for (int p=0; p<2; p++) {
+            for (int s=0; s<SYMMETRIES; s++) {
+                for (int i=0; i<cells; i++) {
+                    this.keys[p][s][i] = base[p][this.map[s][i]];
+                }
+            }
+        }
+    }
+
+    /**
+     * Get the keys of dimension
+     * @param dimension The dimension of game board
+     * @return Zobrist keys
+     */
+    static Zobrist of(int dimension) {
+        Zobrist z = CACHE.get(dimension);
+        if (z == null) {
+            z = new Zobrist(dimension);
+            Zobrist existing = CACHE.putIfAbsent(dimension, z);
+            if (existing != null) z = existing;
+        }
+        return z;
+    }
+
+    /**
+     * Hash a board under every symmetry.
+     * Boards with a shorter win length start from a key of the win length, so their positions never share a key
+     * with the same marks under other rules.
+     * @param board game board of this dimension
+     * @return 8 hashes
+     */
+    long[] hashes(Board board) {
+        long[] hashes = new long[SYMMETRIES];
+        int d = this.dimension;
+        if (board.winLength() != d) {
+            long rule = new Random(board.winLength()).nextLong();
+            for (int s=0; s<SYMMETRIES; s++) {
+                hashes[s] = rule;
+            }
+        }
+        for (int i=0; i<d*d; i++) {
+            int p = board.get(i / d, i % d);
+            if (p != 0) this.toggle(hashes, p, i);
+        }
+        return hashes;
+    }
+
+    /**
+     * Add or remove a mark in the hashes
+     * @param hashes 8 hashes of position
+     * @param player 1 for player 1, 2 for player 2
+     * @param cell bit index of cell
+     */
+    void toggle(long[] hashes, int player, int cell) {
+        long[][] k = this.keys[player - 1];
+        for (int s=0; s<SYMMETRIES; s++) {
+            hashes[s] ^= k[s][cell];
+        }
+    }
+
+    /**
+     * Find the symmetry with the canonical (smallest) hash
+     * @param hashes 8 hashes of position
+     * @return symmetry index
+     */
+    static int canonical(long[] hashes) {
+        int best = 0;
+        for (int s=1; s<SYMMETRIES; s++) {
+            if (hashes[s] < hashes[best]) best = s;
+        }
+        return best;
+    }
+}
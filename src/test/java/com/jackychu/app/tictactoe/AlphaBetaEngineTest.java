@@ -0,0 +1,156 @@
+package com.jackychu.app.tictactoe;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test AlphaBetaEngine class
+ */
+public class AlphaBetaEngineTest {
+
+    private final AlphaBetaEngine engine = new AlphaBetaEngine();
+
+    private Game game(int[][] grid) {
+        Game g = new Game(grid.length);
+        g.setGrid(grid);
+        g.setStatus(Game.Status.PLAYING);
+        return g;
+    }
+
+    /**
+     * Test the engine takes a win
+     */
+    @Test
+    public void testTakeWin() {
+        SearchResult result = engine.search(game(new int[][]{{1, 1, 0}, {2, 2, 0}, {0, 0, 0}}));
+        assertEquals(0, result.getMove().getRow());
+        assertEquals(2, result.getMove().getCol());
+        assertEquals(1, result.getMove().getPlayer());
+        assertTrue(result.isComplete());
+        assertTrue(result.getScore() > AlphaBetaEngine.WIN_BOUND);
+    }
+
+    /**
+     * Test the engine blocks a win of opponent
+     */
+    @Test
+    public void testBlock() {
+        SearchResult result = engine.search(game(new int[][]{{1, 1, 0}, {0, 2, 0}, {0, 0, 0}}));
+        assertEquals(2, result.getMove().getPlayer());
+        assertEquals(0, result.getMove().getRow());
+        assertEquals(2, result.getMove().getCol());
+    }
+
+    /**
+     * Test the empty 3x3 game is solved as a draw
+     */
+    @Test
+    public void testSolveEmpty() {
+        SearchResult result = engine.search(new Game());
+        assertTrue(result.isComplete());
+        assertEquals(0, result.getScore());
+        assertEquals(9, result.getDepth());
+    }
+
+    /**
+     * Test two engines playing each other draw
+     */
+    @Test
+    public void testSelfPlayDraw() {
+        Game g = new Game();
+        while (g.getStatus() != Game.Status.END) {
+            Move move = engine.search(g).getMove();
+            assertTrue(g.validate(move));
+            g.play(move);
+        }
+        assertEquals(0, g.getWinner());
+    }
+
+    /**
+     * Test the budget stops the search on a large board
+     */
+    @Test
+    public void testBudget() {
+        Game g = new Game(7);
+        g.play(new Move(3, 3, 1));
+        SearchResult result = new AlphaBetaEngine(20000, 1000, null).search(g);
+        assertFalse(result.isComplete());
+        assertTrue(result.getNodes() <= 20000);
+        assertTrue(result.getDepth() >= 1);
+        assertTrue(g.validate(result.getMove()));
+    }
+
+    /**
+     * Test the engine takes a win and blocks with k in a row on a large board
+     */
+    @Test
+    public void testWinLength() {
+        Game g = new Game(7, 4);
+        g.setGrid(new int[][]{
+                {2, 0, 0, 0, 0, 0, 0},
+                {0, 0, 0, 0, 0, 0, 0},
+                {0, 0, 0, 0, 0, 0, 0},
+                {0, 1, 1, 1, 0, 0, 0},
+                {0, 0, 0, 0, 0, 0, 0},
+                {0, 0, 0, 0, 0, 0, 2},
+                {0, 0, 0, 0, 0, 0, 2}});
+        g.setStatus(Game.Status.PLAYING);
+        SearchResult result = engine.search(g);
+        assertEquals(1, result.getMove().getPlayer());
+        assertEquals(3, result.getMove().getRow());
+        assertTrue(result.getMove().getCol() == 0 || result.getMove().getCol() == 4);
+        assertTrue(result.getScore() > AlphaBetaEngine.WIN_BOUND);
+
+        // Player 2 to move blocks the three of player 1 in the column
+        g.setGrid(new int[][]{
+                {0, 0, 0, 0, 0, 0, 0},
+                {0, 0, 2, 0, 0, 0, 0},
+                {0, 0, 0, 1, 0, 0, 0},
+                {0, 0, 0, 1, 0, 0, 0},
+                {0, 0, 0, 1, 0, 0, 0},
+                {0, 0, 0, 2, 0, 0, 0},
+                {0, 0, 0, 0, 0, 0, 0}});
+        result = engine.search(g);
+        assertEquals(2, result.getMove().getPlayer());
+        assertEquals(1, result.getMove().getRow());
+        assertEquals(3, result.getMove().getCol());
+    }
+
+    /**
+     * Test the score kept by placed cells on large boards is the score of all line masks
+     */
+    @Test
+    public void testIncrementalScore() {
+        java.util.Random random = new java.util.Random(5);
+        for (int k : new int[]{3, 5, 17}) {
+            Board.LineMasks masks = Board.LineMasks.of(17, k);
+            Board board = Board.create(17, k);
+            for (int move=0; move<60; move++) {
+                int row = random.nextInt(17), col = random.nextInt(17);
+                if (board.get(row, col) != 0) continue;
+                board.set(row, col, 1 + random.nextInt(2));
+                long expected = 0;
+                for (long[] line : masks.lines) {
+                    expected += AlphaBetaEngine.Search.line(board.countIn(1, line), board.countIn(2, line));
+                }
+                assertEquals(expected, AlphaBetaEngine.Search.score(board));
+            }
+        }
+    }
+
+    /**
+     * Test the time budget holds on the largest board
+     */
+    @Test
+    public void testLargeBoardBudget() {
+        Game g = new Game(Game.MAX_DIMENSION, 3);
+        g.place(50, 50, 1);
+        SearchResult result = new AlphaBetaEngine(AlphaBetaEngine.DEFAULT_MAX_NODES, 500, null).search(g);
+        assertTrue("Search took " + result.getMillis() + " ms", result.getMillis() < 1000);
+        assertTrue(result.getDepth() >= 1);
+        assertEquals(2, result.getMove().getPlayer());
+    }
+}
@@ -0,0 +1,223 @@
+package com.jackychu.app.tictactoe;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test Board classes
+ */
+public class BoardTest {
+
+    /**
+     * Test small and large board is chosen by dimension
+     */
+    @Test
+    public void testCreate() {
+        assertTrue(Board.create(3) instanceof SmallBoard);
+        assertTrue(Board.create(8) instanceof SmallBoard);
+        assertTrue(Board.create(9) instanceof LargeBoard);
+    }
+
+    /**
+     * Test grid view is the same as the grid the board built from
+     */
+    @Test
+    public void testGridRoundTrip() {
+        int[][] grid = new int[][]{{0,1,2},{2,1,0},{1,0,2}};
+        Board board = Board.fromGrid(grid);
+        assertArrayEquals(grid, board.toGrid());
+        assertEquals(3, board.count(1));
+        assertEquals(3, board.count(2));
+        assertEquals(6, board.filled());
+    }
+
+    /**
+     * Test a grid with wrong value or shape cannot build a board
+     */
+    @Test
+    public void testIllegalGrid() {
+        assertNull(Board.fromGrid(new int[][]{{0,1,2},{2,1,3},{1,0,2}}));
+        assertNull(Board.fromGrid(new int[][]{{0,1,2},{2,1},{1,0,2}}));
+    }
+
+    /**
+     * Test set and get on a board larger than 64 cells
+     */
+    @Test
+    public void testLargeBoardSetGet() {
+        Board board = Board.create(11);
+        board.set(10, 10, 2);
+        board.set(5, 9, 1);
+        assertEquals(2, board.get(10, 10));
+        assertEquals(1, board.get(5, 9));
+        assertEquals(0, board.get(0, 0));
+        board.set(10, 10, 0);
+        assertEquals(0, board.get(10, 10));
+        assertEquals(1, board.filled());
+    }
+
+    /**
+     * Test winner of every line on small and large boards
+     */
+    @Test
+    public void testWinnerOfLines() {
+        int[] dimensions = {3, 8, 9, 12};
+        for (int d : dimensions) {
+            for (int line=0; line<d; line++) {
+                Board row = Board.create(d);
+                Board col = Board.create(d);
+                for (int i=0; i<d; i++) {
+                    row.set(line, i, 1);
+                    col.set(i, line, 2);
+                }
+                assertEquals(1, row.scanWinner());
+                assertEquals(1, row.winnerThrough(line, d - 1));
+                assertEquals(2, col.scanWinner());
+                assertEquals(2, col.winnerThrough(d - 1, line));
+            }
+
+            Board diagonal = Board.create(d);
+            Board antiDiagonal = Board.create(d);
+            for (int i=0; i<d; i++) {
+                diagonal.set(i, i, 2);
+                antiDiagonal.set(i, d - 1 - i, 1);
+            }
+            assertEquals(2, diagonal.scanWinner());
+            assertEquals(2, diagonal.winnerThrough(0, 0));
+            assertEquals(1, antiDiagonal.scanWinner());
+            assertEquals(1, antiDiagonal.winnerThrough(0, d - 1));
+        }
+    }
+
+    /**
+     * Test difference between boards
+     */
+    @Test
+    public void testDifferences() {
+        Board board = Board.create(10);
+        Board other = board.copy();
+        assertEquals(0, board.differences(other));
+        assertEquals(-1, board.firstDifference(other));
+
+        other.set(7, 3, 1);
+        assertEquals(1, board.differences(other));
+        assertEquals(73, board.firstDifference(other));
+        assertEquals(0, board.get(7, 3));
+    }
+
+    /**
+     * Test count of marks in a line on small and large boards
+     */
+    @Test
+    public void testCountIn() {
+        for (int d : new int[]{3, 9}) {
+            Board board = Board.create(d);
+            Board.LineMasks masks = Board.LineMasks.of(d);
+            board.set(0, 0, 1);
+            board.set(0, d - 1, 1);
+            board.set(d - 1, d - 1, 2);
+            assertEquals(2, board.countIn(1, masks.rows[0]));
+            assertEquals(0, board.countIn(2, masks.rows[0]));
+            assertEquals(1, board.countIn(1, masks.diagonal));
+            assertEquals(1, board.countIn(2, masks.diagonal));
+            assertEquals(1, board.countIn(2, masks.cols[d - 1]));
+        }
+    }
+
+    /**
+     * Brute force check of win length marks in a row through a cell
+     */
+    private static boolean wins(Board board, int row, int col, int k) {
+        int p = board.get(row, col);
+        int d = board.dimension();
+        int[][] directions = {{0, 1}, {1, 0}, {1, 1}, {1, -1}};
+        for (int[] dir : directions) {
+            for (int start=-(k - 1); start<=0; start++) {
+                boolean all = true;
+                for (int n=0; n<k && all; n++) {
+                    int r = row + (start + n) * dir[0], c = col + (start + n) * dir[1];
+                    all = r >= 0 && r < d && c >= 0 && c < d && board.get(r, c) == p;
+                }
+                if (all) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Test winner with a win length shorter than the dimension, on small and large boards
+     */
+    @Test
+    public void testWinLength() {
+        assertEquals(2 * 7 * 4 + 2 * 4 * 4, Board.LineMasks.of(7, 4).lines.length);
+        assertEquals(2 * 3 + 2, Board.LineMasks.of(3).lines.length);
+
+        java.util.Random random = new java.util.Random(7);
+        for (int d : new int[]{7, 10}) {
+            for (int k : new int[]{3, 5}) {
+                for (int round=0; round<200; round++) {
+                    Board board = Board.create(d, k);
+                    assertEquals(k, board.winLength());
+                    boolean won = false;
+                    for (int move=0; move<d * d / 2 && !won; move++) {
+                        int row = random.nextInt(d), col = random.nextInt(d);
+                        if (board.get(row, col) != 0) continue;
+                        int player = 1 + random.nextInt(2);
+                        board.set(row, col, player);
+                        won = wins(board, row, col, k);
+                        assertEquals(won ? player : 0, board.winnerThrough(row, col));
+                        if (won) assertEquals(player, board.scanWinner());
+                        else assertEquals(0, board.scanWinner());
+                    }
+                }
+            }
+        }
+
+        Board board = Board.create(9, 4);
+        board.set(2, 5, 1);
+        board.set(3, 4, 1);
+        board.set(4, 3, 1);
+        assertEquals(0, board.winnerThrough(4, 3));
+        board.set(5, 2, 1);
+        assertEquals(1, board.winnerThrough(3, 4));
+        assertEquals(4, board.copy().winLength());
+        assertEquals(1, board.withWinLength(9).get(5, 2));
+        assertEquals(0, board.withWinLength(9).scanWinner());
+    }
+
+    /**
+     * Test the run length scan of large boards finds the same winner as the masks
+     */
+    @Test
+    public void testScanRuns() {
+        assertTrue(Board.LineMasks.of(8, 3) == Board.LineMasks.of(8, 3));
+        assertTrue(Board.LineMasks.of(20, 3) != Board.LineMasks.of(20, 3));
+
+        java.util.Random random = new java.util.Random(11);
+        for (int d : new int[]{17, 20}) {
+            for (int k : new int[]{3, 5, d}) {
+                Board.LineMasks masks = Board.LineMasks.of(d, k);
+                assertArrayEquals(masks.linesThrough, Board.linesThrough(d, k));
+                for (int round=0; round<50; round++) {
+                    Board board = Board.create(d, k);
+                    int moves = random.nextInt(d * d);
+                    for (int move=0; move<moves; move++) {
+                        int row = random.nextInt(d), col = random.nextInt(d);
+                        if (board.get(row, col) == 0) board.set(row, col, 1 + random.nextInt(2));
+                    }
+                    int expected = 0;
+                    for (long[] line : masks.lines) {
+                        if (board.covers(1, line)) expected = 1;
+                        else if (board.covers(2, line)) expected = 2;
+                        if (expected != 0) break;
+                    }
+                    assertEquals(expected, board.scanWinner());
+                }
+            }
+        }
+    }
+}
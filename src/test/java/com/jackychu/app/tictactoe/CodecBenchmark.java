@@ -0,0 +1,83 @@
+package com.jackychu.app.tictactoe;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode and decode cost of a game in JSON and in the binary media type.<br>
+ * The body sizes of both are printed on setup.<br>
+ * Run: mvn -P benchmark test -Dbenchmark=CodecBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+
+    @Param({"3", "7", "15"})
+    public int dimension;
+
+    private Game game;
+    private byte[] json;
+    private byte[] binary;
+
+    @Setup
+    public void setUp() throws Exception {
+        Random random = new Random(dimension);
+        game = new Game(dimension);
+        int[][] grid = game.getGrid();
+        for (int i=0; i<dimension; i++) {
+            for (int j=0; j<dimension; j++) {
+                grid[i][j] = random.nextInt(3);
+            }
+        }
+        game.setGrid(grid);
+        game.setStatus(Game.Status.PLAYING);
+
+        json = JsonCodec.GAME_WRITER.writeValueAsBytes(game);
+        binary = encode();
+        System.out.println("\n" + dimension + "x" + dimension + ": JSON " + json.length
+                + " bytes, binary " + binary.length + " bytes");
+    }
+
+    @Benchmark
+    public byte[] encodeJson() throws Exception {
+        return JsonCodec.GAME_WRITER.writeValueAsBytes(game);
+    }
+
+    @Benchmark
+    public Game decodeJson() throws Exception {
+        return JsonCodec.GAME_READER.readValue(json);
+    }
+
+    @Benchmark
+    public byte[] encodeBinary() {
+        return encode();
+    }
+
+    @Benchmark
+    public Game decodeBinary() throws Exception {
+        return GameSnapshot.readGame(ByteBuffer.wrap(binary));
+    }
+
+    private byte[] encode() {
+        ByteBuffer buffer = ByteBuffer.allocate(GameSnapshot.sizeOf(game));
+        GameSnapshot.writeGame(buffer, game);
+        return buffer.array();
+    }
+}
@@ -0,0 +1,89 @@
+package com.jackychu.app.tictactoe;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of the Game methods used by every update: winner and full checks, validate against the next game,
+ * and JSON conversion, on a half filled board of dimension 3 to 15 without a winner.<br>
+ * The gc profiler of the benchmark profile reports the bytes allocated per call (gc.alloc.rate.norm).<br>
+ * Run: mvn -P benchmark test -Dbenchmark=GameBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameBenchmark {
+
+    @Param({"3", "5", "7", "9", "11", "13", "15"})
+    public int dimension;
+
+    private Game game;
+    private Game next;
+    private String json;
+
+    @Setup
+    public void setUp() throws Exception {
+        Random random = new Random(dimension);
+        game = new Game(dimension);
+        game.setId("benchmark");
+        game.setStatus(Game.Status.PLAYING);
+        int player = 1;
+        for (int placed=0; placed<dimension * dimension / 2; ) {
+            int row = random.nextInt(dimension), col = random.nextInt(dimension);
+            if (game.board().get(row, col) != 0 || game.copy().place(row, col, player) != 0) continue;
+            game.place(row, col, player);
+            player = 3 - player;
+            placed++;
+        }
+
+        next = game.copy();
+        for (int cell=0; ; cell++) {
+            if (next.board().get(cell / dimension, cell % dimension) == 0) {
+                next.place(cell / dimension, cell % dimension, player);
+                break;
+            }
+        }
+        json = game.toJson();
+        if (!game.validate(next)) throw new IllegalStateException("Next game is invalidate");
+    }
+
+    @Benchmark
+    public int checkWinner() {
+        return game.checkWinner();
+    }
+
+    @Benchmark
+    public boolean checkFull() {
+        return game.checkFull();
+    }
+
+    @Benchmark
+    public boolean validate() {
+        return game.validate(next);
+    }
+
+    @Benchmark
+    public String toJson() throws Exception {
+        return game.toJson();
+    }
+
+    @Benchmark
+    public Game fromJson() throws Exception {
+        return Game.fromJson(json);
+    }
+}
@@ -0,0 +1,179 @@
+package com.jackychu.app.tictactoe;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.lang.annotation.Annotation;
+import java.nio.ByteBuffer;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import javax.ws.rs.BadRequestException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test GameBinaryProvider class
+ */
+public class GameBinaryProviderTest {
+
+    private final GameBinaryProvider provider = new GameBinaryProvider();
+
+    private byte[] write(Object entity) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        provider.writeTo(entity, entity.getClass(), entity.getClass(), new Annotation[0],
+                GameBinaryProvider.APPLICATION_GAME_TYPE, null, out);
+        return out.toByteArray();
+    }
+
+    private Game read(byte[] bytes) throws Exception {
+        return provider.readFrom(Game.class, Game.class, new Annotation[0],
+                GameBinaryProvider.APPLICATION_GAME_TYPE, null, new ByteArrayInputStream(bytes));
+    }
+
+    /**
+     * Build a game of dimension with some random moves
+     */
+    private Game randomGame(int dimension, Random random) {
+        Game g = new Game(dimension);
+        int[][] grid = g.getGrid();
+        for (int i=0; i<dimension; i++) {
+            for (int j=0; j<dimension; j++) {
+                grid[i][j] = random.nextInt(3);
+            }
+        }
+        g.setGrid(grid);
+        g.setStatus(Game.Status.PLAYING);
+        g.setVersion(random.nextInt(100));
+        return g;
+    }
+
+    /**
+     * Test binary and JSON give the same game for all board sizes, and binary is smaller
+     * @throws Exception convert error
+     */
+    @Test
+    public void testRoundTrip() throws Exception {
+        Random random = new Random(7);
+        for (int d=3; d<=15; d++) {
+            Game g = randomGame(d, random);
+            byte[] bytes = write(g);
+            Game binary = read(bytes);
+            Game json = Game.fromJson(g.toJson());
+
+            assertEquals(g.toJson(), binary.toJson());
+            assertEquals(json.toJson(), binary.toJson());
+            assertEquals(g.getVersion(), binary.getVersion());
+            assertTrue("Binary should be smaller than JSON for " + d + "x" + d,
+                    bytes.length < g.toJson().length());
+        }
+    }
+
+    /**
+     * Test a map of games is a count and the games
+     * @throws Exception convert error
+     */
+    @Test
+    public void testMap() throws Exception {
+        Map<String, Game> games = new LinkedHashMap<>();
+        Game one = new Game(), two = new Game(9);
+        games.put(one.getId(), one);
+        games.put(two.getId(), two);
+
+        byte[] bytes = write(games);
+        assertEquals(4 + GameSnapshot.sizeOf(one) + GameSnapshot.sizeOf(two), bytes.length);
+    }
+
+    /**
+     * Test a truncated body is a bad request
+     * @throws Exception convert error
+     */
+    @Test
+    public void testTruncated() throws Exception {
+        byte[] bytes = write(new Game());
+        byte[] part = new byte[bytes.length - 1];
+        System.arraycopy(bytes, 0, part, 0, part.length);
+        try {
+            read(part);
+            fail("Truncated game should not be read");
+        } catch (BadRequestException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Header of a game with the board dimension, win length and no board
+     */
+    private static byte[] header(int dimension, int winLength) {
+        ByteBuffer buffer = ByteBuffer.allocate(26);
+        buffer.put((byte) 0).putShort((short) 1).put((byte) 'x');
+        buffer.putShort((short) winLength).putShort((short) dimension);
+        buffer.put((byte) 0).put((byte) 0).putLong(0).putLong(0);
+        return buffer.array();
+    }
+
+    /**
+     * Test a forged header is a bad request before the board is allocated
+     * @throws Exception convert error
+     */
+    @Test
+    public void testForgedHeader() throws Exception {
+        int[][] headers = { {32000, 3}, {Game.MAX_DIMENSION + 1, 3}, {2, 2}, {3, 4}, {3, 2}, {-1, 3}, {Game.MAX_DIMENSION, 3} };
+        for (int[] h : headers) {
+            try {
+                read(header(h[0], h[1]));
+                fail("Forged header should not be read: " + h[0] + "x" + h[0] + ", k=" + h[1]);
+            } catch (BadRequestException e) {
+                // expected
+            }
+        }
+    }
+
+    /**
+     * Test a board with a mark above the last cell, or a cell of both players, is a bad request
+     * @throws Exception convert error
+     */
+    @Test
+    public void testForgedBoard() throws Exception {
+        byte[] bytes = write(new Game());
+        // The board is the last 16 bytes: the long of player 1, then the long of player 2
+        int one = bytes.length - 16, two = bytes.length - 8;
+
+        byte[] padding = bytes.clone();
+        ByteBuffer.wrap(padding).putLong(one, 1L << 40);
+        byte[] both = bytes.clone();
+        ByteBuffer.wrap(both).putLong(one, 1L << 4).putLong(two, 1L << 4);
+        for (byte[] forged : new byte[][]{padding, both}) {
+            try {
+                read(forged);
+                fail("Forged board should not be read");
+            } catch (BadRequestException e) {
+                // expected
+            }
+        }
+
+        byte[] move = bytes.clone();
+        ByteBuffer.wrap(move).putLong(one, 1L << 4);
+        assertEquals(1, read(move).getGrid()[1][1]);
+    }
+
+    /**
+     * Test a body with more bytes than the game is a bad request
+     * @throws Exception convert error
+     */
+    @Test
+    public void testTrailingBytes() throws Exception {
+        byte[] bytes = write(new Game());
+        byte[] more = new byte[bytes.length + 1];
+        System.arraycopy(bytes, 0, more, 0, bytes.length);
+        try {
+            read(more);
+            fail("Game with trailing bytes should not be read");
+        } catch (BadRequestException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,351 @@
+package com.jackychu.app.tictactoe;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test GameEvents and PublishingGameStore classes
+ */
+public class GameEventsTest {
+
+    private GameEvents events;
+    private GameStore store;
+
+    @Before
+    public void setUp() {
+        events = new GameEvents(4, 2);
+        store = new PublishingGameStore(new InMemoryGameStore(), events);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        store.close();
+    }
+
+    /**
+     * Sink which keeps the events, and waits for a latch before each write
+     */
+    private static class QueueSink implements GameEvents.Sink {
+        final BlockingQueue<Object[]> received = new LinkedBlockingQueue<>();
+        final CountDownLatch open;
+
+        QueueSink(CountDownLatch open) {
+            this.open = open;
+        }
+
+        @Override
+        public void send(String name, Object data) throws IOException {
+            try {
+                open.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            received.add(new Object[]{name, data});
+        }
+
+        @Override
+        public void heartbeat() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Play one move through the store
+     */
+    private Game play(String id, int row, int col, int player) {
+        Game current = store.get(id);
+        Game next = current.copy();
+        next.play(new Move(row, col, player));
+        assertTrue(store.replace(current, next));
+        return next;
+    }
+
+    /**
+     * Test an accepted move is pushed as the changed cell
+     * @throws Exception interrupted
+     */
+    @Test
+    public void testPublishMove() throws Exception {
+        Game g = new Game();
+        store.put(g);
+        QueueSink sink = new QueueSink(new CountDownLatch(0));
+        events.subscribe(Collections.singleton(g.getId()), sink);
+        assertEquals(1, events.getSubscribers());
+
+        Game next = play(g.getId(), 1, 2, 1);
+        Object[] event = sink.received.poll(5, TimeUnit.SECONDS);
+        assertNotNull(event);
+        assertEquals(GameEvents.MOVE, event[0]);
+        GameEvent change = (GameEvent) event[1];
+        assertEquals(g.getId(), change.getId());
+        assertEquals(next.getVersion(), change.getVersion());
+        assertEquals(g.getVersion(), change.getPreviousVersion());
+        assertEquals(1, change.getMoves().size());
+        assertEquals(1, change.getMoves().get(0).getRow());
+        assertEquals(2, change.getMoves().get(0).getCol());
+        assertEquals(Game.Status.PLAYING, change.getStatus());
+
+        store.remove(g.getId());
+        event = sink.received.poll(5, TimeUnit.SECONDS);
+        assertNotNull(event);
+        assertEquals(GameEvents.DELETE, event[0]);
+        assertEquals(g.getId(), event[1]);
+    }
+
+    /**
+     * Test a slow subscriber drops changes and gets the full game instead
+     * @throws Exception interrupted
+     */
+    @Test
+    public void testSlowSubscriber() throws Exception {
+        Game g = new Game(5);
+        store.put(g);
+        CountDownLatch open = new CountDownLatch(1);
+        QueueSink sink = new QueueSink(open);
+        events.subscribe(Collections.singleton(g.getId()), sink);
+
+        Game last = null;
+        for (int i=0; i<20; i++) {
+            last = play(g.getId(), i / 5, i % 5, i % 2 + 1);
+        }
+        assertTrue("Changes should be dropped", events.getDropped() > 0);
+
+        open.countDown();
+        // The client rebuilds the game from the last full game and the changes after it
+        int[][] grid = null;
+        long version = -1;
+        Object[] event;
+        while ((event = sink.received.poll(1, TimeUnit.SECONDS)) != null) {
+            if (GameEvents.RESYNC.equals(event[0])) {
+                Game full = (Game) event[1];
+                grid = full.getGrid();
+                version = full.getVersion();
+            } else if (grid != null && ((GameEvent) event[1]).getVersion() > version) {
+                GameEvent change = (GameEvent) event[1];
+                for (Move m : change.getMoves()) {
+                    grid[m.getRow()][m.getCol()] = m.getPlayer();
+                }
+                version = change.getVersion();
+            }
+        }
+        assertNotNull("Full game should be sent", grid);
+        assertEquals(last.getVersion(), version);
+        assertArrayEquals(last.getGrid(), grid);
+        assertTrue(events.getSent() < 20);
+    }
+
+    /**
+     * Test a slow subscriber is told a game was deleted while its events were dropped
+     * @throws Exception interrupted
+     */
+    @Test
+    public void testResyncDelete() throws Exception {
+        Game g = new Game(5);
+        store.put(g);
+        CountDownLatch open = new CountDownLatch(1);
+        QueueSink sink = new QueueSink(open);
+        events.subscribe(Collections.singleton(g.getId()), sink);
+
+        for (int i=0; i<10; i++) {
+            play(g.getId(), i / 5, i % 5, i % 2 + 1);
+        }
+        store.remove(g.getId());
+        for (int i=0; i<10; i++) {
+            events.publish(g, g);
+        }
+        assertTrue("Changes should be dropped", events.getDropped() > 0);
+
+        open.countDown();
+        boolean deleted = false;
+        Object[] event;
+        while ((event = sink.received.poll(1, TimeUnit.SECONDS)) != null) {
+            if (GameEvents.DELETE.equals(event[0])) {
+                assertEquals(g.getId(), event[1]);
+                deleted = true;
+            }
+        }
+        assertTrue("Delete should be sent", deleted);
+    }
+
+    /**
+     * Test the changes of one game updated by many threads are published in version order
+     * @throws Exception interrupted
+     */
+    @Test
+    public void testPublishOrder() throws Exception {
+        final GameEvents ordered = new GameEvents(1024, 2);
+        final GameStore publishing = new PublishingGameStore(new InMemoryGameStore(), ordered);
+        final Game g = new Game(20);
+        publishing.put(g);
+        QueueSink sink = new QueueSink(new CountDownLatch(0));
+        ordered.subscribe(Collections.singleton(g.getId()), sink);
+
+        int threads = 4;
+        final int cells = 100;
+        Thread[] workers = new Thread[threads];
+        for (int t=0; t<threads; t++) {
+            final int first = t * cells;
+            workers[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i=first; i<first + cells; ) {
+                        Game current = publishing.get(g.getId());
+                        Game next = current.copy();
+                        next.play(new Move(i / 20, i % 20, i % 2 + 1));
+                        if (publishing.replace(current, next)) i++;
+                    }
+                }
+            });
+            workers[t].start();
+        }
+        for (Thread w : workers) {
+            w.join();
+        }
+
+        long version = g.getVersion();
+        for (int i=0; i<threads * cells; i++) {
+            Object[] event = sink.received.poll(5, TimeUnit.SECONDS);
+            assertNotNull(event);
+            GameEvent change = (GameEvent) event[1];
+            assertEquals(version, change.getPreviousVersion());
+            version = change.getVersion();
+        }
+        assertEquals(0, ordered.getDropped());
+        publishing.close();
+    }
+
+    /**
+     * Test a subscriber is removed when its client is gone
+     * @throws Exception interrupted
+     */
+    @Test
+    public void testClientGone() throws Exception {
+        Game g = new Game();
+        store.put(g);
+        final CountDownLatch failed = new CountDownLatch(1);
+        events.subscribe(Collections.singleton(g.getId()), new GameEvents.Sink() {
+            @Override
+            public void send(String name, Object data) throws IOException {
+                failed.countDown();
+                throw new IOException("Broken pipe");
+            }
+
+            @Override
+            public void heartbeat() {
+            }
+
+            @Override
+            public void close() {
+            }
+        });
+
+        play(g.getId(), 0, 0, 1);
+        assertTrue(failed.await(5, TimeUnit.SECONDS));
+        long deadline = System.currentTimeMillis() + 5000;
+        while (events.getSubscribers() != 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, events.getSubscribers());
+
+        // No subscriber, nothing is queued
+        play(g.getId(), 1, 1, 2);
+        assertEquals(0, events.getSent());
+    }
+
+    /**
+     * Test a subscriber of a game which never changes is removed by the heartbeat when its client is gone
+     * @throws Exception interrupted
+     */
+    @Test
+    public void testHeartbeat() throws Exception {
+        GameEvents beating = new GameEvents(4, 2, 20);
+        final CountDownLatch closed = new CountDownLatch(1);
+        beating.subscribe(Collections.singleton("idle"), new GameEvents.Sink() {
+            @Override
+            public void send(String name, Object data) {
+            }
+
+            @Override
+            public void heartbeat() throws IOException {
+                throw new IOException("Broken pipe");
+            }
+
+            @Override
+            public void close() {
+                closed.countDown();
+            }
+        });
+
+        assertTrue(closed.await(5, TimeUnit.SECONDS));
+        assertEquals(0, beating.getSubscribers());
+        beating.close();
+    }
+
+    /**
+     * Test a game evicted from the registry is published as deleted
+     * @throws Exception interrupted
+     */
+    @Test
+    public void testEviction() throws Exception {
+        GameRegistry registry = new GameRegistry(0, 1);
+        PublishingGameStore publishing = new PublishingGameStore(registry, events);
+        registry.addEvictionListener(publishing);
+        Game g = new Game();
+        publishing.put(g);
+        QueueSink sink = new QueueSink(new CountDownLatch(0));
+        events.subscribe(Collections.singleton(g.getId()), sink);
+
+        publishing.put(new Game());
+        Object[] event = sink.received.poll(5, TimeUnit.SECONDS);
+        assertNotNull(event);
+        assertEquals(GameEvents.DELETE, event[0]);
+        assertEquals(g.getId(), event[1]);
+        registry.close();
+    }
+
+    /**
+     * Test a waiter is called once for the next change, and not after cancel
+     * @throws Exception interrupted
+     */
+    @Test
+    public void testAwait() throws Exception {
+        Game g = new Game();
+        store.put(g);
+        final BlockingQueue<Game> changed = new LinkedBlockingQueue<>();
+        GameEvents.Waiter waiter = new GameEvents.Waiter() {
+            @Override
+            public void changed(Game game) {
+                changed.add(game);
+            }
+        };
+
+        events.await(g.getId(), waiter);
+        assertEquals(1, events.getWaiting());
+        Game next = play(g.getId(), 0, 0, 1);
+        play(g.getId(), 1, 1, 2);
+        assertEquals(next.toJson(), changed.poll(5, TimeUnit.SECONDS).toJson());
+        assertEquals(0, events.getWaiting());
+
+        events.await(g.getId(), waiter);
+        assertTrue(events.cancel(g.getId(), waiter));
+        play(g.getId(), 2, 2, 1);
+        Thread.sleep(100);
+        assertTrue(changed.isEmpty());
+    }
+}
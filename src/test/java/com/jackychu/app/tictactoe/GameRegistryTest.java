@@ -0,0 +1,126 @@
+package com.jackychu.app.tictactoe;
+
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test GameRegistry class
+ */
+public class GameRegistryTest {
+
+    private GameRegistry registry;
+
+    /**
+     * Stop the sweeper of registry
+     */
+    @After
+    public void tearDown() {
+        if (registry != null) {
+            registry.close();
+        }
+    }
+
+    /**
+     * Test idle games are removed by sweep, and games accessed recently are kept
+     */
+    @Test
+    public void testExpire() {
+        registry = new GameRegistry(60000, 100);
+        Game idle = new Game();
+        Game active = new Game();
+        registry.put(idle);
+        registry.put(active);
+
+        long now = System.currentTimeMillis();
+        registry.sweep(now + 30000);
+        assertEquals(2, registry.size());
+
+        registry.sweep(now + 60001);
+        assertNull(registry.get(idle.getId()));
+        assertNull(registry.get(active.getId()));
+        assertEquals(2, registry.getExpiredEvictions());
+    }
+
+    /**
+     * Test the oldest game not accessed is removed when over max size
+     */
+    @Test
+    public void testMaxSize() {
+        registry = new GameRegistry(0, 2);
+        Game first = new Game();
+        Game second = new Game();
+        Game third = new Game();
+        registry.put(first);
+        registry.put(second);
+
+        // first gets a second chance
+        registry.get(first.getId());
+        registry.put(third);
+
+        assertEquals(2, registry.size());
+        assertNotNull(registry.get(first.getId()));
+        assertNull(registry.get(second.getId()));
+        assertNotNull(registry.get(third.getId()));
+        assertEquals(1, registry.getSizeEvictions());
+    }
+
+    /**
+     * Test replace keeps the compare-and-set behavior of GameStore
+     */
+    @Test
+    public void testReplace() {
+        registry = new GameRegistry(0, 10);
+        Game g = new Game();
+        registry.put(g);
+
+        Game next = g.copy();
+        next.play(new Move(0, 0, 1));
+        assertEquals(true, registry.replace(g, next));
+        assertEquals(false, registry.replace(g, g.copy()));
+        assertEquals(1, registry.get(g.getId()).getVersion());
+    }
+
+    /**
+     * Test games are counted by status
+     */
+    @Test
+    public void testStatusCounts() {
+        registry = new GameRegistry(0, 100);
+        registry.put(new Game());
+        Game playing = new Game();
+        playing.play(new Move(0, 0, 1));
+        registry.put(playing);
+        Game end = new Game();
+        end.setStatus(Game.Status.END);
+        registry.put(end);
+        registry.put(new Game());
+
+        assertEquals(Integer.valueOf(2), registry.getStatusCounts().get(Game.Status.START));
+        assertEquals(Integer.valueOf(1), registry.getStatusCounts().get(Game.Status.PLAYING));
+        assertEquals(Integer.valueOf(1), registry.getStatusCounts().get(Game.Status.END));
+    }
+
+    /**
+     * Test create and delete churn without TTL doesn't grow the eviction order
+     */
+    @Test
+    public void testRemoveChurn() {
+        registry = new GameRegistry(0, 100000);
+        Game kept = new Game();
+        registry.put(kept);
+        for (int i=0; i<10000; i++) {
+            Game g = new Game();
+            registry.put(g);
+            assertNotNull(registry.remove(g.getId()));
+        }
+
+        assertEquals(1, registry.size());
+        assertTrue(registry.getOrderSize() <= 1026);
+        assertNotNull(registry.get(kept.getId()));
+    }
+}
@@ -1,18 +1,30 @@
 package com.jackychu.app.tictactoe;
 
 import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.jersey.media.sse.EventInput;
+import org.glassfish.jersey.media.sse.InboundEvent;
+import org.glassfish.jersey.media.sse.SseFeature;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
 import javax.ws.rs.client.*;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.GenericType;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.NewCookie;
 import javax.ws.rs.core.Response;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 public class GameResourceTest {
 
@@ -301,4 +313,519 @@ public class GameResourceTest {
         res = invocationBuilder.cookie(cookie).get();
         assertEquals("Should return status 404", 404, res.getStatus());
     }
+
+    /**
+     * Test move api. Only the move is sent and the result is the status after the move.
+     */
+    @Test
+    public void testMoveGame() {
+        //Create new Game
+        Invocation.Builder invocationBuilder = target.path("api/v1.0/game").request(MediaType.APPLICATION_JSON);
+        Response res = invocationBuilder.cookie(cookie).post(Entity.text(""));
+        Game gameForTest = res.readEntity(Game.class);
+
+        int[][] moves = {{0, 0, 1}, {1, 1, 2}, {0, 1, 1}, {2, 2, 2}, {0, 2, 1}};
+        MoveResult result = null;
+        for (int[] move : moves) {
+            invocationBuilder = target.path("api/v1.0/game/" + gameForTest.getId() + "/moves").request(MediaType.APPLICATION_JSON);
+            res = invocationBuilder.cookie(cookie).post(Entity.json(new Move(move[0], move[1], move[2])));
+            assertEquals("Should return status 200", 200, res.getStatus());
+            result = res.readEntity(MoveResult.class);
+        }
+        assertEquals(gameForTest.getId(), result.getId());
+        assertEquals(1, result.getWinner());
+        assertEquals(Game.Status.END, result.getStatus());
+
+        invocationBuilder = target.path("api/v1.0/game/" + gameForTest.getId()).request(MediaType.APPLICATION_JSON);
+        res = invocationBuilder.cookie(cookie).get();
+        Game g = res.readEntity(Game.class);
+        assertEquals(1, g.getGrid()[0][2]);
+        assertEquals(Game.Status.END, g.getStatus());
+    }
+
+    /**
+     * Test move api with invalid move. The cell is already placed.
+     */
+    @Test
+    public void testMoveGameInvalid() {
+        //Create new Game
+        Invocation.Builder invocationBuilder = target.path("api/v1.0/game").request(MediaType.APPLICATION_JSON);
+        Response res = invocationBuilder.cookie(cookie).post(Entity.text(""));
+        Game gameForTest = res.readEntity(Game.class);
+
+        invocationBuilder = target.path("api/v1.0/game/" + gameForTest.getId() + "/moves").request(MediaType.APPLICATION_JSON);
+        res = invocationBuilder.cookie(cookie).post(Entity.json(new Move(1, 1, 1)));
+        assertEquals("Should return status 200", 200, res.getStatus());
+
+        invocationBuilder = target.path("api/v1.0/game/" + gameForTest.getId() + "/moves").request(MediaType.APPLICATION_JSON);
+        res = invocationBuilder.cookie(cookie).post(Entity.json(new Move(1, 1, 2)));
+        assertEquals("Should return status 500", 500, res.getStatus());
+    }
+
+    /**
+     * Test batch move api. Moves of a valid game are placed.
+     * The game with an invalid move keeps its old status.
+     */
+    @Test
+    public void testMoveGames() {
+        //Create new Game 1 and 2
+        Invocation.Builder invocationBuilder = target.path("api/v1.0/game").request(MediaType.APPLICATION_JSON);
+        Game game1 = invocationBuilder.cookie(cookie).post(Entity.text("")).readEntity(Game.class);
+        invocationBuilder = target.path("api/v1.0/game").request(MediaType.APPLICATION_JSON);
+        Game game2 = invocationBuilder.cookie(cookie).post(Entity.text("")).readEntity(Game.class);
+
+        List<Move> moves = new ArrayList<>();
+        int[][] cells = {{0, 0, 1}, {1, 1, 2}, {0, 1, 1}};
+        for (int[] cell : cells) {
+            Move move = new Move(cell[0], cell[1], cell[2]);
+            move.setId(game1.getId());
+            moves.add(move);
+
+            // Player 1 moves twice on game 2
+            move = new Move(cell[0], cell[1], 1);
+            move.setId(game2.getId());
+            moves.add(move);
+        }
+
+        invocationBuilder = target.path("api/v1.0/game/moves").request(MediaType.APPLICATION_JSON);
+        Response res = invocationBuilder.cookie(cookie).post(Entity.json(moves));
+        assertEquals("Should return status 200", 200, res.getStatus());
+        List<MoveResult> results = res.readEntity(new GenericType<List<MoveResult>>() {});
+        assertEquals(moves.size(), results.size());
+        for (int i=0; i<results.size(); i++) {
+            assertEquals(moves.get(i).getId(), results.get(i).getId());
+            assertEquals(moves.get(i).getId().equals(game1.getId()), results.get(i).isAccepted());
+        }
+        assertEquals(Game.Status.PLAYING, results.get(4).getStatus());
+
+        invocationBuilder = target.path("api/v1.0/game/" + game1.getId()).request(MediaType.APPLICATION_JSON);
+        Game g = invocationBuilder.cookie(cookie).get().readEntity(Game.class);
+        assertEquals(1, g.getGrid()[0][1]);
+
+        invocationBuilder = target.path("api/v1.0/game/" + game2.getId()).request(MediaType.APPLICATION_JSON);
+        g = invocationBuilder.cookie(cookie).get().readEntity(Game.class);
+        assertEquals(0, g.getGrid()[0][0]);
+        assertEquals(Game.Status.START, g.getStatus());
+    }
+
+    /**
+     * Test a null move of a batch is rejected by itself, and a batch over the max count is rejected
+     */
+    @Test
+    public void testMoveGamesInvalid() {
+        Game game = target.path("api/v1.0/game").request(MediaType.APPLICATION_JSON)
+                .post(Entity.text("")).readEntity(Game.class);
+
+        Response res = target.path("api/v1.0/game/moves").request(MediaType.APPLICATION_JSON)
+                .post(Entity.json("[null, {\"id\": \"" + game.getId() + "\", \"row\": 0, \"col\": 0, \"player\": 1}]"));
+        assertEquals("Should return status 200", 200, res.getStatus());
+        List<MoveResult> results = res.readEntity(new GenericType<List<MoveResult>>() {});
+        assertEquals(2, results.size());
+        assertFalse(results.get(0).isAccepted());
+        assertTrue(results.get(1).isAccepted());
+
+        List<Move> moves = new ArrayList<>();
+        for (int i=0; i<=GameResource.MAX_BATCH_MOVES; i++) {
+            Move move = new Move(0, 0, 1);
+            move.setId(game.getId());
+            moves.add(move);
+        }
+        res = target.path("api/v1.0/game/moves").request(MediaType.APPLICATION_JSON).post(Entity.json(moves));
+        assertEquals("Should return status 500", 500, res.getStatus());
+    }
+
+    /**
+     * Test a game can be played by id without session cookie
+     */
+    @Test
+    public void testPlayWithoutSession() {
+        Invocation.Builder invocationBuilder = target.path("api/v1.0/game").request(MediaType.APPLICATION_JSON);
+        Response res = invocationBuilder.post(Entity.text(""));
+        Game gameForTest = res.readEntity(Game.class);
+
+        invocationBuilder = target.path("api/v1.0/game/" + gameForTest.getId() + "/moves").request(MediaType.APPLICATION_JSON);
+        res = invocationBuilder.post(Entity.json(new Move(0, 0, 1)));
+        assertEquals("Should return status 200", 200, res.getStatus());
+
+        invocationBuilder = target.path("api/v1.0/game/" + gameForTest.getId()).request(MediaType.APPLICATION_JSON);
+        Game g = invocationBuilder.get().readEntity(Game.class);
+        assertEquals(1, g.getGrid()[0][0]);
+    }
+
+    /**
+     * Test create, update and get game in binary media type
+     */
+    @Test
+    public void testBinaryGame() {
+        WebTarget binary = target.register(GameBinaryProvider.class);
+        Invocation.Builder invocationBuilder = binary.path("api/v1.0/game").request(GameBinaryProvider.APPLICATION_GAME);
+        Response res = invocationBuilder.post(Entity.text(""));
+        assertEquals(GameBinaryProvider.APPLICATION_GAME_TYPE, res.getMediaType());
+        Game gameForTest = res.readEntity(Game.class);
+        assertEquals(Game.Status.START, gameForTest.getStatus());
+
+        int[][] grid = gameForTest.getGrid();
+        grid[1][1] = 1;
+        gameForTest.setGrid(grid);
+        invocationBuilder = binary.path("api/v1.0/game/" + gameForTest.getId()).request(GameBinaryProvider.APPLICATION_GAME);
+        res = invocationBuilder.put(Entity.entity(gameForTest, GameBinaryProvider.APPLICATION_GAME));
+        assertEquals("Should return status 200", 200, res.getStatus());
+        assertEquals(Game.Status.PLAYING, res.readEntity(Game.class).getStatus());
+
+        // The same game in JSON
+        invocationBuilder = target.path("api/v1.0/game/" + gameForTest.getId()).request(MediaType.APPLICATION_JSON);
+        Game g = invocationBuilder.get().readEntity(Game.class);
+        assertEquals(1, g.getGrid()[1][1]);
+
+        invocationBuilder = binary.path("api/v1.0/game/unknown").request(GameBinaryProvider.APPLICATION_GAME);
+        res = invocationBuilder.get();
+        assertEquals("Should return status 404", 404, res.getStatus());
+        assertEquals("Game not found for ID: unknown", res.readEntity(String.class));
+    }
+
+    /**
+     * Test a game read again with its ETag is 304 until the game changes
+     */
+    @Test
+    public void testETag() {
+        Game gameForTest = target.path("api/v1.0/game").request(MediaType.APPLICATION_JSON)
+                .post(Entity.text("")).readEntity(Game.class);
+        String path = "api/v1.0/game/" + gameForTest.getId();
+
+        Response res = target.path(path).request(MediaType.APPLICATION_JSON).get();
+        assertEquals(200, res.getStatus());
+        EntityTag tag = res.getEntityTag();
+        assertNotNull(tag);
+        assertFalse(tag.isWeak());
+        assertEquals(gameForTest.getId(), res.readEntity(Game.class).getId());
+
+        res = target.path(path).request(MediaType.APPLICATION_JSON).header(HttpHeaders.IF_NONE_MATCH, tag).get();
+        assertEquals("Should return status 304", 304, res.getStatus());
+        assertEquals(tag, res.getEntityTag());
+        assertFalse(res.hasEntity());
+
+        // The binary game has its own tag
+        res = target.register(GameBinaryProvider.class).path(path).request(GameBinaryProvider.APPLICATION_GAME)
+                .header(HttpHeaders.IF_NONE_MATCH, tag).get();
+        assertEquals(200, res.getStatus());
+        assertFalse(tag.equals(res.getEntityTag()));
+
+        // A move is a new version
+        target.path(path + "/moves").request(MediaType.APPLICATION_JSON).post(Entity.json(new Move(1, 1, 1)));
+        res = target.path(path).request(MediaType.APPLICATION_JSON).header(HttpHeaders.IF_NONE_MATCH, tag).get();
+        assertEquals(200, res.getStatus());
+        assertFalse(tag.equals(res.getEntityTag()));
+        assertEquals(1, res.readEntity(Game.class).getGrid()[1][1]);
+    }
+
+    /**
+     * Test games of the session read again with the ETag is 304 until a game is created or changed
+     */
+    @Test
+    public void testETagAll() {
+        String all = "api/v1.0/game/all";
+        Game gameForTest = target.path("api/v1.0/game").request(MediaType.APPLICATION_JSON).cookie(cookie)
+                .post(Entity.text("")).readEntity(Game.class);
+
+        Response res = target.path(all).request(MediaType.APPLICATION_JSON).cookie(cookie).get();
+        assertEquals(200, res.getStatus());
+        EntityTag tag = res.getEntityTag();
+        assertNotNull(tag);
+        Map<String, Game> games = res.readEntity(new GenericType<Map<String, Game>>() {});
+        assertEquals(1, games.size());
+        assertEquals(Game.Status.START, games.get(gameForTest.getId()).getStatus());
+
+        res = target.path(all).request(MediaType.APPLICATION_JSON).cookie(cookie).header(HttpHeaders.IF_NONE_MATCH, tag).get();
+        assertEquals("Should return status 304", 304, res.getStatus());
+
+        target.path("api/v1.0/game/" + gameForTest.getId() + "/moves").request(MediaType.APPLICATION_JSON)
+                .post(Entity.json(new Move(0, 0, 1)));
+        res = target.path(all).request(MediaType.APPLICATION_JSON).cookie(cookie).header(HttpHeaders.IF_NONE_MATCH, tag).get();
+        assertEquals(200, res.getStatus());
+        EntityTag moved = res.getEntityTag();
+        assertFalse(tag.equals(moved));
+
+        target.path("api/v1.0/game").request(MediaType.APPLICATION_JSON).cookie(cookie).post(Entity.text(""));
+        res = target.path(all).request(MediaType.APPLICATION_JSON).cookie(cookie).header(HttpHeaders.IF_NONE_MATCH, moved).get();
+        assertEquals(200, res.getStatus());
+        assertEquals(2, res.readEntity(Map.class).size());
+    }
+
+    /**
+     * Test an accepted move is pushed to the subscriber of game
+     */
+    @Test
+    public void testSubscribeEvents() {
+        Invocation.Builder invocationBuilder = target.path("api/v1.0/game").request(MediaType.APPLICATION_JSON);
+        Game gameForTest = invocationBuilder.post(Entity.text("")).readEntity(Game.class);
+
+        WebTarget events = target.register(SseFeature.class).path("api/v1.0/game/events").queryParam("id", gameForTest.getId());
+        EventInput input = events.request(SseFeature.SERVER_SENT_EVENTS_TYPE).get(EventInput.class);
+        try {
+            invocationBuilder = target.path("api/v1.0/game/" + gameForTest.getId() + "/moves").request(MediaType.APPLICATION_JSON);
+            Response res = invocationBuilder.post(Entity.json(new Move(2, 0, 1)));
+            assertEquals("Should return status 200", 200, res.getStatus());
+
+            InboundEvent event = input.read();
+            assertEquals(GameEvents.MOVE, event.getName());
+            GameEvent change = event.readData(GameEvent.class, MediaType.APPLICATION_JSON_TYPE);
+            assertEquals(gameForTest.getId(), change.getId());
+            assertEquals(1, change.getMoves().size());
+            assertEquals(2, change.getMoves().get(0).getRow());
+            assertEquals(Game.Status.PLAYING, change.getStatus());
+        } finally {
+            input.close();
+        }
+
+        Response res = target.path("api/v1.0/game/events").queryParam("id", "unknown").request().get();
+        assertEquals("Should return status 404", 404, res.getStatus());
+    }
+
+    /**
+     * Test long poll returns the game after the next move, or no content on timeout
+     * @throws Exception interrupted or timeout
+     */
+    @Test
+    public void testNextGame() throws Exception {
+        Invocation.Builder invocationBuilder = target.path("api/v1.0/game").request(MediaType.APPLICATION_JSON);
+        Game gameForTest = invocationBuilder.post(Entity.text("")).readEntity(Game.class);
+        WebTarget next = target.path("api/v1.0/game/" + gameForTest.getId() + "/next");
+
+        // Already newer
+        Response res = next.queryParam("since", 0).request(MediaType.APPLICATION_JSON).get();
+        assertEquals("Should return status 200", 200, res.getStatus());
+
+        // Nothing happens
+        res = next.queryParam("since", gameForTest.getLastUpdateTime()).queryParam("timeout", 1)
+                .request(MediaType.APPLICATION_JSON).get();
+        assertEquals("Should return status 204", 204, res.getStatus());
+
+        // Wait, then the opponent moves
+        Future<Response> waiting = next.queryParam("since", gameForTest.getLastUpdateTime())
+                .request(MediaType.APPLICATION_JSON).async().get();
+        Thread.sleep(200);
+        invocationBuilder = target.path("api/v1.0/game/" + gameForTest.getId() + "/moves").request(MediaType.APPLICATION_JSON);
+        assertEquals(200, invocationBuilder.post(Entity.json(new Move(0, 2, 1))).getStatus());
+
+        res = waiting.get(5, TimeUnit.SECONDS);
+        assertEquals("Should return status 200", 200, res.getStatus());
+        Game g = res.readEntity(Game.class);
+        assertEquals(1, g.getGrid()[0][2]);
+    }
+
+    /**
+     * Test the computer player places a move for the player to move
+     */
+    @Test
+    public void testAiMove() {
+        Invocation.Builder invocationBuilder = target.path("api/v1.0/game").request(MediaType.APPLICATION_JSON);
+        Game gameForTest = invocationBuilder.post(Entity.text("")).readEntity(Game.class);
+
+        invocationBuilder = target.path("api/v1.0/game/" + gameForTest.getId() + "/ai-move").request(MediaType.APPLICATION_JSON);
+        Response res = invocationBuilder.post(Entity.text(""));
+        assertEquals("Should return status 200", 200, res.getStatus());
+        AiMoveResult result = res.readEntity(AiMoveResult.class);
+        assertEquals(1, result.getPlayer());
+        assertEquals(Game.Status.PLAYING, result.getStatus());
+        assertEquals(9, result.getSearch().getDepth());
+
+        invocationBuilder = target.path("api/v1.0/game/" + gameForTest.getId()).request(MediaType.APPLICATION_JSON);
+        Game g = invocationBuilder.get().readEntity(Game.class);
+        assertEquals(1, g.getGrid()[result.getRow()][result.getCol()]);
+    }
+
+    /**
+     * Test the computer player of a large board uses Monte Carlo tree search
+     */
+    @Test
+    public void testAiMoveMcts() {
+        Game gameForTest = target.path("api/v1.0/game").queryParam("dimension", 9).queryParam("winLength", 5)
+                .request(MediaType.APPLICATION_JSON).post(Entity.text("")).readEntity(Game.class);
+        String path = "api/v1.0/game/" + gameForTest.getId() + "/ai-move";
+
+        Response res = target.path(path).queryParam("millis", 100).request(MediaType.APPLICATION_JSON).post(Entity.text(""));
+        assertEquals("Should return status 200", 200, res.getStatus());
+        AiMoveResult result = res.readEntity(AiMoveResult.class);
+        assertEquals(4, result.getRow());
+        assertEquals(4, result.getCol());
+        assertFalse(result.getSearch().isComplete());
+        assertTrue(result.getSearch().getNodes() > 0);
+
+        res = target.path(path).queryParam("millis", 100).queryParam("engine", "alphabeta")
+                .request(MediaType.APPLICATION_JSON).post(Entity.text(""));
+        assertEquals("Should return status 200", 200, res.getStatus());
+        assertEquals(2, res.readEntity(AiMoveResult.class).getPlayer());
+
+        res = target.path(path).queryParam("engine", "random").request(MediaType.APPLICATION_JSON).post(Entity.text(""));
+        assertEquals("Should return status 500", 500, res.getStatus());
+    }
+
+    /**
+     * Test an ai move is rejected when the server runs its max count of searches
+     */
+    @Test
+    public void testAiMoveBusy() {
+        Game gameForTest = target.path("api/v1.0/game").queryParam("dimension", 4)
+                .request(MediaType.APPLICATION_JSON).post(Entity.text("")).readEntity(Game.class);
+        String path = "api/v1.0/game/" + gameForTest.getId();
+
+        int permits = GameResource.SEARCHES.drainPermits();
+        try {
+            Response res = target.path(path + "/ai-move").request(MediaType.APPLICATION_JSON).post(Entity.text(""));
+            assertEquals("Should return status 503", 503, res.getStatus());
+            assertEquals("1", res.getHeaderString(HttpHeaders.RETRY_AFTER));
+            res = target.path(path + "/hint").request(MediaType.APPLICATION_JSON).get();
+            assertEquals("Should return status 503", 503, res.getStatus());
+        } finally {
+            GameResource.SEARCHES.release(permits);
+        }
+        Response res = target.path(path + "/ai-move").queryParam("millis", 10)
+                .request(MediaType.APPLICATION_JSON).post(Entity.text(""));
+        assertEquals("Should return status 200", 200, res.getStatus());
+    }
+
+    /**
+     * Test an ai move is not placed when the game is changed while searching
+     * @throws Exception interrupted
+     */
+    @Test
+    public void testAiMoveConflict() throws Exception {
+        Game gameForTest = target.path("api/v1.0/game").queryParam("dimension", 9).queryParam("winLength", 5)
+                .request(MediaType.APPLICATION_JSON).post(Entity.text("")).readEntity(Game.class);
+        final String path = "api/v1.0/game/" + gameForTest.getId();
+
+        final Response[] ai = new Response[1];
+        Thread search = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                ai[0] = target.path(path + "/ai-move").queryParam("millis", 2000).queryParam("maxNodes", 50000000)
+                        .request(MediaType.APPLICATION_JSON).post(Entity.text(""));
+            }
+        });
+        search.start();
+        Thread.sleep(500);
+        Response res = target.path(path + "/moves").request(MediaType.APPLICATION_JSON).post(Entity.json(new Move(0, 0, 1)));
+        assertEquals("Should return status 200", 200, res.getStatus());
+        search.join();
+        assertEquals("Should return status 409", 409, ai[0].getStatus());
+
+        Game g = target.path(path).request(MediaType.APPLICATION_JSON).get().readEntity(Game.class);
+        assertEquals(1, g.getGrid()[0][0]);
+        int placed = 0;
+        for (int[] row : g.getGrid()) {
+            for (int cell : row) {
+                if (cell != 0) placed++;
+            }
+        }
+        assertEquals(1, placed);
+    }
+
+    /**
+     * Test requests and rejected games are counted in the metrics
+     */
+    @Test
+    public void testMetrics() {
+        Game gameForTest = target.path("api/v1.0/game").request(MediaType.APPLICATION_JSON)
+                .post(Entity.text("")).readEntity(Game.class);
+        target.path("api/v1.0/game/not-exist").request(MediaType.APPLICATION_JSON).get();
+        target.path("api/v1.0/game/" + gameForTest.getId()).request(MediaType.APPLICATION_JSON).put(Entity.json(gameForTest));
+
+        Response res = target.path("metrics").request().get();
+        assertEquals("Should return status 200", 200, res.getStatus());
+        assertTrue(res.getMediaType().toString().startsWith("text/plain"));
+        String text = res.readEntity(String.class);
+        assertTrue(text.contains("tictactoe_http_requests_total{endpoint=\"createGame\",status=\"200\"}"));
+        assertTrue(text.contains("tictactoe_http_requests_total{endpoint=\"getGame\",status=\"404\"}"));
+        assertTrue(text.contains("tictactoe_http_request_duration_seconds_bucket{endpoint=\"updateGame\",le=\"+Inf\"}"));
+        assertTrue(text.contains("tictactoe_invalid_requests_total{endpoint=\"updateGame\"}"));
+        assertTrue(text.contains("tictactoe_games{status=\"START\"}"));
+        assertTrue(text.contains("tictactoe_games_evicted_total{reason=\"ttl\"} 0"));
+        assertTrue(text.contains("tictactoe_mcts_playouts_total"));
+    }
+
+    /**
+     * Test the training run of the class data sharing archive calls every endpoint without error
+     * and deletes its games
+     */
+    @Test
+    public void testTrain() throws Exception {
+        Training.train(Main.BASE_URI.replace("0.0.0.0", "localhost"));
+        String text = target.path("metrics").request().get().readEntity(String.class);
+        assertTrue(text.contains("tictactoe_http_requests_total{endpoint=\"deleteGame\",status=\"200\"} 2"));
+    }
+
+    /**
+     * Test hint of a 3x3 game from the perfect play table
+     */
+    @Test
+    public void testHint() {
+        Invocation.Builder invocationBuilder = target.path("api/v1.0/game").request(MediaType.APPLICATION_JSON);
+        Game gameForTest = invocationBuilder.post(Entity.text("")).readEntity(Game.class);
+        String path = "api/v1.0/game/" + gameForTest.getId();
+
+        Response res = target.path(path + "/hint").request(MediaType.APPLICATION_JSON).get();
+        assertEquals("Should return status 200", 200, res.getStatus());
+        HintResult hint = res.readEntity(HintResult.class);
+        assertEquals(1, hint.getMove().getPlayer());
+        assertEquals(0, hint.getWinner());
+        assertFalse(hint.isDecided());
+        assertTrue(hint.isExact());
+
+        // Player 2 loses after playing next to the first mark
+        target.path(path + "/moves").request(MediaType.APPLICATION_JSON).post(Entity.json(new Move(1, 1, 1)));
+        target.path(path + "/moves").request(MediaType.APPLICATION_JSON).post(Entity.json(new Move(0, 1, 2)));
+        hint = target.path(path + "/hint").request(MediaType.APPLICATION_JSON).get().readEntity(HintResult.class);
+        assertEquals(1, hint.getWinner());
+        assertTrue(hint.isDecided());
+        assertEquals(1, hint.getMove().getPlayer());
+
+        res = target.path("api/v1.0/game/not-exist/hint").request(MediaType.APPLICATION_JSON).get();
+        assertEquals("Should return status 404", 404, res.getStatus());
+    }
+
+    /**
+     * Test hint of a large game from Monte Carlo tree search
+     */
+    @Test
+    public void testHintLargeBoard() {
+        Game g = target.path("api/v1.0/game").queryParam("dimension", Game.MAX_DIMENSION)
+                .request(MediaType.APPLICATION_JSON).post(Entity.text("")).readEntity(Game.class);
+
+        long start = System.currentTimeMillis();
+        Response res = target.path("api/v1.0/game/" + g.getId() + "/hint").request(MediaType.APPLICATION_JSON).get();
+        assertTrue(System.currentTimeMillis() - start < 2 * AlphaBetaEngine.DEFAULT_MAX_MILLIS + 1000);
+        assertEquals("Should return status 200", 200, res.getStatus());
+        HintResult hint = res.readEntity(HintResult.class);
+        assertEquals(1, hint.getMove().getPlayer());
+        assertFalse(hint.isExact());
+        assertFalse(hint.isDecided());
+    }
+
+    /**
+     * Test create game with dimension and win length
+     */
+    @Test
+    public void testCreateWinLength() {
+        Response res = target.path("api/v1.0/game").queryParam("dimension", 9).queryParam("winLength", 5)
+                .request(MediaType.APPLICATION_JSON).post(Entity.text(""));
+        assertEquals("Should return status 200", 200, res.getStatus());
+        Game g = res.readEntity(Game.class);
+        assertEquals(9, g.getDimension());
+        assertEquals(5, g.getWinLength());
+        assertEquals(9, g.getGrid().length);
+
+        res = target.path("api/v1.0/game/" + g.getId()).request(MediaType.APPLICATION_JSON).get();
+        assertEquals(5, res.readEntity(Game.class).getWinLength());
+
+        res = target.path("api/v1.0/game").queryParam("dimension", 5)
+                .request(MediaType.APPLICATION_JSON).post(Entity.text(""));
+        assertEquals(5, res.readEntity(Game.class).getWinLength());
+
+        res = target.path("api/v1.0/game").queryParam("dimension", 5).queryParam("winLength", 6)
+                .request(MediaType.APPLICATION_JSON).post(Entity.text(""));
+        assertEquals("Should return status 500", 500, res.getStatus());
+        res = target.path("api/v1.0/game").queryParam("dimension", Game.MAX_DIMENSION + 1)
+                .request(MediaType.APPLICATION_JSON).post(Entity.text(""));
+        assertEquals("Should return status 500", 500, res.getStatus());
+    }
 }
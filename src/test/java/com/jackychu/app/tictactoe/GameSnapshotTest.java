@@ -0,0 +1,140 @@
+package com.jackychu.app.tictactoe;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test GameSnapshot and SnapshotGameStore classes
+ */
+public class GameSnapshotTest {
+
+    private File file;
+
+    @Before
+    public void setUp() throws Exception {
+        file = File.createTempFile("games", ".snap");
+        file.delete();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        file.delete();
+    }
+
+    /**
+     * Test games of all board sizes are the same after write and read
+     * @throws Exception file error
+     */
+    @Test
+    public void testRoundTrip() throws Exception {
+        List<Game> games = new ArrayList<>();
+        for (int d : new int[]{3, 8, 9, 15}) {
+            Game g = new Game(d);
+            g.play(new Move(0, 0, 1));
+            g.play(new Move(d - 1, d - 1, 2));
+            g.setVersion(d);
+            games.add(g);
+        }
+        Game named = Game.restore("my-game", Board.create(3), Game.Status.END, 2, 123L, 7L);
+        games.add(named);
+        Game gomoku = new Game(15, 5);
+        gomoku.play(new Move(7, 7, 1));
+        games.add(gomoku);
+
+        long size = GameSnapshot.write(file, games);
+        assertEquals(file.length(), size);
+
+        List<Game> read = GameSnapshot.read(file);
+        assertEquals(games.size(), read.size());
+        for (int i=0; i<games.size(); i++) {
+            Game expected = games.get(i);
+            Game actual = read.get(i);
+            assertEquals(expected.toJson(), actual.toJson());
+            assertEquals(expected.getVersion(), actual.getVersion());
+        }
+    }
+
+    /**
+     * Test many games are written in the compact format
+     * @throws Exception file error
+     */
+    @Test
+    public void testManyGames() throws Exception {
+        int count = 200000;
+        List<Game> games = new ArrayList<>(count);
+        for (int i=0; i<count; i++) {
+            Game g = new Game();
+            g.play(new Move(i % 3, (i / 3) % 3, 1));
+            games.add(g);
+        }
+
+        long size = GameSnapshot.write(file, games);
+        assertEquals(16 + 55L * count, size);
+
+        List<Game> read = GameSnapshot.read(file);
+        assertEquals(count, read.size());
+        assertEquals(games.get(count - 1).toJson(), read.get(count - 1).toJson());
+    }
+
+    /**
+     * Test a truncated snapshot is not loaded
+     * @throws Exception file error
+     */
+    @Test
+    public void testTruncated() throws Exception {
+        List<Game> games = new ArrayList<>();
+        games.add(new Game());
+        games.add(new Game());
+        GameSnapshot.write(file, games);
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 1);
+        }
+        try {
+            GameSnapshot.read(file);
+            fail("Truncated snapshot should not be read");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    /**
+     * Test store saves games on close and loads them on start
+     * @throws Exception file error
+     */
+    @Test
+    public void testStoreRestart() throws Exception {
+        SnapshotGameStore store = new SnapshotGameStore(new InMemoryGameStore(), file);
+        assertEquals(0, store.getLoadedGames());
+
+        Game g = new Game();
+        store.put(g);
+        Game next = g.copy();
+        next.play(new Move(1, 1, 1));
+        assertTrue(store.replace(g, next));
+        store.put(new Game());
+        store.close();
+        assertTrue(store.getSnapshotBytes() > 0);
+
+        store = new SnapshotGameStore(new InMemoryGameStore(), file);
+        assertEquals(2, store.getLoadedGames());
+        assertEquals(2, store.size());
+        Game loaded = store.get(g.getId());
+        assertNotNull(loaded);
+        assertEquals(next.toJson(), loaded.toJson());
+        assertEquals(next.getVersion(), loaded.getVersion());
+        store.close();
+    }
+}
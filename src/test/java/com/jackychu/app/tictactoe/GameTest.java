@@ -5,6 +5,8 @@ import org.junit.Before;
 import org.junit.Test;
 import static org.junit.Assert.fail;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 /**
  * Test Game class
@@ -37,6 +39,80 @@ public class GameTest {
 	    }
     }
 
+    /**
+     * Test the JSON bytes of a stored game are the same as toJson, encoded once
+     * and not copied to a new version
+     */
+    @Test
+    public void testToJsonBytes() throws Exception {
+    	Game g = new Game();
+    	byte[] json = g.toJsonBytes();
+    	assertEquals(g.toJson(), new String(json, "UTF-8"));
+    	assertTrue(json == g.toJsonBytes());
+
+    	Game next = g.copy();
+    	next.place(1, 1, 1);
+    	assertEquals(next.toJson(), new String(next.toJsonBytes(), "UTF-8"));
+    	assertTrue(next.toJsonBytes() != json);
+    }
+
+    /**
+     * Test the kept JSON and the ETag change when only the winner of a game changes
+     * @throws Exception convert error
+     */
+    @Test
+    public void testWinnerChange() throws Exception {
+    	Board board = Board.create(3);
+    	board.set(0, 0, 1);
+    	board.set(0, 1, 1);
+    	board.set(0, 2, 1);
+    	board.set(1, 0, 2);
+    	board.set(1, 1, 2);
+    	for (int round=0; round<2; round++) {
+    		Game g = Game.restore("won", board.copy(), Game.Status.PLAYING, 0, 1000, 5);
+    		byte[] json = g.toJsonBytes();
+    		javax.ws.rs.core.EntityTag tag = GameResource.etag(g, false);
+    		assertTrue(new String(json, "UTF-8").contains("\"winner\":0"));
+
+    		assertEquals(1, round == 0 ? g.checkWinner() : g.incrementalWinner());
+    		assertTrue(g.toJsonBytes() != json);
+    		assertTrue(new String(g.toJsonBytes(), "UTF-8").contains("\"winner\":1"));
+    		assertTrue(!tag.equals(GameResource.etag(g, false)));
+    	}
+    }
+
+    /**
+     * Test a change written into the grid view is seen by the game
+     */
+    @Test
+    public void testGridView() throws Exception {
+    	Game g = new Game();
+    	int[][] grid = g.getGrid();
+    	assertTrue(grid == g.getGrid());
+    	String json = g.toJson();
+    	grid[1][1] = 1;
+    	assertEquals(1, g.board().get(1, 1));
+    	assertTrue(g.toJson().contains("[[0,0,0],[0,1,0],[0,0,0]]"));
+    	assertFalse(json.equals(g.toJson()));
+
+    	grid[0][0] = 2;
+    	grid[0][1] = 2;
+    	grid[0][2] = 2;
+    	assertEquals(2, g.checkWinner());
+    	assertEquals(2, g.incrementalWinner());
+
+    	g.place(2, 2, 1);
+    	assertEquals(1, grid[2][2]);
+    	Game copy = g.copy();
+    	grid[2][0] = 1;
+    	assertEquals(0, copy.board().get(2, 0));
+
+    	Game start = new Game();
+    	Game next = start.copy();
+    	next.getGrid()[1][1] = 3;
+    	assertFalse(start.validate(next));
+    }
+
     /**
      * Test fromJson method
      */
@@ -236,4 +312,158 @@ public class GameTest {
 		boolean validate = g.validate(g2);
 		assertEquals(false, validate);
 	}
+
+    /**
+     * Test place method. Winner and status are updated by each move.
+     */
+	@Test
+	public void testPlace() {
+		Game g = new Game();
+		assertEquals(0, g.place(0, 0, 1));
+		assertEquals(Game.Status.PLAYING, g.getStatus());
+		assertEquals(0, g.place(1, 1, 2));
+		assertEquals(0, g.place(0, 1, 1));
+		assertEquals(0, g.place(2, 2, 2));
+		assertEquals(1, g.place(0, 2, 1));
+		assertEquals(1, g.getWinner());
+		assertEquals(Game.Status.END, g.getStatus());
+		assertEquals(1, g.checkWinner());
+	}
+
+    /**
+     * Test incremental winner and full check give the same result as the board scan.
+     * Play random games until the game end and compare after every move.
+     */
+	@Test
+	public void testIncrementalSameAsScan() {
+		java.util.Random random = new java.util.Random(42);
+		for (int round=0; round<1000; round++) {
+			Game g = new Game();
+			Game scan = new Game();
+			int player = 1;
+			while (g.getStatus() != Game.Status.END) {
+				int row, col;
+				do {
+					row = random.nextInt(3);
+					col = random.nextInt(3);
+				} while (g.getGrid()[row][col] != 0);
+
+				g.place(row, col, player);
+				scan.getGrid()[row][col] = player;
+				scan.setGrid(scan.getGrid());
+				assertEquals(scan.checkWinner(), g.incrementalWinner());
+				assertEquals(scan.checkFull(), g.incrementalFull());
+				assertEquals(scan.checkWinner(), scan.incrementalWinner());
+				player = 3 - player;
+			}
+		}
+	}
+
+    /**
+     * Test incremental winner on a board with lines of both players. Same order as board scan.
+     */
+	@Test
+	public void testIncrementalWinnerFromGrid() {
+		Game g = new Game();
+		g.setGrid(new int[][]{{1,2,0},{1,2,0},{1,2,0}});
+		assertEquals(g.checkWinner(), g.incrementalWinner());
+		g.setGrid(new int[][]{{2,2,2},{1,1,1},{0,0,0}});
+		assertEquals(g.checkWinner(), g.incrementalWinner());
+	}
+
+    /**
+     * Test validate method with move. Players take turns on empty cells.
+     */
+	@Test
+	public void testValidateMove() {
+		Game g = new Game();
+		g.setGrid(new int[][]{{0,1,2},{2,1,0},{1,0,0}});
+
+		assertEquals(true, g.validate(new Move(2, 2, 2)));
+		assertEquals(false, g.validate(new Move(2, 2, 1)));
+		assertEquals(false, g.validate(new Move(0, 1, 2)));
+		assertEquals(false, g.validate(new Move(3, 0, 2)));
+		assertEquals(false, g.validate(new Move(0, -1, 2)));
+		assertEquals(false, g.validate(new Move(0, 0, 3)));
+	}
+
+    /**
+     * Test play method. The move is applied and the game ends with winner.
+     */
+	@Test
+	public void testPlayMove() {
+		Game g = new Game();
+		g.setGrid(new int[][]{{1,1,0},{2,2,0},{0,0,0}});
+
+		assertEquals(1, g.play(new Move(0, 2, 1)));
+		assertEquals(Game.Status.END, g.getStatus());
+		assertEquals(1, g.getGrid()[0][2]);
+		assertEquals(false, g.validate(new Move(1, 2, 2)));
+	}
+
+    /**
+     * Test nxn game with k marks in a row to win
+     * @throws Exception Convert fail
+     */
+	@Test
+	public void testWinLength() throws Exception {
+		Game g = new Game(7, 4);
+		assertEquals(7, g.getDimension());
+		assertEquals(4, g.getWinLength());
+		assertEquals(3, new Game().getWinLength());
+		assertEquals(9, new Game(9).getDimension());
+
+		assertEquals(0, g.play(new Move(3, 1, 1)));
+		assertEquals(0, g.play(new Move(0, 0, 2)));
+		assertEquals(0, g.play(new Move(3, 2, 1)));
+		assertEquals(0, g.play(new Move(0, 1, 2)));
+		assertEquals(0, g.play(new Move(3, 3, 1)));
+		assertEquals(0, g.play(new Move(0, 2, 2)));
+		assertEquals(Game.Status.PLAYING, g.getStatus());
+
+		String json = g.toJson();
+		assertTrue(json.contains("\"dimension\":7,\"winLength\":4,"));
+		Game read = Game.fromJson(json);
+		assertEquals(4, read.getWinLength());
+		assertEquals(7, read.getDimension());
+
+		Game next = g.copy();
+		next.play(new Move(3, 4, 1));
+		assertEquals(1, next.getWinner());
+		assertEquals(Game.Status.END, next.getStatus());
+		assertEquals(1, next.checkWinner());
+
+		next = Game.fromJson(next.toJson());
+		assertEquals(true, g.validate(next));
+		Game other = Game.fromJson(next.toJson().replace("\"winLength\":4", "\"winLength\":5"));
+		assertEquals(false, g.validate(other));
+		other = Game.fromJson(next.toJson().replace("\"winLength\":4", "\"winLength\":8"));
+		assertEquals(false, g.validate(other));
+	}
+
+    /**
+     * Test incremental winner gives the same result as the board scan with k in a row
+     */
+	@Test
+	public void testIncrementalSameAsScanWinLength() {
+		java.util.Random random = new java.util.Random(42);
+		for (int round=0; round<200; round++) {
+			Game g = new Game(7, 4);
+			Game scan = new Game(7, 4);
+			int player = 1;
+			while (g.getStatus() != Game.Status.END) {
+				int row, col;
+				do {
+					row = random.nextInt(7);
+					col = random.nextInt(7);
+				} while (g.getGrid()[row][col] != 0);
+
+				g.place(row, col, player);
+				scan.getGrid()[row][col] = player;
+				scan.setGrid(scan.getGrid());
+				assertEquals(scan.checkWinner(), g.incrementalWinner());
+				player = 3 - player;
+			}
+		}
+	}
 }
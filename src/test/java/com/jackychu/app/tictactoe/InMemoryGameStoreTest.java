@@ -0,0 +1,110 @@
+package com.jackychu.app.tictactoe;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test InMemoryGameStore class
+ */
+public class InMemoryGameStoreTest {
+
+    /**
+     * Test replace with a stale game fails
+     */
+    @Test
+    public void testReplaceStale() {
+        GameStore store = new InMemoryGameStore();
+        Game g = new Game();
+        store.put(g);
+
+        Game first = g.copy();
+        first.play(new Move(0, 0, 1));
+        assertTrue(store.replace(g, first));
+        assertEquals(1, store.get(g.getId()).getVersion());
+
+        Game second = g.copy();
+        second.play(new Move(1, 1, 1));
+        assertFalse(store.replace(g, second));
+        assertEquals(1, store.get(g.getId()).getGrid()[0][0]);
+        assertEquals(0, store.get(g.getId()).getGrid()[1][1]);
+    }
+
+    /**
+     * Test replace a removed game fails
+     */
+    @Test
+    public void testReplaceRemoved() {
+        GameStore store = new InMemoryGameStore();
+        Game g = new Game();
+        store.put(g);
+        store.remove(g.getId());
+
+        assertFalse(store.replace(g, g.copy()));
+        assertNull(store.get(g.getId()));
+        assertEquals(0, store.size());
+    }
+
+    /**
+     * Test concurrent moves on one game. Every cell is taken by exactly one move
+     * and the version counts every accepted move.
+     * @throws Exception thread interrupted
+     */
+    @Test
+    public void testConcurrentMoves() throws Exception {
+        final GameStore store = new InMemoryGameStore();
+        final Game game = new Game(8);
+        store.put(game);
+
+        final int threads = 8;
+        final AtomicInteger accepted = new AtomicInteger();
+        final CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        for (int t=0; t<threads; t++) {
+            final int row = t;
+            executor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int col=0; col<8; col++) {
+                        while (true) {
+                            Game current = store.get(game.getId());
+                            // Whoever's turn it is places on this thread's row
+                            int player = current.board().count(1) == current.board().count(2) ? 1 : 2;
+                            Move move = new Move(row, col, player);
+                            if (!current.validate(move)) break;
+
+                            Game next = current.copy();
+                            next.play(move);
+                            if (store.replace(current, next)) {
+                                accepted.incrementAndGet();
+                                break;
+                            }
+                        }
+                    }
+                }
+            });
+        }
+        start.countDown();
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(30, TimeUnit.SECONDS));
+
+        Game g = store.get(game.getId());
+        assertEquals(accepted.get(), g.getVersion());
+        assertEquals(accepted.get(), g.board().filled());
+        assertTrue(Math.abs(g.board().count(1) - g.board().count(2)) <= 1);
+    }
+}
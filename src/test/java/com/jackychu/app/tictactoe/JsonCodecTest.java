@@ -0,0 +1,71 @@
+package com.jackychu.app.tictactoe;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Test JsonCodec class
+ */
+public class JsonCodecTest {
+
+    /**
+     * Test every type gets the shared mapper
+     */
+    @Test
+    public void testContext() {
+        JsonCodec codec = new JsonCodec();
+        assertSame(JsonCodec.MAPPER, codec.getContext(Game.class));
+        assertSame(JsonCodec.MAPPER, codec.getContext(ErrorMessage.class));
+    }
+
+    /**
+     * Test error message write and read
+     * @throws Exception convert error
+     */
+    @Test
+    public void testErrorMessage() throws Exception {
+        String json = JsonCodec.ERROR_WRITER.writeValueAsString(new ErrorMessage("Move is invalidate"));
+        assertEquals("{\"message\":\"Move is invalidate\"}", json);
+
+        ErrorMessage msg = JsonCodec.ERROR_READER.readValue(json);
+        assertEquals("Move is invalidate", msg.getMessage());
+    }
+
+    /**
+     * Test the shared writer and reader from many threads
+     * @throws Exception convert error
+     */
+    @Test
+    public void testConcurrent() throws Exception {
+        final Game g = new Game();
+        g.play(new Move(1, 1, 1));
+        final String expected = g.toJson();
+
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i=0; i<100; i++) {
+                results.add(pool.submit(new Callable<String>() {
+                    @Override
+                    public String call() throws Exception {
+                        return Game.fromJson(g.toJson()).toJson();
+                    }
+                }));
+            }
+            for (Future<String> result : results) {
+                assertEquals(expected, result.get());
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
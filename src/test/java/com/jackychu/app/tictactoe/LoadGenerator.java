@@ -0,0 +1,345 @@
+package com.jackychu.app.tictactoe;
+
+import org.HdrHistogram.Histogram;
+import org.glassfish.grizzly.http.server.HttpServer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Load generator of the REST api. Each connection plays whole games one after another:
+ * create a game, then PUT the next game and GET it until the game is end, then delete it.<br>
+ * With a rate, requests are sent on a fixed schedule (open loop) and latency is counted from the time a request
+ * should have been sent, so a slow server is not hidden by the generator waiting for it.
+ * Without a rate, each connection sends the next request when the last one is answered (closed loop).<br>
+ * Latency percentiles of each request type are kept in HdrHistograms. Requests in the warm-up are not counted.<br>
+ * The server is started in this process unless a url is set, so it runs offline on localhost.<br>
+ * Run: mvn -P load test -Dload.rate=2000 -Dload.concurrency=16<br>
+ * System properties:
+ * <pre>
+ * load.url          base url of a running server, e.g. http://localhost:8080/tictactoe/. Empty to start one here.
+ * load.concurrency  count of connections, default 16
+ * load.rate         requests per second of all connections, 0 for closed loop. Default 0.
+ * load.duration     seconds to measure, default 30
+ * load.warmup       seconds before measuring, default 5
+ * load.dimension    board dimension of the games, default 3
+ * load.hgrm         file to write the percentile distribution of all requests, for plotting
+ * </pre>
+ */
+public class LoadGenerator {
+    /**
+     * Request types, in report order
+     */
+    enum Request {
+        CREATE, UPDATE, GET, DELETE
+    }
+
+    /**
+     * Max latency which can be counted, in micros
+     */
+    private static final long MAX_LATENCY = TimeUnit.HOURS.toMicros(1);
+
+    private final String url;
+    private final int concurrency;
+    private final double rate;
+    private final int dimension;
+
+    private final long measureStart;
+    private final long end;
+
+    /**
+     * Create generator
+     * @param url base url of the server, ends with /
+     * @param concurrency count of connections
+     * @param rate requests per second of all connections, 0 for closed loop
+     * @param dimension board dimension of the games
+     * @param warmupSeconds seconds before measuring
+     * @param durationSeconds seconds to measure
+     */
+    public LoadGenerator(String url, int concurrency, double rate, int dimension,
+                         long warmupSeconds, long durationSeconds) {
+        if (concurrency <= 0) throw new IllegalArgumentException("Concurrency should be positive: " + concurrency);
+        if (rate < 0) throw new IllegalArgumentException("Rate should not be negative: " + rate);
+
+        this.url = url;
+        this.concurrency = concurrency;
+        this.rate = rate;
+        this.dimension = dimension;
+        this.measureStart = System.nanoTime() + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        this.end = this.measureStart + TimeUnit.SECONDS.toNanos(durationSeconds);
+    }
+
+    /**
+     * Run all connections until the end of measuring
+     * @return histograms of each request type, and the last one of all requests
+     * @throws InterruptedException interrupted while waiting for the connections
+     */
+    public Report run() throws InterruptedException {
+        List<Connection> connections = new ArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i=0; i<this.concurrency; i++) {
+            Connection connection = new Connection(i);
+            Thread thread = new Thread(connection, "load-" + i);
+            connections.add(connection);
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        Report report = new Report(this.end - this.measureStart);
+        for (Connection connection : connections) {
+            for (Request request : Request.values()) {
+                report.histograms[request.ordinal()].add(connection.histograms[request.ordinal()]);
+                report.all.add(connection.histograms[request.ordinal()]);
+            }
+            report.errors += connection.errors;
+        }
+        return report;
+    }
+
+    /**
+     * Latency of the measured requests
+     */
+    public static class Report {
+        private final Histogram[] histograms = new Histogram[Request.values().length];
+        private final Histogram all = new Histogram(MAX_LATENCY, 3);
+        private final long nanos;
+        private long errors;
+
+        Report(long nanos) {
+            this.nanos = nanos;
+            for (int i=0; i<this.histograms.length; i++) {
+                this.histograms[i] = new Histogram(MAX_LATENCY, 3);
+            }
+        }
+
+        /**
+         * Get latency in micros of one request type
+         * @param request request type
+         * @return histogram
+         */
+        public Histogram getHistogram(Request request) {
+            return this.histograms[request.ordinal()];
+        }
+
+        /**
+         * Get latency in micros of all requests
+         * @return histogram
+         */
+        public Histogram getAll() {
+            return this.all;
+        }
+
+        /**
+         * Get count of failed requests, not in the histograms
+         * @return count of errors
+         */
+        public long getErrors() {
+            return this.errors;
+        }
+
+        /**
+         * Get answered requests per second
+         * @return requests per second
+         */
+        public double getThroughput() {
+            return this.all.getTotalCount() * 1e9 / this.nanos;
+        }
+
+        /**
+         * Print a table of throughput and latency percentiles in millis
+         * @param out print stream
+         */
+        public void print(PrintStream out) {
+            out.println(String.format("%-8s %9s %9s %8s %8s %8s %8s %8s %8s",
+                    "request", "count", "req/s", "mean", "p50", "p90", "p99", "p99.9", "max"));
+            for (Request request : Request.values()) {
+                this.print(out, request.name().toLowerCase(), this.histograms[request.ordinal()]);
+            }
+            this.print(out, "all", this.all);
+            out.println("latency in millis, errors: " + this.errors);
+        }
+
+        private void print(PrintStream out, String name, Histogram h) {
+            out.println(String.format("%-8s %9d %9.1f %8.3f %8.3f %8.3f %8.3f %8.3f %8.3f",
+                    name, h.getTotalCount(), h.getTotalCount() * 1e9 / this.nanos, h.getMean() / 1000,
+                    h.getValueAtPercentile(50) / 1000.0, h.getValueAtPercentile(90) / 1000.0,
+                    h.getValueAtPercentile(99) / 1000.0, h.getValueAtPercentile(99.9) / 1000.0,
+                    h.getMaxValue() / 1000.0));
+        }
+    }
+
+    /**
+     * One connection which plays games until the end of measuring
+     */
+    private class Connection implements Runnable {
+        private final Histogram[] histograms = new Histogram[Request.values().length];
+        private final Random random;
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream(1024);
+        private final byte[] buffer = new byte[4096];
+
+        /**
+         * Nanos between two requests of this connection, 0 for closed loop
+         */
+        private final long interval;
+
+        /**
+         * Time the next request should be sent
+         */
+        private long next;
+        private long errors;
+
+        Connection(int index) {
+            for (int i=0; i<this.histograms.length; i++) {
+                this.histograms[i] = new Histogram(MAX_LATENCY, 3);
+            }
+            this.random = new Random(index);
+            this.interval = rate == 0 ? 0 : (long) (concurrency * 1e9 / rate);
+            // Spread the first requests of the connections over one interval
+            this.next = System.nanoTime() + this.interval * index / concurrency;
+        }
+
+        @Override
+        public void run() {
+            while (System.nanoTime() < end) {
+                try {
+                    this.play();
+                } catch (IOException e) {
+                    this.errors++;
+                }
+            }
+        }
+
+        /**
+         * Play one game with random moves
+         */
+        private void play() throws IOException {
+            String json = this.send(Request.CREATE, "POST", "api/v1.0/game?dimension=" + dimension, null);
+            if (json == null) return;
+            Game game;
+            try {
+                game = Game.fromJson(json);
+            } catch (Exception e) {
+                throw new IOException("Invalid game: " + json, e);
+            }
+            String path = "api/v1.0/game/" + game.getId();
+
+            int player = 1;
+            while (game.getStatus() != Game.Status.END && !game.checkFull() && System.nanoTime() < end) {
+                int row, col;
+                do {
+                    row = this.random.nextInt(dimension);
+                    col = this.random.nextInt(dimension);
+                } while (game.board().get(row, col) != 0);
+                Game next = game.copy();
+                next.place(row, col, player);
+                next.updateTime();
+                try {
+                    json = next.toJson();
+                } catch (Exception e) {
+                    throw new IOException("Fail to convert game", e);
+                }
+                if (this.send(Request.UPDATE, "PUT", path, json) == null) return;
+                if (this.send(Request.GET, "GET", path, null) == null) return;
+                game = next;
+                player = 3 - player;
+            }
+            this.send(Request.DELETE, "DELETE", path, null);
+        }
+
+        /**
+         * Send one request on schedule and count its latency
+         * @return response body, null if the status is not 2xx
+         */
+        private String send(Request request, String method, String path, String json) throws IOException {
+            long start;
+            if (this.interval == 0) {
+                start = System.nanoTime();
+            } else {
+                start = this.next;
+                this.next += this.interval;
+                for (long wait = start - System.nanoTime(); wait > 0; wait = start - System.nanoTime()) {
+                    LockSupport.parkNanos(wait);
+                }
+            }
+
+            HttpURLConnection connection = (HttpURLConnection) URI.create(url + path).toURL().openConnection();
+            connection.setRequestMethod(method);
+            connection.setRequestProperty("Accept", "application/json");
+            if (json != null) {
+                connection.setDoOutput(true);
+                connection.setRequestProperty("Content-Type", "application/json");
+                OutputStream out = connection.getOutputStream();
+                out.write(json.getBytes(StandardCharsets.UTF_8));
+                out.close();
+            }
+            int status = connection.getResponseCode();
+            // Read the whole body, so the connection is kept alive for the next request
+            InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+            this.body.reset();
+            if (in != null) {
+                for (int n = in.read(this.buffer); n >= 0; n = in.read(this.buffer)) {
+                    this.body.write(this.buffer, 0, n);
+                }
+                in.close();
+            }
+            long stop = System.nanoTime();
+
+            if (status / 100 != 2) {
+                if (stop >= measureStart) this.errors++;
+                return null;
+            }
+            if (stop >= measureStart && start < end) {
+                this.histograms[request.ordinal()].recordValue(
+                        Math.min(MAX_LATENCY, TimeUnit.NANOSECONDS.toMicros(stop - start)));
+            }
+            return this.body.toString("UTF-8");
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String url = System.getProperty("load.url", "");
+        int concurrency = Integer.getInteger("load.concurrency", 16);
+        double rate = Double.parseDouble(System.getProperty("load.rate", "0"));
+        long duration = Long.getLong("load.duration", 30);
+        long warmup = Long.getLong("load.warmup", 5);
+        int dimension = Integer.getInteger("load.dimension", 3);
+        String hgrm = System.getProperty("load.hgrm", "");
+
+        // Keep one idle connection per thread instead of the default 5
+        System.setProperty("http.maxConnections", String.valueOf(concurrency));
+
+        HttpServer server = null;
+        if (url.isEmpty()) {
+            server = Main.startServer();
+            url = Main.BASE_URI.replace("0.0.0.0", "localhost");
+        }
+        try {
+            System.out.println(String.format("%d connections, %s, %d s warm-up, %d s, dimension %d, %s",
+                    concurrency, rate == 0 ? "closed loop" : rate + " requests/s", warmup, duration, dimension, url));
+            Report report = new LoadGenerator(url, concurrency, rate, dimension, warmup, duration).run();
+            report.print(System.out);
+            if (!hgrm.isEmpty()) {
+                PrintStream out = new PrintStream(new File(hgrm), "UTF-8");
+                report.getAll().outputPercentileDistribution(out, 1000.0);
+                out.close();
+            }
+        } finally {
+            if (server != null) server.shutdownNow();
+        }
+    }
+}
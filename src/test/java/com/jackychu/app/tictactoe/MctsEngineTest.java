@@ -0,0 +1,108 @@
+package com.jackychu.app.tictactoe;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test MctsEngine class
+ */
+public class MctsEngineTest {
+
+    private MctsEngine engine;
+
+    @Before
+    public void setUp() {
+        engine = new MctsEngine(2);
+    }
+
+    @After
+    public void tearDown() {
+        engine.close();
+    }
+
+    private Game game(int k, int[][] grid) {
+        Game g = new Game(grid.length, k);
+        g.setGrid(grid);
+        return g;
+    }
+
+    /**
+     * Test the engine takes an immediate win on a 9x9 board with 5 in a row
+     */
+    @Test
+    public void testWin() {
+        int[][] grid = new int[9][9];
+        for (int col=2; col<6; col++) {
+            grid[4][col] = 1;
+            grid[6][col] = 2;
+        }
+        SearchResult result = engine.search(game(5, grid), 100000, 2000);
+        assertEquals(1, result.getMove().getPlayer());
+        assertEquals(4, result.getMove().getRow());
+        assertTrue(result.getMove().getCol() == 1 || result.getMove().getCol() == 6);
+        assertTrue(result.getScore() > 0);
+        assertFalse(result.isComplete());
+    }
+
+    /**
+     * Test the engine blocks the only winning move of the other player
+     */
+    @Test
+    public void testBlock() {
+        Game g = game(3, new int[][]{{1, 1, 0}, {0, 2, 0}, {0, 0, 0}});
+        SearchResult result = engine.search(g, 20000, 5000);
+        assertEquals(2, result.getMove().getPlayer());
+        assertEquals(0, result.getMove().getRow());
+        assertEquals(2, result.getMove().getCol());
+    }
+
+    /**
+     * Test the search returns a move at the time budget, and counts the playouts
+     */
+    @Test
+    public void testAnytime() {
+        Game g = new Game(15, 5);
+        long start = System.currentTimeMillis();
+        SearchResult result = engine.search(g, Long.MAX_VALUE, 100);
+        assertTrue(System.currentTimeMillis() - start < 1000);
+        assertTrue(g.validate(result.getMove()));
+        // The tree starts at the center on an empty board
+        assertEquals(7, result.getMove().getRow());
+        assertEquals(7, result.getMove().getCol());
+        assertTrue(result.getNodes() > 0);
+
+        assertEquals(result.getNodes(), engine.getPlayouts());
+        assertEquals(1, engine.getSearches());
+        assertTrue(engine.getPlayoutsPerSecond() > 0);
+        assertEquals(2, engine.getThreads());
+    }
+
+    /**
+     * Test the playout budget, and moves of a game played to the end by the engine are valid
+     */
+    @Test
+    public void testPlayouts() {
+        Game g = new Game(5, 4);
+        SearchResult result = engine.search(g, 1000, 10000);
+        assertTrue(result.getNodes() <= 1000);
+
+        while (g.getStatus() != Game.Status.END) {
+            Move move = engine.search(g, 500, 1000).getMove();
+            assertTrue(g.validate(move));
+            g.play(move);
+        }
+    }
+
+    /**
+     * Test a full board can not be searched
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testEnd() {
+        engine.search(game(3, new int[][]{{1, 2, 1}, {1, 2, 2}, {2, 1, 1}}), 100, 100);
+    }
+}
@@ -0,0 +1,141 @@
+package com.jackychu.app.tictactoe;
+
+import java.io.File;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test Metrics class
+ */
+public class MetricsTest {
+
+    /**
+     * Test requests are counted by endpoint and status, and the latency goes to the right bucket
+     */
+    @Test
+    public void testRequests() {
+        Metrics metrics = new Metrics();
+        metrics.request("getGame", 200, TimeUnit.MICROSECONDS.toNanos(300));
+        metrics.request("getGame", 200, TimeUnit.MILLISECONDS.toNanos(3));
+        metrics.request("getGame", 404, TimeUnit.SECONDS.toNanos(20));
+        metrics.invalid("updateGame");
+
+        assertEquals(2, metrics.getRequests("getGame", 200));
+        assertEquals(1, metrics.getRequests("getGame", 404));
+        assertEquals(0, metrics.getRequests("getGame", 500));
+        assertEquals(1, metrics.getInvalid("updateGame"));
+        assertEquals(0, metrics.getInvalid("getGame"));
+
+        String text = metrics.scrape();
+        assertTrue(text.contains("# TYPE tictactoe_http_requests_total counter\n"));
+        assertTrue(text.contains("tictactoe_http_requests_total{endpoint=\"getGame\",status=\"200\"} 2\n"));
+        assertTrue(text.contains("tictactoe_http_requests_total{endpoint=\"getGame\",status=\"404\"} 1\n"));
+        assertTrue(text.contains("tictactoe_http_request_duration_seconds_bucket{endpoint=\"getGame\",le=\"0.0005\"} 1\n"));
+        assertTrue(text.contains("tictactoe_http_request_duration_seconds_bucket{endpoint=\"getGame\",le=\"0.005\"} 2\n"));
+        assertTrue(text.contains("tictactoe_http_request_duration_seconds_bucket{endpoint=\"getGame\",le=\"10\"} 2\n"));
+        assertTrue(text.contains("tictactoe_http_request_duration_seconds_bucket{endpoint=\"getGame\",le=\"+Inf\"} 3\n"));
+        assertTrue(text.contains("tictactoe_http_request_duration_seconds_count{endpoint=\"getGame\"} 3\n"));
+        assertTrue(text.contains("tictactoe_invalid_requests_total{endpoint=\"updateGame\"} 1\n"));
+    }
+
+    /**
+     * Test registered values are read on scrape
+     */
+    @Test
+    public void testGauges() {
+        Metrics metrics = new Metrics();
+        final int[] games = {3};
+        metrics.register("tictactoe_games_active", Metrics.GAUGE, "Games in memory", new Metrics.Gauge() {
+            @Override
+            public double value() {
+                return games[0];
+            }
+        });
+        metrics.register("tictactoe_games_evicted_total", "reason", Metrics.COUNTER, "Evicted games", new Metrics.Gauges() {
+            @Override
+            public Map<String, Long> values() {
+                return Collections.singletonMap("ttl", 7L);
+            }
+        });
+
+        assertTrue(metrics.scrape().contains("# HELP tictactoe_games_active Games in memory\n"
+                + "# TYPE tictactoe_games_active gauge\ntictactoe_games_active 3\n"));
+        games[0] = 5;
+        assertTrue(metrics.scrape().contains("tictactoe_games_active 5\n"));
+        assertTrue(metrics.scrape().contains("tictactoe_games_evicted_total{reason=\"ttl\"} 7\n"));
+    }
+
+    /**
+     * Test the values of the journal, snapshot file and database are registered
+     * @throws Exception file or database error
+     */
+    @Test
+    public void testStoreMetrics() throws Exception {
+        File dir = File.createTempFile("metrics", "");
+        dir.delete();
+        dir.mkdirs();
+        File file = new File(dir, "games.snapshot");
+        try {
+            PersistentGameStore db = new PersistentGameStore("jdbc:h2:mem:metrics;DB_CLOSE_DELAY=-1",
+                    new GameRegistry(60000, 100), 60000, 1);
+            SnapshotGameStore snapshot = new SnapshotGameStore(db, file);
+            JournaledGameStore store = new JournaledGameStore(snapshot, new MoveJournal(dir, 4, 2, true));
+            store.put(new Game());
+
+            Metrics metrics = new Metrics();
+            Main.registerStoreMetrics(metrics, store);
+            String text = metrics.scrape();
+            assertTrue(text.contains("tictactoe_journal_records_total 1\n"));
+            assertTrue(text.contains("tictactoe_journal_commits_total "));
+            assertTrue(text.contains("tictactoe_journal_snapshots_total 0\n"));
+            assertTrue(text.contains("tictactoe_snapshot_bytes 0\n"));
+            assertTrue(text.contains("tictactoe_snapshot_load_seconds "));
+            assertTrue(text.contains("tictactoe_snapshot_loaded_games 0\n"));
+            assertTrue(text.contains("tictactoe_snapshot_save_seconds "));
+            assertTrue(text.contains("tictactoe_db_writes_total "));
+            assertTrue(text.contains("tictactoe_db_batches_total "));
+            assertTrue(text.contains("tictactoe_db_loads_total 0\n"));
+            assertTrue(text.contains("tictactoe_db_pending_writes "));
+
+            store.close();
+            assertTrue(metrics.scrape().contains("tictactoe_snapshot_bytes " + file.length() + "\n"));
+        } finally {
+            File[] files = dir.listFiles();
+            if (files != null) {
+                for (File f : files) f.delete();
+            }
+            dir.delete();
+        }
+    }
+
+    /**
+     * Test counts of many threads are not lost
+     */
+    @Test
+    public void testConcurrent() throws InterruptedException {
+        final Metrics metrics = new Metrics();
+        Thread[] threads = new Thread[8];
+        for (int i=0; i<threads.length; i++) {
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int n=0; n<10000; n++) {
+                        metrics.request("getGame", 200, 1000);
+                    }
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(80000, metrics.getRequests("getGame", 200));
+        assertTrue(metrics.scrape().contains("tictactoe_http_request_duration_seconds_count{endpoint=\"getGame\"} 80000\n"));
+    }
+}
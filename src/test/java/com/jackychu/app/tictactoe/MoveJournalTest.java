@@ -0,0 +1,264 @@
+package com.jackychu.app.tictactoe;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Test MoveJournal and JournaledGameStore classes
+ */
+public class MoveJournalTest {
+
+    private File dir;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = File.createTempFile("journal", "");
+        dir.delete();
+        dir.mkdirs();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File f : files) f.delete();
+        }
+        dir.delete();
+    }
+
+    /**
+     * Open store with small segments, 4 records per segment
+     */
+    private JournaledGameStore open() throws Exception {
+        return new JournaledGameStore(new InMemoryGameStore(), new MoveJournal(dir, 4, 2, true));
+    }
+
+    /**
+     * Play one move through the store
+     */
+    private void play(GameStore store, String id, int row, int col, int player) {
+        Game current = store.get(id);
+        Game next = current.copy();
+        next.play(new Move(row, col, player));
+        assertTrue(store.replace(current, next));
+    }
+
+    /**
+     * Test games are rebuilt by replay after restart
+     * @throws Exception file error
+     */
+    @Test
+    public void testReplay() throws Exception {
+        JournaledGameStore store = open();
+        Game won = new Game();
+        Game deleted = new Game();
+        Game large = new Game(10, 5);
+        store.put(won);
+        store.put(deleted);
+        store.put(large);
+
+        play(store, won.getId(), 0, 0, 1);
+        play(store, won.getId(), 1, 1, 2);
+        play(store, won.getId(), 0, 1, 1);
+        play(store, won.getId(), 2, 2, 2);
+        play(store, won.getId(), 0, 2, 1);
+        play(store, large.getId(), 9, 9, 1);
+        store.remove(deleted.getId());
+        assertTrue(store.getJournal().getCommits() > 0);
+        store.close();
+
+        store = open();
+        assertEquals(2, store.size());
+        assertNull(store.get(deleted.getId()));
+
+        Game g = store.get(won.getId());
+        assertEquals(Game.Status.END, g.getStatus());
+        assertEquals(1, g.getWinner());
+        assertEquals(5, g.getVersion());
+        assertEquals(1, g.getGrid()[0][2]);
+        assertEquals(2, g.getGrid()[2][2]);
+        assertEquals(1, store.get(large.getId()).getGrid()[9][9]);
+        assertEquals(5, store.get(large.getId()).getWinLength());
+        assertEquals(3, g.getWinLength());
+        store.close();
+    }
+
+    /**
+     * Test snapshot deletes old segments and replay still gives the same games
+     * @throws Exception file error
+     */
+    @Test
+    public void testSnapshot() throws Exception {
+        JournaledGameStore store = open();
+        Game g = new Game();
+        store.put(g);
+        play(store, g.getId(), 0, 0, 1);
+        play(store, g.getId(), 1, 1, 2);
+        play(store, g.getId(), 2, 2, 1);
+        play(store, g.getId(), 0, 2, 2);
+        play(store, g.getId(), 2, 0, 1);
+        store.getJournal().snapshot();
+        play(store, g.getId(), 1, 0, 2);
+
+        int segments = dir.list().length;
+        store.close();
+        assertTrue("Old segments should be deleted, found " + segments, segments <= 3);
+
+        store = open();
+        Map<String, Game> games = store.getAll();
+        assertEquals(1, games.size());
+        int[][] grid = games.get(g.getId()).getGrid();
+        assertEquals(1, grid[2][0]);
+        assertEquals(2, grid[1][0]);
+        assertEquals(6, games.get(g.getId()).getVersion());
+        store.close();
+    }
+
+    /**
+     * Test replay stops at a broken record
+     * @throws Exception file error
+     */
+    @Test
+    public void testBrokenRecord() throws Exception {
+        JournaledGameStore store = open();
+        Game g = new Game();
+        store.put(g);
+        play(store, g.getId(), 0, 0, 1);
+        play(store, g.getId(), 1, 1, 2);
+        store.close();
+
+        // Break the last record. Segment 1 has the create and two moves.
+        File segment = new File(dir, String.format("%016d.seg", 1));
+        try (RandomAccessFile raf = new RandomAccessFile(segment, "rw")) {
+            raf.seek(2 * MoveJournal.RECORD_SIZE + 20);
+            raf.writeLong(12345);
+        }
+
+        store = open();
+        Game replayed = store.get(g.getId());
+        assertEquals(1, replayed.getGrid()[0][0]);
+        assertEquals(0, replayed.getGrid()[1][1]);
+        store.close();
+    }
+
+    /**
+     * Test the segments of the runs after a torn segment are still replayed
+     * @throws Exception file error
+     */
+    @Test
+    public void testBrokenRecordThenLaterRun() throws Exception {
+        JournaledGameStore store = open();
+        Game a = new Game();
+        store.put(a);
+        play(store, a.getId(), 0, 0, 1);
+        play(store, a.getId(), 1, 1, 2);
+        store.close();
+
+        File segment = new File(dir, String.format("%016d.seg", 1));
+        try (RandomAccessFile raf = new RandomAccessFile(segment, "rw")) {
+            raf.seek(2 * MoveJournal.RECORD_SIZE + 20);
+            raf.writeLong(12345);
+        }
+
+        // The run after the crash
+        store = open();
+        Game b = new Game();
+        store.put(b);
+        play(store, b.getId(), 2, 2, 1);
+        store.close();
+
+        store = open();
+        assertEquals(1, store.get(a.getId()).getGrid()[0][0]);
+        assertEquals(1, store.get(b.getId()).getGrid()[2][2]);
+        store.close();
+    }
+
+    /**
+     * Test a record of another format is not replayed
+     * @throws Exception file error
+     */
+    @Test
+    public void testUnknownFormat() throws Exception {
+        MoveJournal journal = new MoveJournal(dir, 4, 2, true);
+        journal.appendCreate(new Game(5, 4));
+        journal.close();
+
+        // Rewrite the record as format 1, with a valid checksum
+        File segment = new File(dir, String.format("%016d.seg", 1));
+        try (RandomAccessFile raf = new RandomAccessFile(segment, "rw")) {
+            byte[] record = new byte[MoveJournal.RECORD_SIZE];
+            raf.readFully(record);
+            record[37] = 1;
+            CRC32 crc = new CRC32();
+            crc.update(record, 4, record.length - 4);
+            raf.seek(0);
+            raf.writeInt((int) crc.getValue());
+            raf.seek(37);
+            raf.write(1);
+        }
+
+        journal = new MoveJournal(dir, 4, 2, true);
+        try {
+            journal.replay();
+            fail("Record of format 1 should not be replayed");
+        } catch (IOException e) {
+            // expected
+        } finally {
+            journal.close();
+        }
+    }
+
+    /**
+     * Test a move appended after the delete of its game doesn't create the game again on replay
+     * @throws Exception file error
+     */
+    @Test
+    public void testMoveAfterDelete() throws Exception {
+        MoveJournal journal = new MoveJournal(dir, 4, 2, true);
+        Game g = new Game();
+        journal.appendCreate(g);
+        Game next = g.copy();
+        next.play(new Move(1, 1, 1));
+        journal.appendDelete(g);
+        // The update lost the race with the delete, but its record is appended later
+        journal.appendChange(g, next);
+        journal.close();
+
+        journal = new MoveJournal(dir, 4, 2, true);
+        assertTrue(journal.replay().isEmpty());
+        journal.close();
+    }
+
+    /**
+     * Test a game evicted from the registry is journaled as deleted
+     * @throws Exception file error
+     */
+    @Test
+    public void testEviction() throws Exception {
+        JournaledGameStore store = new JournaledGameStore(new GameRegistry(0, 1), new MoveJournal(dir, 4, 2, true));
+        Game evicted = new Game();
+        store.put(evicted);
+        Game kept = new Game();
+        store.put(kept);
+        assertNull(store.get(evicted.getId()));
+        store.close();
+
+        store = new JournaledGameStore(new GameRegistry(0, 10), new MoveJournal(dir, 4, 2, true));
+        assertNull(store.get(evicted.getId()));
+        assertEquals(kept.getId(), store.get(kept.getId()).getId());
+        assertEquals(1, store.size());
+        store.close();
+    }
+}
@@ -0,0 +1,88 @@
+package com.jackychu.app.tictactoe;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test ParallelSolver class
+ */
+public class ParallelSolverTest {
+
+    private ParallelSolver solver;
+
+    @Before
+    public void setUp() {
+        // Split at every depth, so small boards are searched by many tasks
+        solver = new ParallelSolver(4, new TranspositionTable(1 << 16), 1);
+    }
+
+    @After
+    public void tearDown() {
+        solver.close();
+    }
+
+    /**
+     * Test the empty 3x3 game is solved as a draw
+     */
+    @Test
+    public void testSolveEmpty() {
+        SearchResult result = solver.solve(new Game(), 10000);
+        assertTrue(result.isComplete());
+        assertEquals(0, result.getScore());
+        assertEquals(9, result.getDepth());
+        assertEquals(4, solver.getThreads());
+    }
+
+    /**
+     * Test the scores are the same as the sequential search
+     */
+    @Test
+    public void testSameAsSequential() {
+        AlphaBetaEngine engine = new AlphaBetaEngine(Long.MAX_VALUE, 10000, null);
+        Random random = new Random(1);
+        for (int n=0; n<200; n++) {
+            int d = n % 2 == 0 ? 3 : 4;
+            Game g = new Game(d);
+            int marks = d == 3 ? random.nextInt(7) : 7 + random.nextInt(4);
+            for (int i=0; i<marks && g.getStatus() != Game.Status.END; i++) {
+                List<Move> moves = new ArrayList<>();
+                for (int row=0; row<d; row++) {
+                    for (int col=0; col<d; col++) {
+                        if (g.board().get(row, col) == 0) moves.add(new Move(row, col, AlphaBetaEngine.toMove(g.board())));
+                    }
+                }
+                g.play(moves.get(random.nextInt(moves.size())));
+            }
+            if (g.getStatus() == Game.Status.END) continue;
+
+            SearchResult expected = engine.search(g);
+            SearchResult result = solver.solve(g, 10000);
+            assertTrue(result.isComplete());
+            assertEquals(expected.getScore(), result.getScore());
+            assertTrue(g.validate(result.getMove()));
+        }
+    }
+
+    /**
+     * Test the search stops at the deadline on a large board
+     */
+    @Test
+    public void testDeadline() {
+        Game g = new Game(7);
+        long start = System.currentTimeMillis();
+        SearchResult result = solver.solve(g, 100);
+        assertTrue(System.currentTimeMillis() - start < 2000);
+        assertFalse(result.isComplete());
+        assertTrue(result.getDepth() >= 1);
+        assertTrue(g.validate(result.getMove()));
+    }
+}
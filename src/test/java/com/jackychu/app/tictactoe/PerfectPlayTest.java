@@ -0,0 +1,155 @@
+package com.jackychu.app.tictactoe;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test PerfectPlay class
+ */
+public class PerfectPlayTest {
+
+    private static final int[][] LINES = {
+            {0, 1, 2}, {3, 4, 5}, {6, 7, 8}, {0, 3, 6}, {1, 4, 7}, {2, 5, 8}, {0, 4, 8}, {2, 4, 6}
+    };
+
+    private Board board(int[][] grid) {
+        return Board.fromGrid(grid);
+    }
+
+    private static boolean won(int[] cells, int player) {
+        for (int[] line : LINES) {
+            if (cells[line[0]] == player && cells[line[1]] == player && cells[line[2]] == player) return true;
+        }
+        return false;
+    }
+
+    private static int index(int[] cells) {
+        int index = 0;
+        for (int i=8; i>=0; i--) {
+            index = index * 3 + cells[i];
+        }
+        return index;
+    }
+
+    /**
+     * Plain minimax without the table.
+     * Returns {outcome for the player to move, count of moves to the end} of every reachable position.
+     */
+    private static int[] minimax(int[] cells, int player, Map<Integer, int[]> solved) {
+        int index = index(cells);
+        int[] known = solved.get(index);
+        if (known != null) return known;
+
+        int[] result;
+        if (won(cells, 3 - player)) {
+            result = new int[]{PerfectPlay.LOSS, 0};
+        } else {
+            int empty = 0;
+            int[] best = null;
+            for (int i=0; i<9; i++) {
+                if (cells[i] != 0) continue;
+                empty++;
+                cells[i] = player;
+                int[] child = minimax(cells, 3 - player, solved);
+                cells[i] = 0;
+                int[] mine = {4 - child[0], child[1] + 1};
+                if (best == null || mine[0] < best[0]
+                        || (mine[0] == best[0] && mine[0] == PerfectPlay.WIN && mine[1] < best[1])
+                        || (mine[0] == best[0] && mine[0] == PerfectPlay.LOSS && mine[1] > best[1])) {
+                    best = mine;
+                }
+            }
+            result = empty == 0 ? new int[]{PerfectPlay.DRAW, 0} : best;
+        }
+        solved.put(index, result);
+        return result;
+    }
+
+    /**
+     * Test every reachable position against the exhaustive search, and the best move keeps the outcome
+     */
+    @Test
+    public void testExhaustive() {
+        Map<Integer, int[]> solved = new HashMap<>();
+        minimax(new int[9], 1, solved);
+        assertEquals(5478, solved.size());
+
+        int unknown = 0;
+        for (int index=0; index<PerfectPlay.POSITIONS; index++) {
+            int[] expected = solved.get(index);
+            if (expected == null) {
+                assertEquals(PerfectPlay.UNKNOWN, PerfectPlay.outcome(index));
+                assertEquals(-1, PerfectPlay.best(index));
+                unknown++;
+                continue;
+            }
+            assertEquals("outcome of " + index, expected[0], PerfectPlay.outcome(index));
+            assertEquals("plies of " + index, expected[1], PerfectPlay.plies(index));
+
+            int cell = PerfectPlay.best(index);
+            if (expected[1] == 0) {
+                assertEquals(-1, cell);
+                continue;
+            }
+            int[] cells = new int[9];
+            int player = 1, filled = 0;
+            for (int i=0, n=index; i<9; i++, n/=3) {
+                cells[i] = n % 3;
+                if (cells[i] != 0) filled++;
+            }
+            if (filled % 2 == 1) player = 2;
+            assertEquals(0, cells[cell]);
+            cells[cell] = player;
+            int[] after = solved.get(index(cells));
+            assertEquals(expected[0], 4 - after[0]);
+            assertEquals(expected[1], after[1] + 1);
+        }
+        assertEquals(PerfectPlay.POSITIONS - 5478, unknown);
+    }
+
+    /**
+     * Test the index is the base-3 number of the grid
+     */
+    @Test
+    public void testIndex() {
+        assertEquals(0, PerfectPlay.index(board(new int[][]{{0, 0, 0}, {0, 0, 0}, {0, 0, 0}})));
+        assertEquals(1 + 2 * 3 + 1 * 81 + 2 * 6561,
+                PerfectPlay.index(board(new int[][]{{1, 2, 0}, {0, 1, 0}, {0, 0, 2}})));
+    }
+
+    /**
+     * Test the result of lookups
+     */
+    @Test
+    public void testResult() {
+        SearchResult empty = PerfectPlay.result(board(new int[][]{{0, 0, 0}, {0, 0, 0}, {0, 0, 0}}));
+        assertEquals(0, empty.getScore());
+        assertEquals(9, empty.getDepth());
+        assertTrue(empty.isComplete());
+        assertEquals(1, empty.getMove().getPlayer());
+
+        Board win = board(new int[][]{{1, 1, 0}, {2, 2, 0}, {0, 0, 0}});
+        SearchResult result = PerfectPlay.result(win);
+        assertEquals(0, result.getMove().getRow());
+        assertEquals(2, result.getMove().getCol());
+        assertEquals(AlphaBetaEngine.WIN - 1, result.getScore());
+        assertEquals(1, PerfectPlay.winner(win));
+
+        // Player 2 holds the draw by playing an edge
+        Board fork = board(new int[][]{{1, 0, 0}, {0, 2, 0}, {0, 0, 1}});
+        assertEquals(0, PerfectPlay.winner(fork));
+        Board lost = board(new int[][]{{1, 2, 0}, {0, 0, 0}, {0, 0, 0}});
+        assertEquals(1, PerfectPlay.winner(lost));
+
+        assertNull(PerfectPlay.result(board(new int[][]{{1, 1, 1}, {2, 2, 0}, {0, 0, 0}})));
+        assertFalse(PerfectPlay.covers(board(new int[][]{{1, 1, 1}, {1, 0, 0}, {0, 0, 0}})));
+        assertFalse(PerfectPlay.covers(Board.create(4)));
+    }
+}
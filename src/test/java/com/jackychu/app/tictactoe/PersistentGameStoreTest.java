@@ -0,0 +1,209 @@
+package com.jackychu.app.tictactoe;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test PersistentGameStore class with in-memory H2 database
+ */
+public class PersistentGameStoreTest {
+
+    /**
+     * Open store on the database. Flush time is long, so only flush() writes.
+     */
+    private PersistentGameStore open(String db) throws Exception {
+        return new PersistentGameStore("jdbc:h2:mem:" + db + ";DB_CLOSE_DELAY=-1",
+                new GameRegistry(0, 100), 60000, 1000);
+    }
+
+    /**
+     * Test games are written in one batch and loaded by another store
+     * @throws Exception database error
+     */
+    @Test
+    public void testSaveAndLoad() throws Exception {
+        PersistentGameStore store = open("save");
+        Game g = new Game();
+        store.put(g);
+        for (int[] cell : new int[][]{{0, 0, 1}, {1, 1, 2}, {0, 1, 1}}) {
+            Game current = store.get(g.getId());
+            Game next = current.copy();
+            next.play(new Move(cell[0], cell[1], cell[2]));
+            assertEquals(true, store.replace(current, next));
+        }
+        assertEquals(1, store.getPendingWrites());
+        store.flush();
+        assertEquals(1, store.getBatches());
+        assertEquals(1, store.getWrites());
+        store.close();
+
+        store = open("save");
+        Game loaded = store.get(g.getId());
+        assertNotNull(loaded);
+        assertEquals(1, store.getLoads());
+        assertEquals(3, loaded.getVersion());
+        assertEquals(Game.Status.PLAYING, loaded.getStatus());
+        assertEquals(1, loaded.getGrid()[0][1]);
+        assertEquals(2, loaded.getGrid()[1][1]);
+
+        // Second read from cache
+        assertSame(loaded, store.get(g.getId()));
+        assertEquals(1, store.getLoads());
+        store.close();
+    }
+
+    /**
+     * Test all games are read a page of rows at a time, with the changes not written yet
+     * @throws Exception database error
+     */
+    @Test
+    public void testGames() throws Exception {
+        PersistentGameStore store = open("games");
+        List<Game> games = new ArrayList<>();
+        for (int i=0; i<PersistentGameStore.PAGE_SIZE * 2 + 500; i++) {
+            Game g = new Game();
+            store.put(g);
+            games.add(g);
+        }
+        Iterable<Game> all = store.games();
+        assertEquals(0, store.getPendingWrites());
+
+        Game changed = store.get(games.get(0).getId());
+        Game next = changed.copy();
+        next.play(new Move(0, 0, 1));
+        assertTrue(store.replace(changed, next));
+        store.remove(games.get(1).getId());
+        Game created = new Game();
+        store.put(created);
+
+        Map<String, Game> found = new HashMap<>();
+        for (Game g : all) {
+            assertNull(found.put(g.getId(), g));
+        }
+        assertEquals(games.size(), found.size());
+        assertEquals(1, found.get(changed.getId()).getVersion());
+        assertNull(found.get(games.get(1).getId()));
+        assertNotNull(found.get(created.getId()));
+        store.close();
+    }
+
+    /**
+     * Test a removed game is deleted from database
+     * @throws Exception database error
+     */
+    @Test
+    public void testRemove() throws Exception {
+        PersistentGameStore store = open("remove");
+        Game g = new Game();
+        store.put(g);
+        store.flush();
+        assertEquals(1, store.size());
+
+        store.remove(g.getId());
+        assertNull(store.get(g.getId()));
+        store.close();
+
+        store = open("remove");
+        assertNull(store.get(g.getId()));
+        assertEquals(0, store.size());
+        store.close();
+    }
+
+    /**
+     * Test a large board is saved
+     * @throws Exception database error
+     */
+    @Test
+    public void testLargeBoard() throws Exception {
+        PersistentGameStore store = open("large");
+        Game g = new Game(10);
+        g.play(new Move(9, 9, 1));
+        store.put(g);
+        store.close();
+
+        store = open("large");
+        Game loaded = store.get(g.getId());
+        assertEquals(10, loaded.getGrid().length);
+        assertEquals(1, loaded.getGrid()[9][9]);
+        store.close();
+    }
+
+    /**
+     * Test a game removed while it is updated and loaded by other threads is not written back
+     * @throws Exception database error
+     */
+    @Test
+    public void testConcurrentRemove() throws Exception {
+        final PersistentGameStore store = new PersistentGameStore("jdbc:h2:mem:concurrent;DB_CLOSE_DELAY=-1",
+                new GameRegistry(0, 1), 60000, 1000);
+        for (int i=0; i<200; i++) {
+            final Game g = new Game(5);
+            store.put(g);
+            // A second game evicts the first one from the registry of one game, so reads load it again
+            if (i % 2 == 0) store.put(new Game());
+            store.flush();
+
+            final CountDownLatch start = new CountDownLatch(1);
+            Thread updater = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                    for (int move=0; move<25; move++) {
+                        Game current = store.get(g.getId());
+                        if (current == null) return;
+                        Game next = current.copy();
+                        next.place(move / 5, move % 5, move % 2 + 1);
+                        store.replace(current, next);
+                    }
+                }
+            });
+            updater.start();
+            start.countDown();
+            store.remove(g.getId());
+            updater.join();
+
+            store.flush();
+            assertNull("Removed game should not be written back", store.get(g.getId()));
+        }
+        store.close();
+    }
+
+    /**
+     * Test size is the count of games written by the last flush, without writing
+     * @throws Exception database error
+     */
+    @Test
+    public void testSize() throws Exception {
+        PersistentGameStore store = open("size");
+        Game g = new Game();
+        store.put(g);
+        store.put(new Game());
+        assertEquals(0, store.size());
+        assertEquals(2, store.getPendingWrites());
+
+        store.flush();
+        assertEquals(2, store.size());
+        store.put(g.copy());
+        store.flush();
+        assertEquals(2, store.size());
+        store.remove(g.getId());
+        store.flush();
+        assertEquals(1, store.size());
+        store.close();
+    }
+}
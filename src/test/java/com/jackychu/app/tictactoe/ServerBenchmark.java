@@ -0,0 +1,82 @@
+package com.jackychu.app.tictactoe;
+
+import org.HdrHistogram.Histogram;
+import org.glassfish.grizzly.http.server.HttpServer;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Effect of each transport setting of ServerConfig on throughput and latency.<br>
+ * For each setting a server is started with only that setting changed from the defaults,
+ * then loaded by LoadGenerator with the load.* system properties (default 32 connections, closed loop, 10 s).
+ * The generator runs in the same process, so the server has the cores the generator doesn't use.
+ * A first pass on the default server is not reported, it warms up the JIT.<br>
+ * Run: mvn -P load test -Dload.class=com.jackychu.app.tictactoe.ServerBenchmark
+ */
+public class ServerBenchmark {
+
+    /**
+     * Settings to compare, the key is the name in the report
+     */
+    private static Map<String, Properties> settings() {
+        Map<String, Properties> settings = new LinkedHashMap<>();
+        settings.put("default", new Properties());
+        for (String workers : new String[]{"1", "4", "16", "64"}) {
+            settings.put("workers=" + workers, setting(ServerConfig.WORKERS, workers));
+        }
+        for (String selectors : new String[]{"1", "4"}) {
+            settings.put("selectors=" + selectors, setting(ServerConfig.SELECTORS, selectors));
+        }
+        Properties pending = setting(ServerConfig.WORKERS, "4");
+        pending.setProperty(ServerConfig.MAX_PENDING, "8");
+        settings.put("workers=4,maxPending=8", pending);
+        settings.put("keepAliveRequests=0", setting(ServerConfig.KEEP_ALIVE_REQUESTS, "0"));
+        settings.put("virtualThreads", setting(ServerConfig.VIRTUAL_THREADS, "true"));
+        return settings;
+    }
+
+    private static Properties setting(String key, String value) {
+        Properties properties = new Properties();
+        properties.setProperty(key, value);
+        return properties;
+    }
+
+    public static void main(String[] args) throws Exception {
+        int concurrency = Integer.getInteger("load.concurrency", 32);
+        double rate = Double.parseDouble(System.getProperty("load.rate", "0"));
+        long duration = Long.getLong("load.duration", 10);
+        long warmup = Long.getLong("load.warmup", 3);
+        int dimension = Integer.getInteger("load.dimension", 3);
+        System.setProperty("http.maxConnections", String.valueOf(concurrency));
+        String url = Main.BASE_URI.replace("0.0.0.0", "localhost");
+
+        System.out.println(String.format("%d connections, %s, %d s warm-up, %d s each, dimension %d", concurrency,
+                rate == 0 ? "closed loop" : rate + " requests/s", warmup, duration, dimension));
+        // One pass which is not reported, so the first setting doesn't pay for the JIT compile
+        HttpServer warm = Main.startServer(new ServerConfig(new Properties()));
+        try {
+            new LoadGenerator(url, concurrency, rate, dimension, warmup, duration).run();
+        } finally {
+            warm.shutdownNow();
+        }
+
+        System.out.println(String.format("%-24s %9s %8s %8s %8s %8s %7s",
+                "setting", "req/s", "p50", "p99", "p99.9", "max", "errors"));
+        for (Map.Entry<String, Properties> setting : settings().entrySet()) {
+            HttpServer server = Main.startServer(new ServerConfig(setting.getValue()));
+            try {
+                LoadGenerator.Report report = new LoadGenerator(url, concurrency, rate, dimension, warmup, duration).run();
+                Histogram all = report.getAll();
+                System.out.println(String.format("%-24s %9.1f %8.3f %8.3f %8.3f %8.3f %7d", setting.getKey(),
+                        report.getThroughput(), all.getValueAtPercentile(50) / 1000.0,
+                        all.getValueAtPercentile(99) / 1000.0, all.getValueAtPercentile(99.9) / 1000.0,
+                        all.getMaxValue() / 1000.0, report.getErrors()));
+            } finally {
+                server.shutdownNow();
+            }
+        }
+        System.out.println("latency in millis");
+    }
+}
@@ -0,0 +1,97 @@
+package com.jackychu.app.tictactoe;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.grizzly.http.server.NetworkListener;
+import org.glassfish.grizzly.nio.transport.TCPNIOTransport;
+import org.junit.After;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test ServerConfig class
+ */
+public class ServerConfigTest {
+
+    private File file;
+
+    @After
+    public void tearDown() {
+        System.clearProperty(ServerConfig.CONFIG_FILE_PROPERTY);
+        System.clearProperty(ServerConfig.WORKERS);
+        if (file != null) file.delete();
+    }
+
+    /**
+     * Test a system property overrides the config file
+     */
+    @Test
+    public void testLoad() throws Exception {
+        file = File.createTempFile("server", ".properties");
+        Properties properties = new Properties();
+        properties.setProperty(ServerConfig.WORKERS, "4");
+        properties.setProperty(ServerConfig.SELECTORS, "2");
+        OutputStream out = new FileOutputStream(file);
+        properties.store(out, null);
+        out.close();
+
+        System.setProperty(ServerConfig.CONFIG_FILE_PROPERTY, file.getPath());
+        ServerConfig config = ServerConfig.load();
+        assertEquals(4, config.getWorkers());
+        assertEquals(2, config.getSelectors());
+        assertEquals(ServerConfig.DEFAULT, config.getMaxPending());
+        assertEquals(Main.BASE_URI, config.getUri());
+        assertFalse(config.isVirtualThreads());
+
+        System.setProperty(ServerConfig.WORKERS, "8");
+        assertEquals(8, ServerConfig.load().getWorkers());
+    }
+
+    /**
+     * Test the settings are applied to the transport and keep-alive of the server
+     */
+    @Test
+    public void testConfigure() throws Exception {
+        Properties properties = new Properties();
+        properties.setProperty(ServerConfig.URI, "http://localhost:8081/tictactoe/");
+        properties.setProperty(ServerConfig.WORKERS, "3");
+        properties.setProperty(ServerConfig.SELECTORS, "1");
+        properties.setProperty(ServerConfig.MAX_PENDING, "100");
+        properties.setProperty(ServerConfig.KEEP_ALIVE_SECONDS, "5");
+        properties.setProperty(ServerConfig.KEEP_ALIVE_REQUESTS, "0");
+        properties.setProperty(ServerConfig.WRITE_TIMEOUT_SECONDS, "7");
+        HttpServer server = Main.startServer(new ServerConfig(properties));
+        try {
+            NetworkListener listener = server.getListeners().iterator().next();
+            assertEquals(8081, listener.getPort());
+            TCPNIOTransport transport = listener.getTransport();
+            assertEquals(1, transport.getSelectorRunnersCount());
+            assertEquals(3, transport.getWorkerThreadPoolConfig().getMaxPoolSize());
+            assertEquals(100, transport.getWorkerThreadPoolConfig().getQueueLimit());
+            assertEquals(5, listener.getKeepAlive().getIdleTimeoutInSeconds());
+            assertEquals(0, listener.getKeepAlive().getMaxRequestsCount());
+            assertEquals(7, transport.getWriteTimeout(TimeUnit.SECONDS));
+            assertTrue(server.isStarted());
+        } finally {
+            server.shutdownNow();
+        }
+    }
+
+    /**
+     * Test an invalid number is rejected
+     */
+    @Test(expected = IllegalStateException.class)
+    public void testInvalid() {
+        Properties properties = new Properties();
+        properties.setProperty(ServerConfig.WORKERS, "many");
+        new ServerConfig(properties).getWorkers();
+    }
+}
@@ -0,0 +1,75 @@
+package com.jackychu.app.tictactoe;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time to solve a 4x4 position by ParallelSolver with 1, 2, 4 and 8 threads.<br>
+ * The table is cleared before every solve, so each solve searches the whole tree.
+ * Speedup is the time of 1 thread divided by the time of n threads.
+ * The subtrees stolen by idle workers are reported as the steals counter.<br>
+ * Run: mvn -P benchmark test -Dbenchmark=SolverBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SolverBenchmark {
+
+    @Param({"1", "2", "4", "8"})
+    public int threads;
+
+    private ParallelSolver solver;
+    private Game game;
+
+    @Setup
+    public void setUp() {
+        solver = new ParallelSolver(threads, new TranspositionTable(), ParallelSolver.DEFAULT_SPLIT_DEPTH);
+        game = new Game(4);
+        game.setGrid(new int[][]{{0, 0, 0, 0}, {0, 1, 2, 0}, {0, 0, 0, 0}, {0, 0, 0, 0}});
+        game.setStatus(Game.Status.PLAYING);
+    }
+
+    @Setup(Level.Invocation)
+    public void clearTable() {
+        solver.getTable().clear();
+    }
+
+    @TearDown
+    public void tearDown() {
+        solver.close();
+    }
+
+    /**
+     * Steals of the solves, reported by JMH with the score
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Steals {
+        public long steals;
+    }
+
+    @Benchmark
+    public SearchResult solve(Steals counters) {
+        long before = solver.getSteals();
+        SearchResult result = solver.solve(game, 60000);
+        counters.steals += solver.getSteals() - before;
+        return result;
+    }
+}
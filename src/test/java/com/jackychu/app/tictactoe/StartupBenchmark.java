@@ -0,0 +1,131 @@
+package com.jackychu.app.tictactoe;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cold start to first request of the executable jar, with and without class data sharing.<br>
+ * Each run starts a new JVM with java -jar, then polls GET game/all until the first answer.
+ * The time is from the process start to that answer, so it has JVM start, class loading, Jersey start
+ * and the first request. The AppCDS archive is made before the runs by a training run of the same jar,
+ * like the Dockerfile does.<br>
+ * Run: mvn -DskipTests package && mvn -P load test -Dload.class=com.jackychu.app.tictactoe.StartupBenchmark<br>
+ * System properties:
+ * <pre>
+ * startup.jar      executable jar, default target/tic-tac-toe.jar
+ * startup.archive  AppCDS archive to make, default target/app.jsa
+ * startup.runs     runs of each setting, default 5
+ * startup.options  more JVM options of each run, separated by spaces, e.g. -XX:+UseZGC
+ * </pre>
+ */
+public class StartupBenchmark {
+    /**
+     * Max millis to wait for the first answer
+     */
+    private static final long TIMEOUT = TimeUnit.SECONDS.toMillis(60);
+
+    private static final String URL = Main.BASE_URI.replace("0.0.0.0", "localhost") + "api/v1.0/game/all";
+
+    private static final String JAVA = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+
+    /**
+     * Start the jar and wait for the first answer
+     * @param options JVM options
+     * @return millis from the process start to the first answer
+     */
+    private static long start(List<String> options, String jar) throws IOException, InterruptedException {
+        List<String> command = new ArrayList<>();
+        command.add(JAVA);
+        command.addAll(options);
+        command.add("-jar");
+        command.add(jar);
+        ProcessBuilder builder = new ProcessBuilder(command)
+                .redirectErrorStream(true).redirectOutput(ProcessBuilder.Redirect.DISCARD);
+
+        long start = System.nanoTime();
+        Process process = builder.start();
+        try {
+            while (TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < TIMEOUT) {
+                if (!process.isAlive()) {
+                    throw new IllegalStateException("Server exited with " + process.exitValue() + ": " + command);
+                }
+                try {
+                    HttpURLConnection connection = (HttpURLConnection) URI.create(URL).toURL().openConnection();
+                    connection.setRequestProperty("Connection", "close");
+                    if (connection.getResponseCode() == 200) {
+                        try (InputStream in = connection.getInputStream()) {
+                            in.readAllBytes();
+                        }
+                        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+                    }
+                } catch (IOException e) {
+                    // not listening yet
+                }
+                Thread.sleep(1);
+            }
+            throw new IllegalStateException("No answer in " + TIMEOUT + " ms: " + command);
+        } finally {
+            process.destroy();
+            if (!process.waitFor(10, TimeUnit.SECONDS)) {
+                process.destroyForcibly().waitFor();
+            }
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        String jar = System.getProperty("startup.jar", "target/tic-tac-toe.jar");
+        String archive = System.getProperty("startup.archive", "target/app.jsa");
+        int runs = Integer.getInteger("startup.runs", 5);
+        String more = System.getProperty("startup.options", "").trim();
+        List<String> options = more.isEmpty() ? new ArrayList<String>() : Arrays.asList(more.split("\\s+"));
+
+        if (!new File(jar).isFile()) {
+            throw new IllegalStateException("No " + jar + ", run mvn -DskipTests package first");
+        }
+
+        // Record the classes of a training run, then dump them at exit
+        List<String> train = new ArrayList<>();
+        train.add(JAVA);
+        train.addAll(options);
+        train.add("-XX:ArchiveClassesAtExit=" + archive);
+        train.add("-cp");
+        train.add(jar);
+        train.add(Training.class.getName());
+        new File(archive).delete();
+        int exit = new ProcessBuilder(train).redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD).start().waitFor();
+        if (exit != 0 || !new File(archive).isFile()) {
+            throw new IllegalStateException("Training run exited with " + exit + ": " + train);
+        }
+
+        Map<String, List<String>> settings = new LinkedHashMap<>();
+        settings.put("no CDS", Arrays.asList("-Xshare:off"));
+        settings.put("JDK CDS", Collections.<String>emptyList());
+        settings.put("AppCDS", Arrays.asList("-XX:SharedArchiveFile=" + archive));
+
+        System.out.println(String.format("%s, %d runs each, options: %s", jar, runs, more.isEmpty() ? "none" : more));
+        System.out.println(String.format("%-10s %8s %8s %8s", "setting", "min", "median", "max"));
+        for (Map.Entry<String, List<String>> setting : settings.entrySet()) {
+            List<String> jvm = new ArrayList<>(options);
+            jvm.addAll(setting.getValue());
+            long[] millis = new long[runs];
+            for (int i=0; i<runs; i++) {
+                millis[i] = start(jvm, jar);
+            }
+            Arrays.sort(millis);
+            System.out.println(String.format("%-10s %8d %8d %8d",
+                    setting.getKey(), millis[0], millis[runs / 2], millis[runs - 1]));
+        }
+        System.out.println("millis from process start to the first answer");
+    }
+}
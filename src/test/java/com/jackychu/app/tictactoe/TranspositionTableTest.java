@@ -0,0 +1,124 @@
+package com.jackychu.app.tictactoe;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test TranspositionTable and Zobrist classes
+ */
+public class TranspositionTableTest {
+
+    private Game game(int[][] grid) {
+        Game g = new Game(grid.length);
+        g.setGrid(grid);
+        g.setStatus(Game.Status.PLAYING);
+        return g;
+    }
+
+    private long key(Game g) {
+        long[] hashes = Zobrist.of(g.board().dimension()).hashes(g.board());
+        return hashes[Zobrist.canonical(hashes)];
+    }
+
+    /**
+     * Test an entry is found after stored, and a missing key is not found
+     */
+    @Test
+    public void testStoreProbe() {
+        TranspositionTable table = new TranspositionTable(16);
+        table.store(12345L, -42, 7, TranspositionTable.LOWER, 4, 3);
+
+        long entry = table.probe(12345L);
+        assertTrue(entry != 0);
+        assertEquals(-42, TranspositionTable.score(entry));
+        assertEquals(7, TranspositionTable.depth(entry));
+        assertEquals(TranspositionTable.LOWER, TranspositionTable.bound(entry));
+        assertEquals(4, TranspositionTable.cell(entry));
+        assertEquals(3, TranspositionTable.generation(entry));
+
+        assertEquals(0, table.probe(54321L));
+        table.clear();
+        assertEquals(0, table.probe(12345L));
+    }
+
+    /**
+     * Test a deeper entry of the same search is kept, and a shallow entry goes to the second slot
+     */
+    @Test
+    public void testReplace() {
+        TranspositionTable table = new TranspositionTable(2);
+        table.store(2L, 1, 9, TranspositionTable.EXACT, 0, 1);
+        table.store(4L, 2, 3, TranspositionTable.EXACT, 0, 1);
+        assertEquals(9, TranspositionTable.depth(table.probe(2L)));
+        assertEquals(3, TranspositionTable.depth(table.probe(4L)));
+
+        // A new generation replaces the old deep entry
+        table.store(6L, 3, 1, TranspositionTable.EXACT, 0, 2);
+        assertEquals(0, table.probe(2L));
+        assertEquals(1, TranspositionTable.depth(table.probe(6L)));
+    }
+
+    /**
+     * Test rotations and reflections of a position have the same key
+     */
+    @Test
+    public void testSymmetricKey() {
+        Game g = game(new int[][]{{1, 2, 0}, {0, 1, 0}, {0, 0, 0}});
+        Game rotated = game(new int[][]{{0, 0, 1}, {0, 1, 2}, {0, 0, 0}});
+        Game reflected = game(new int[][]{{0, 2, 1}, {0, 1, 0}, {0, 0, 0}});
+        Game other = game(new int[][]{{1, 0, 2}, {0, 1, 0}, {0, 0, 0}});
+
+        assertEquals(key(g), key(rotated));
+        assertEquals(key(g), key(reflected));
+        assertTrue(key(g) != key(other));
+    }
+
+    /**
+     * Test a second search of a rotated position reuses the table
+     */
+    @Test
+    public void testReuse() {
+        TranspositionTable table = new TranspositionTable(1 << 16);
+        AlphaBetaEngine engine = new AlphaBetaEngine(AlphaBetaEngine.DEFAULT_MAX_NODES, 10000, table);
+
+        SearchResult first = engine.search(game(new int[][]{{1, 0, 0}, {0, 0, 0}, {0, 0, 0}}));
+        SearchResult second = engine.search(game(new int[][]{{0, 0, 0}, {0, 0, 0}, {0, 0, 1}}));
+        assertTrue(first.isComplete());
+        assertTrue(second.isComplete());
+        assertEquals(first.getScore(), second.getScore());
+        assertTrue(second.getNodes() < first.getNodes());
+        assertTrue(table.getHitRate() > 0);
+        assertTrue(table.getHits() <= table.getProbes());
+    }
+
+    /**
+     * Test the engine with a table still plays correctly
+     */
+    @Test
+    public void testEngineWithTable() {
+        AlphaBetaEngine engine = new AlphaBetaEngine(AlphaBetaEngine.DEFAULT_MAX_NODES, 10000,
+                new TranspositionTable(1 << 16));
+
+        SearchResult win = engine.search(game(new int[][]{{1, 1, 0}, {2, 2, 0}, {0, 0, 0}}));
+        assertEquals(0, win.getMove().getRow());
+        assertEquals(2, win.getMove().getCol());
+
+        SearchResult block = engine.search(game(new int[][]{{1, 1, 0}, {0, 2, 0}, {0, 0, 0}}));
+        assertEquals(0, block.getMove().getRow());
+        assertEquals(2, block.getMove().getCol());
+
+        SearchResult empty = engine.search(new Game());
+        assertTrue(empty.isComplete());
+        assertEquals(0, empty.getScore());
+
+        Game g = new Game();
+        while (g.getStatus() != Game.Status.END) {
+            Move move = engine.search(g).getMove();
+            assertTrue(g.validate(move));
+            g.play(move);
+        }
+        assertEquals(0, g.getWinner());
+    }
+}
@@ -0,0 +1,91 @@
+package com.jackychu.app.tictactoe;
+
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.ws.rs.client.Client;
+import javax.ws.rs.client.ClientBuilder;
+import javax.ws.rs.client.Entity;
+import javax.ws.rs.client.WebTarget;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end time of one updateGame call: a PUT of the next game in JSON to an in-process Grizzly server,
+ * and the JSON response read by the client. Dimension 3 to 15.<br>
+ * The next game is built before each call and not measured. The cells are filled row by row,
+ * and a new game is created when one is end.
+ * The gc profiler counts the allocation of the client and the server, as both run in the benchmark process.<br>
+ * Run: mvn -P benchmark test -Dbenchmark=UpdateGameBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UpdateGameBenchmark {
+
+    @Param({"3", "5", "7", "9", "11", "13", "15"})
+    public int dimension;
+
+    private HttpServer server;
+    private Client client;
+    private WebTarget games;
+
+    private Game game;
+    private WebTarget target;
+    private String json;
+    private String body;
+    private int cell;
+
+    @Setup
+    public void setUp() {
+        server = Main.startServer();
+        client = ClientBuilder.newClient();
+        games = client.target(Main.BASE_URI).path("api/v1.0/game");
+    }
+
+    @TearDown
+    public void tearDown() {
+        client.close();
+        server.shutdownNow();
+    }
+
+    @Setup(Level.Invocation)
+    public void nextGame() throws Exception {
+        if (body != null) game = Game.fromJson(body);
+        if (game == null || game.getStatus() == Game.Status.END) {
+            game = games.queryParam("dimension", dimension).request(MediaType.APPLICATION_JSON)
+                    .post(Entity.text("")).readEntity(Game.class);
+            target = games.path(game.getId());
+            body = null;
+            cell = 0;
+        }
+        Game next = game.copy();
+        next.place(cell / dimension, cell % dimension, cell % 2 == 0 ? 1 : 2);
+        cell++;
+        json = next.toJson();
+    }
+
+    @Benchmark
+    public String updateGame() throws Exception {
+        Response res = target.request(MediaType.APPLICATION_JSON).put(Entity.json(json));
+        body = res.readEntity(String.class);
+        if (res.getStatus() != 200) throw new IllegalStateException(body);
+        return body;
+    }
+}